@@ -0,0 +1,248 @@
+package benchmark;
+
+import database.ConnectionPool;
+import database.DatabaseConfig;
+import database.PooledConnection;
+import database.SchemaMigrator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * A scratch SQLite database in a temporary file, created with the application schema and
+ * migrations and seeded with deterministic data at a configurable scale.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    public static final int MANUFACTURERS = 50;
+    public static final int CATEGORIES = 40;
+
+    private static final String[] WORDS = {
+            "phone", "laptop", "tablet", "monitor", "keyboard", "mouse", "speaker", "camera", "watch", "router",
+            "printer", "headset", "charger", "cable", "drive", "console", "lens", "drone", "projector", "scanner"
+    };
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Path directory;
+    private final ConnectionPool connectionPool;
+    private final int products;
+    private final int customers;
+
+    private BenchmarkDatabase(Path directory, ConnectionPool connectionPool, int products, int customers) {
+        this.directory = directory;
+        this.connectionPool = connectionPool;
+        this.products = products;
+        this.customers = customers;
+    }
+
+    /**
+     * Creates and seeds a database.
+     *
+     * @param products The number of products
+     * @param customers The number of customers
+     * @param ordersPerCustomer The number of orders per customer, each with one to five lines
+     * @return The database; close it to delete the files
+     */
+    public static BenchmarkDatabase create(int products, int customers, int ordersPerCustomer)
+            throws SQLException, IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found", e);
+        }
+
+        Path directory = Files.createTempDirectory("webbutiken-bench");
+        String url = "jdbc:sqlite:" + directory.resolve("webbutiken.db");
+        ConnectionPool connectionPool = new ConnectionPool(DatabaseConfig.fromSystemProperties(url));
+
+        try {
+            try (PooledConnection connection = connectionPool.write();
+                 Statement stmt = connection.createStatement()) {
+                for (String statement : readSchema().split(";")) {
+                    if (!statement.isBlank()) {
+                        stmt.execute(statement);
+                    }
+                }
+            }
+
+            seed(connectionPool, products, customers, ordersPerCustomer);
+            // Seeding first lets the migrations build their indexes in bulk
+            new SchemaMigrator(connectionPool).migrate();
+        } catch (SQLException | RuntimeException e) {
+            connectionPool.close();
+            throw e;
+        }
+
+        return new BenchmarkDatabase(directory, connectionPool, products, customers);
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public int getProducts() {
+        return products;
+    }
+
+    public int getCustomers() {
+        return customers;
+    }
+
+    public static String word(int index) {
+        return WORDS[Math.floorMod(index, WORDS.length)];
+    }
+
+    @Override
+    public void close() throws SQLException, IOException {
+        try {
+            connectionPool.close();
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static String readSchema() throws IOException {
+        try (InputStream in = BenchmarkDatabase.class.getResourceAsStream("/schema.sql")) {
+            if (in == null) {
+                throw new UncheckedIOException(new IOException("schema.sql is missing from the classpath"));
+            }
+
+            StringBuilder schema = new StringBuilder();
+
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.startsWith("--")) {
+                    schema.append(line).append('\n');
+                }
+            }
+
+            return schema.toString();
+        }
+    }
+
+    private static void seed(ConnectionPool connectionPool, int products, int customers, int ordersPerCustomer)
+            throws SQLException {
+        Random random = new Random(42);
+
+        try (PooledConnection connection = connectionPool.write()) {
+            Connection transaction = connection.getConnection();
+            transaction.setAutoCommit(false);
+
+            try (PreparedStatement manufacturerStmt =
+                         transaction.prepareStatement("INSERT INTO manufacturers (name) VALUES (?)");
+                 PreparedStatement categoryStmt =
+                         transaction.prepareStatement("INSERT INTO categories (name) VALUES (?)")) {
+                for (int i = 1; i <= MANUFACTURERS; i++) {
+                    manufacturerStmt.setString(1, "Brand" + i);
+                    manufacturerStmt.addBatch();
+                }
+
+                for (int i = 1; i <= CATEGORIES; i++) {
+                    categoryStmt.setString(1, "Category " + word(i) + " " + i);
+                    categoryStmt.addBatch();
+                }
+
+                manufacturerStmt.executeBatch();
+                categoryStmt.executeBatch();
+            }
+
+            try (PreparedStatement productStmt = transaction.prepareStatement(
+                         "INSERT INTO products (manufacturer_id, name, description, price, stock_quantity)"
+                                 + " VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement categoryStmt = transaction.prepareStatement(
+                         "INSERT INTO products_categories (product_id, category_id) VALUES (?, ?)")) {
+                for (int i = 1; i <= products; i++) {
+                    int manufacturerId = 1 + random.nextInt(MANUFACTURERS);
+                    productStmt.setInt(1, manufacturerId);
+                    productStmt.setString(2, "Brand" + manufacturerId + " " + word(random.nextInt())
+                            + " " + word(random.nextInt()) + " " + i);
+                    productStmt.setString(3, "A " + word(random.nextInt()) + " for every " + word(random.nextInt()));
+                    productStmt.setDouble(4, (1 + random.nextInt(500_000)) / 100.0);
+                    productStmt.setInt(5, 1_000_000);
+                    productStmt.addBatch();
+
+                    for (int c = 0; c < 2; c++) {
+                        categoryStmt.setInt(1, i);
+                        categoryStmt.setInt(2, 1 + random.nextInt(CATEGORIES));
+                        categoryStmt.addBatch();
+                    }
+
+                    if (i % 10_000 == 0) {
+                        productStmt.executeBatch();
+                        categoryStmt.executeBatch();
+                    }
+                }
+
+                productStmt.executeBatch();
+                categoryStmt.executeBatch();
+            }
+
+            try (PreparedStatement customerStmt = transaction.prepareStatement(
+                    "INSERT INTO customers (name, email, phone, address, password) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= customers; i++) {
+                    customerStmt.setString(1, "Customer " + i);
+                    customerStmt.setString(2, "customer" + i + "@example.com");
+                    customerStmt.setString(3, "070" + (1_000_000 + i));
+                    customerStmt.setString(4, "Street " + i);
+                    customerStmt.setString(5, "password" + i);
+                    customerStmt.addBatch();
+                }
+
+                customerStmt.executeBatch();
+            }
+
+            try (PreparedStatement orderStmt = transaction.prepareStatement(
+                         "INSERT INTO orders (order_id, customer_id, order_date) VALUES (?, ?, ?)");
+                 PreparedStatement lineStmt = transaction.prepareStatement(
+                         "INSERT INTO orders_products (order_id, product_id, quantity, unit_price) VALUES (?, ?, ?, ?)")) {
+                LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+                int orderId = 0;
+
+                for (int customerId = 1; customerId <= customers; customerId++) {
+                    for (int o = 0; o < ordersPerCustomer; o++) {
+                        orderId++;
+                        orderStmt.setInt(1, orderId);
+                        orderStmt.setInt(2, customerId);
+                        orderStmt.setString(3, start.plusMinutes(random.nextInt(500_000)).format(DATE_FORMAT));
+                        orderStmt.addBatch();
+
+                        int lines = 1 + random.nextInt(5);
+
+                        for (int l = 0; l < lines; l++) {
+                            lineStmt.setInt(1, orderId);
+                            lineStmt.setInt(2, 1 + random.nextInt(products));
+                            lineStmt.setInt(3, 1 + random.nextInt(3));
+                            lineStmt.setDouble(4, (1 + random.nextInt(500_000)) / 100.0);
+                            lineStmt.addBatch();
+                        }
+                    }
+
+                    if (customerId % 1_000 == 0) {
+                        orderStmt.executeBatch();
+                        lineStmt.executeBatch();
+                    }
+                }
+
+                orderStmt.executeBatch();
+                lineStmt.executeBatch();
+            }
+
+            transaction.commit();
+        }
+    }
+}
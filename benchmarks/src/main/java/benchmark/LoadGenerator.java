@@ -0,0 +1,415 @@
+package benchmark;
+
+import core.Money;
+import customer.CustomerRepository;
+import customer.CustomerService;
+import database.ConnectionPoolStats;
+import metrics.LatencyHistogram;
+import order.InsufficientStockException;
+import order.Order;
+import order.OrderRepository;
+import order.OrderService;
+import orderproduct.OrderProduct;
+import product.CategoryIndex;
+import product.Product;
+import product.ProductRepository;
+import product.ProductService;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A closed-loop workload driver for the service layer. Each simulated customer repeatedly picks
+ * an operation from the configured mix, runs it, and then thinks for an exponentially
+ * distributed time before the next one. Customers run on virtual threads or on a fixed pool of
+ * platform threads; think time never holds a thread, so a small pool serves many customers.
+ * <p>
+ * Latency is measured from when an operation was due to start, so time spent waiting for a free
+ * thread is included rather than hidden. Run with, for example:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmark.LoadGenerator --customers=1000 --threads=virtual \
+ *     --duration=30 --think=20 --mix=view:60,search:20,history:15,order:5
+ * </pre>
+ */
+public class LoadGenerator {
+    private static final String DEFAULT_MIX = "view:50,browse:15,search:10,category:10,customer:5,history:7,order:3";
+    private static final int PAGE_SIZE = 20;
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+
+    private final CustomerService customerService;
+    private final ProductService productService;
+    private final OrderService orderService;
+    private final ConnectionPoolStats poolStats;
+    private final int products;
+    private final int customers;
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+
+    public LoadGenerator(BenchmarkDatabase database) throws SQLException {
+        ProductRepository productRepository = new ProductRepository(database.getConnectionPool());
+        customerService = new CustomerService(new CustomerRepository(database.getConnectionPool()));
+        productService = new ProductService(productRepository, CategoryIndex.load(productRepository));
+        orderService = new OrderService(new OrderRepository(database.getConnectionPool()), customerService,
+                productService);
+        poolStats = database.getConnectionPool().getStats();
+        products = database.getProducts();
+        customers = database.getCustomers();
+
+        operations.put("view", new Operation(random -> productService.getProductById(productId(random))));
+        operations.put("browse", new Operation(random ->
+                productService.getProductsPage(random.nextInt(Math.max(1, products - PAGE_SIZE)), PAGE_SIZE)));
+        operations.put("search", new Operation(random ->
+                productService.searchProductsByName(BenchmarkDatabase.word(random.nextInt()))));
+        operations.put("category", new Operation(random ->
+                productService.searchProductsByCategory(BenchmarkDatabase.word(random.nextInt()))));
+        operations.put("customer", new Operation(random -> customerService.getCustomerById(customerId(random))));
+        operations.put("history", new Operation(random ->
+                orderService.getOrderHistory(customerId(random), null, null, 0, PAGE_SIZE, true)));
+        operations.put("order", new Operation(this::createOrder));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int simulatedCustomers = Integer.parseInt(options.getOrDefault("customers", "200"));
+        String threads = options.getOrDefault("threads", "virtual");
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        double thinkMillis = Double.parseDouble(options.getOrDefault("think", "50"));
+        String mix = options.getOrDefault("mix", DEFAULT_MIX);
+
+        System.out.println("Seeding the database...");
+
+        try (BenchmarkDatabase database = BenchmarkDatabase.create(
+                Integer.parseInt(options.getOrDefault("products", "10000")),
+                Integer.parseInt(options.getOrDefault("dbCustomers", "1000")),
+                Integer.parseInt(options.getOrDefault("ordersPerCustomer", "10")))) {
+            System.out.printf("Running %d customers on %s threads for %ds after %ds warm-up, think time %.1f ms, mix %s%n",
+                    simulatedCustomers, threads, durationSeconds, warmupSeconds, thinkMillis, mix);
+
+            new LoadGenerator(database).run(simulatedCustomers, threads, warmupSeconds, durationSeconds,
+                    thinkMillis, mix);
+        }
+    }
+
+    /**
+     * Runs the workload and prints a report.
+     *
+     * @param simulatedCustomers The number of concurrent customers
+     * @param threads {@code virtual} for a virtual thread per operation, or the size of a platform thread pool
+     * @param mix Relative operation weights, e.g. {@code view:70,search:20,order:10}
+     */
+    public void run(int simulatedCustomers, String threads, int warmupSeconds, int durationSeconds,
+                    double thinkMillis, String mix) throws InterruptedException {
+        List<Operation> weightedOperations = parseMix(mix);
+        ExecutorService workers = newWorkers(threads);
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+        timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+        Run run = new Run(workers, timer, weightedOperations, (long) (thinkMillis * 1_000_000), measureStart,
+                measureEnd);
+
+        for (int i = 0; i < simulatedCustomers; i++) {
+            run.startSession();
+        }
+
+        TimeUnit.NANOSECONDS.sleep(measureStart - System.nanoTime());
+        PoolCounters poolBefore = new PoolCounters(poolStats);
+        TimeUnit.NANOSECONDS.sleep(measureEnd - System.nanoTime());
+        PoolCounters poolAfter = new PoolCounters(poolStats);
+
+        run.stopping = true;
+        timer.shutdownNow();
+        timer.awaitTermination(10, TimeUnit.SECONDS);
+        workers.shutdown();
+
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            System.err.println("Some operations were still running after 30 seconds.");
+        }
+
+        printReport(durationSeconds, poolAfter.minus(poolBefore));
+    }
+
+    private Order createOrder(ThreadLocalRandom random) throws SQLException {
+        List<OrderProduct> lines = new ArrayList<>();
+        int lineCount = 1 + random.nextInt(3);
+
+        for (int i = 0; i < lineCount; i++) {
+            Product product = productService.getProductById(productId(random));
+            Money unitPrice = product != null ? product.getPrice() : Money.ZERO;
+            lines.add(new OrderProduct(0, 0, product != null ? product.getProductId() : 1, 1 + random.nextInt(2),
+                    unitPrice));
+        }
+
+        return orderService.createOrder(new Order(0, customerId(random), LocalDateTime.now()), lines);
+    }
+
+    private int productId(ThreadLocalRandom random) {
+        return 1 + random.nextInt(products);
+    }
+
+    private int customerId(ThreadLocalRandom random) {
+        return 1 + random.nextInt(customers);
+    }
+
+    private List<Operation> parseMix(String mix) {
+        List<Operation> weighted = new ArrayList<>();
+
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Operation operation = operations.get(parts[0]);
+
+            if (operation == null || parts.length != 2) {
+                throw new IllegalArgumentException("Unknown mix entry '" + entry + "'; operations are "
+                        + operations.keySet() + ", e.g. view:70,order:30.");
+            }
+
+            for (int i = Integer.parseInt(parts[1]); i > 0; i--) {
+                weighted.add(operation);
+            }
+        }
+
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("The operation mix has no weight.");
+        }
+
+        return weighted;
+    }
+
+    private void printReport(int durationSeconds, PoolCounters pool) {
+        System.out.println();
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %8s %8s %8s%n", "operation", "count", "ops/s",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "rejected", "stock");
+
+        long totalCount = 0;
+
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            Operation operation = entry.getValue();
+            LatencyHistogram histogram = operation.histogram;
+
+            if (histogram.getCount() == 0 && operation.errors.sum() == 0) {
+                continue;
+            }
+
+            totalCount += histogram.getCount();
+            System.out.printf("%-10s %10d %10.1f %10.3f %10.3f %10.3f %10.3f %8d %8d %8d%n",
+                    entry.getKey(),
+                    histogram.getCount(),
+                    (double) histogram.getCount() / durationSeconds,
+                    millis(histogram.getValueAtPercentile(PERCENTILES[0])),
+                    millis(histogram.getValueAtPercentile(PERCENTILES[1])),
+                    millis(histogram.getValueAtPercentile(PERCENTILES[2])),
+                    millis(histogram.getMaxNanos()),
+                    operation.errors.sum(),
+                    operation.rejected.sum(),
+                    operation.stockConflicts.sum());
+        }
+
+        System.out.printf("%-10s %10d %10.1f%n", "total", totalCount, (double) totalCount / durationSeconds);
+        System.out.println();
+        System.out.printf("Connection pool: %d of %d reads waited (%.1f ms in total), %d of %d writes waited"
+                        + " (%.1f ms in total), %d timeouts%n",
+                pool.contendedReads, pool.reads, millis(pool.readWaitNanos),
+                pool.contendedWrites, pool.writes, millis(pool.writeWaitNanos), pool.timeouts);
+
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            if (entry.getValue().firstError != null) {
+                System.out.println("First error in " + entry.getKey() + ": " + entry.getValue().firstError);
+            }
+        }
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Options look like --name=value, got '" + arg + "'.");
+            }
+
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        return options;
+    }
+
+    /**
+     * Virtual threads arrived in Java 21 while the build targets 17, so they are looked up
+     * reflectively.
+     */
+    private static ExecutorService newWorkers(String threads) {
+        if (!threads.equals("virtual")) {
+            return Executors.newFixedThreadPool(Integer.parseInt(threads));
+        }
+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Virtual threads need Java 21; use --threads=<count> instead.");
+        }
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        Object run(ThreadLocalRandom random) throws Exception;
+    }
+
+    private static final class Operation {
+        final Action action;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder stockConflicts = new LongAdder();
+        volatile String firstError;
+
+        Operation(Action action) {
+            this.action = action;
+        }
+    }
+
+    /**
+     * The shared state of one run. Sessions hop between the timer, which waits out their think
+     * time, and the workers, which run their operations.
+     */
+    private static final class Run {
+        final ExecutorService workers;
+        final ScheduledThreadPoolExecutor timer;
+        final List<Operation> operations;
+        final long meanThinkNanos;
+        final long measureStart;
+        final long measureEnd;
+        volatile boolean stopping;
+
+        Run(ExecutorService workers, ScheduledThreadPoolExecutor timer, List<Operation> operations,
+            long meanThinkNanos, long measureStart, long measureEnd) {
+            this.workers = workers;
+            this.timer = timer;
+            this.operations = operations;
+            this.meanThinkNanos = meanThinkNanos;
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+        }
+
+        void startSession() {
+            schedule(new Session(), thinkTime());
+        }
+
+        long thinkTime() {
+            // Exponential, so arrivals within a customer look like a Poisson process
+            return meanThinkNanos == 0 ? 0
+                    : (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanThinkNanos);
+        }
+
+        void schedule(Session session, long delayNanos) {
+            if (stopping) {
+                return;
+            }
+
+            session.dueAt = System.nanoTime() + delayNanos;
+
+            try {
+                if (delayNanos == 0) {
+                    workers.execute(session);
+                } else {
+                    timer.schedule(() -> {
+                        try {
+                            workers.execute(session);
+                        } catch (RejectedExecutionException e) {
+                            // The run is over
+                        }
+                    }, delayNanos, TimeUnit.NANOSECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                // The run is over
+            }
+        }
+
+        private final class Session implements Runnable {
+            long dueAt;
+
+            @Override
+            public void run() {
+                if (stopping) {
+                    return;
+                }
+
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Operation operation = operations.get(random.nextInt(operations.size()));
+                boolean succeeded = false;
+
+                try {
+                    operation.action.run(random);
+                    succeeded = true;
+                } catch (InsufficientStockException e) {
+                    operation.stockConflicts.increment();
+                } catch (IllegalArgumentException e) {
+                    operation.rejected.increment();
+                } catch (Exception e) {
+                    operation.errors.increment();
+
+                    if (operation.firstError == null) {
+                        operation.firstError = e.toString();
+                    }
+                }
+
+                long end = System.nanoTime();
+
+                if (succeeded && dueAt - measureStart >= 0 && measureEnd - end > 0) {
+                    operation.histogram.record(end - dueAt);
+                }
+
+                schedule(this, thinkTime());
+            }
+        }
+    }
+
+    private static final class PoolCounters {
+        final long reads;
+        final long contendedReads;
+        final long readWaitNanos;
+        final long writes;
+        final long contendedWrites;
+        final long writeWaitNanos;
+        final long timeouts;
+
+        PoolCounters(ConnectionPoolStats stats) {
+            this(stats.getReads(), stats.getContendedReads(), stats.getReadWaitNanos(), stats.getWrites(),
+                    stats.getContendedWrites(), stats.getWriteWaitNanos(), stats.getTimeouts());
+        }
+
+        PoolCounters(long reads, long contendedReads, long readWaitNanos, long writes, long contendedWrites,
+                     long writeWaitNanos, long timeouts) {
+            this.reads = reads;
+            this.contendedReads = contendedReads;
+            this.readWaitNanos = readWaitNanos;
+            this.writes = writes;
+            this.contendedWrites = contendedWrites;
+            this.writeWaitNanos = writeWaitNanos;
+            this.timeouts = timeouts;
+        }
+
+        PoolCounters minus(PoolCounters before) {
+            return new PoolCounters(reads - before.reads, contendedReads - before.contendedReads,
+                    readWaitNanos - before.readWaitNanos, writes - before.writes,
+                    contendedWrites - before.contendedWrites, writeWaitNanos - before.writeWaitNanos,
+                    timeouts - before.timeouts);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import core.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order totals summed as BigDecimal, the way order history used to, against summing the
+ * minor units of {@link Money}. Run with {@code -prof gc} to see the allocation per total.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoneyBenchmark {
+    @Param("30")
+    public int lines;
+
+    private BigDecimal[] decimalPrices;
+    private Money[] prices;
+    private int[] quantities;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        decimalPrices = new BigDecimal[lines];
+        prices = new Money[lines];
+        quantities = new int[lines];
+
+        for (int i = 0; i < lines; i++) {
+            long cents = 1 + random.nextInt(500_000);
+            decimalPrices[i] = BigDecimal.valueOf(cents, 2);
+            prices[i] = Money.ofMinor(cents);
+            quantities[i] = 1 + random.nextInt(3);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+
+        for (int i = 0; i < lines; i++) {
+            total = total.add(decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i])));
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    public Money moneyTotal() {
+        long total = 0;
+
+        for (int i = 0; i < lines; i++) {
+            total = Math.addExact(total, Math.multiplyExact(prices[i].getMinorUnits(), (long) quantities[i]));
+        }
+
+        return Money.ofMinor(total);
+    }
+}
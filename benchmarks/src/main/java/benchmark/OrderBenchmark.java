@@ -0,0 +1,133 @@
+package benchmark;
+
+import core.Money;
+import core.Page;
+import customer.CustomerRepository;
+import customer.CustomerService;
+import order.Order;
+import order.OrderRepository;
+import order.OrderService;
+import orderproduct.OrderProduct;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import product.CategoryIndex;
+import product.ProductRepository;
+import product.ProductService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order creation and the per-customer order history and summary queries.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderBenchmark {
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    @Param("10000")
+    public int products;
+
+    @Param("1000")
+    public int customers;
+
+    @Param("10")
+    public int ordersPerCustomer;
+
+    private BenchmarkDatabase database;
+    private OrderService orderService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(products, customers, ordersPerCustomer);
+        CustomerService customerService = new CustomerService(new CustomerRepository(database.getConnectionPool()));
+        ProductRepository productRepository = new ProductRepository(database.getConnectionPool());
+        ProductService productService = new ProductService(productRepository, CategoryIndex.load(productRepository));
+        orderService = new OrderService(new OrderRepository(database.getConnectionPool()), customerService,
+                productService);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Order createOrder() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Order order = new Order(0, 1 + random.nextInt(customers), LocalDateTime.now());
+        List<OrderProduct> lines = List.of(
+                new OrderProduct(0, 0, 1 + random.nextInt(products), 1, Money.parse("199.00")),
+                new OrderProduct(0, 0, 1 + random.nextInt(products), 2, Money.parse("49.50")));
+
+        return orderService.createOrder(order, lines);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_BATCH_SIZE)
+    public int createOrdersOneByOne() throws Exception {
+        int created = 0;
+
+        for (Order order : importBatch()) {
+            created += orderService.createOrder(order, order.getProducts()).getOrderId() > 0 ? 1 : 0;
+        }
+
+        return created;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_BATCH_SIZE)
+    public int[] createOrdersBulk() throws Exception {
+        return orderService.createOrders(importBatch());
+    }
+
+    @Benchmark
+    public List<Order> orderHistory() throws Exception {
+        return orderService.getOrderById(1 + ThreadLocalRandom.current().nextInt(customers));
+    }
+
+    @Benchmark
+    public List<Order> orderSummaries() throws Exception {
+        return orderService.getOrderSummaries(1 + ThreadLocalRandom.current().nextInt(customers));
+    }
+
+    @Benchmark
+    public Page<Order> orderHistoryPage() throws Exception {
+        return orderService.getOrderHistory(1 + ThreadLocalRandom.current().nextInt(customers), null, null, 0, 20,
+                false);
+    }
+
+    private List<Order> importBatch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Order> orders = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        for (int i = 0; i < IMPORT_BATCH_SIZE; i++) {
+            Order order = new Order(0, 1 + random.nextInt(customers), LocalDateTime.now());
+            order.setProducts(List.of(
+                    new OrderProduct(0, 0, 1 + random.nextInt(products), 1, Money.parse("199.00")),
+                    new OrderProduct(0, 0, 1 + random.nextInt(products), 2, Money.parse("49.50"))));
+            orders.add(order);
+        }
+
+        return orders;
+    }
+}
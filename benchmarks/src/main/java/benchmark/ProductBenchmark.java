@@ -0,0 +1,107 @@
+package benchmark;
+
+import cache.ExpiringCache;
+import core.Money;
+import core.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import product.CategoryIndex;
+import product.Product;
+import product.ProductRepository;
+import product.ProductService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product lookups, listings and searches, through the repository and through the cached service.
+ * Sample time mode reports the p50/p90/p99 latencies next to the throughput.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductBenchmark {
+    @Param("10000")
+    public int products;
+
+    private BenchmarkDatabase database;
+    private ProductRepository productRepository;
+    private ProductService productService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(products, 100, 1);
+        productRepository = new ProductRepository(database.getConnectionPool());
+        productService = new ProductService(productRepository,
+                new ExpiringCache<>(products, Duration.ofMinutes(10)), CategoryIndex.load(productRepository));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Product repositoryGetById() throws Exception {
+        return productRepository.getById(randomProductId());
+    }
+
+    @Benchmark
+    public Product serviceGetById() throws Exception {
+        return productService.getProductById(randomProductId());
+    }
+
+    @Benchmark
+    public Page<Product> getPage() throws Exception {
+        return productRepository.getPage(randomProductId(), 20);
+    }
+
+    @Benchmark
+    public List<Product> searchByName() throws Exception {
+        return productService.searchProductsByName(BenchmarkDatabase.word(ThreadLocalRandom.current().nextInt()));
+    }
+
+    @Benchmark
+    public List<Product> searchByCategorySql() throws Exception {
+        return productRepository.searchByCategory(randomCategoryName());
+    }
+
+    @Benchmark
+    public List<Product> searchByCategoryIndex() throws Exception {
+        return productService.searchProductsByCategory(randomCategoryName());
+    }
+
+    @Benchmark
+    public Product createAndDelete() throws Exception {
+        Product product = productService.createProduct(
+                new Product("Brand1 benchmark " + BenchmarkDatabase.word(ThreadLocalRandom.current().nextInt()),
+                        "Created by the benchmark", Money.parse("99.90"), 10));
+        productService.deleteProduct(product.getProductId());
+        return product;
+    }
+
+    private int randomProductId() {
+        return 1 + ThreadLocalRandom.current().nextInt(products);
+    }
+
+    private static String randomCategoryName() {
+        int category = 1 + ThreadLocalRandom.current().nextInt(BenchmarkDatabase.CATEGORIES);
+        return BenchmarkDatabase.word(category) + " " + category;
+    }
+}
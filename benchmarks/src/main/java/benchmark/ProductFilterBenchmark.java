@@ -0,0 +1,138 @@
+package benchmark;
+
+import cache.ExpiringCache;
+import core.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import product.CategoryIndex;
+import product.Product;
+import product.ProductFilter;
+import product.ProductRepository;
+import product.ProductService;
+import product.ProductSnapshot;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product filters run as SQL and on the columnar product snapshot, with the same criteria in
+ * each pair. The select benchmarks measure the snapshot scan alone, without reading the
+ * selected products.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductFilterBenchmark {
+    @Param("1000000")
+    public int products;
+
+    private BenchmarkDatabase database;
+    private ProductSnapshot productSnapshot;
+    private ProductService sqlProductService;
+    private ProductService snapshotProductService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(products, 100, 1);
+        ProductRepository productRepository = new ProductRepository(database.getConnectionPool());
+        CategoryIndex categoryIndex = CategoryIndex.load(productRepository);
+        productSnapshot = ProductSnapshot.load(productRepository);
+        sqlProductService = new ProductService(productRepository,
+                new ExpiringCache<>(10_000, Duration.ofMinutes(10)), categoryIndex);
+        snapshotProductService = new ProductService(productRepository,
+                new ExpiringCache<>(10_000, Duration.ofMinutes(10)), categoryIndex, productSnapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Product> manufacturerAndPriceSql() throws Exception {
+        return sqlProductService.findProducts(manufacturerAndPrice());
+    }
+
+    @Benchmark
+    public List<Product> manufacturerAndPriceSnapshot() throws Exception {
+        return snapshotProductService.findProducts(manufacturerAndPrice());
+    }
+
+    @Benchmark
+    public int[] manufacturerAndPriceSelect() throws Exception {
+        return productSnapshot.select(manufacturerAndPrice(), null);
+    }
+
+    @Benchmark
+    public List<Product> categoryAndPriceSql() throws Exception {
+        return sqlProductService.findProducts(categoryAndPrice());
+    }
+
+    @Benchmark
+    public List<Product> categoryAndPriceSnapshot() throws Exception {
+        return snapshotProductService.findProducts(categoryAndPrice());
+    }
+
+    @Benchmark
+    public List<Product> inStockByNameSql() throws Exception {
+        return sqlProductService.findProducts(inStockByName());
+    }
+
+    @Benchmark
+    public List<Product> inStockByNameSnapshot() throws Exception {
+        return snapshotProductService.findProducts(inStockByName());
+    }
+
+    @Benchmark
+    public int[] inStockByNameSelect() throws Exception {
+        return productSnapshot.select(inStockByName(), null);
+    }
+
+    private static ProductFilter manufacturerAndPrice() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long minPrice = random.nextLong(490_000);
+
+        return ProductFilter.builder()
+                .manufacturer("Brand" + (1 + random.nextInt(BenchmarkDatabase.MANUFACTURERS)))
+                .priceBetween(Money.ofMinor(minPrice), Money.ofMinor(minPrice + 10_000))
+                .sort(ProductFilter.Sort.PRICE_ASCENDING)
+                .limit(20)
+                .build();
+    }
+
+    private static ProductFilter categoryAndPrice() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int category = 1 + random.nextInt(BenchmarkDatabase.CATEGORIES);
+        long minPrice = random.nextLong(400_000);
+
+        return ProductFilter.builder()
+                .category(BenchmarkDatabase.word(category) + " " + category)
+                .priceBetween(Money.ofMinor(minPrice), Money.ofMinor(minPrice + 100_000))
+                .limit(50)
+                .build();
+    }
+
+    private static ProductFilter inStockByName() {
+        return ProductFilter.builder()
+                .inStockOnly(true)
+                .sort(ProductFilter.Sort.NAME)
+                .limit(50)
+                .build();
+    }
+}
@@ -0,0 +1,116 @@
+import com.sun.net.httpserver.HttpServer;
+import customer.CustomerHttpHandler;
+import customer.CustomerService;
+import database.QueryMetrics;
+import order.CartHttpHandler;
+import order.CartService;
+import order.OrderHttpHandler;
+import order.OrderImportHttpHandler;
+import order.OrderService;
+import product.ProductHttpHandler;
+import product.ProductService;
+import product.StockUpdateBuffer;
+import review.ReviewHttpHandler;
+import review.ReviewService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the customer, product, order, cart and review operations as JSON over HTTP, as a headless
+ * alternative to the console {@link Menu}. Every request runs on its own virtual thread where
+ * the JVM has them, so thousands of concurrent requests only wait on the connection pool rather
+ * than on platform threads. {@code GET /metrics/queries} returns the per-query statistics as text.
+ * <p>
+ * Unauthenticated endpoints for other systems, such as {@code POST /orders/bulk}, are served on a
+ * separate internal listener bound to the loopback address, and only if
+ * {@code webbutiken.server.internalPort} is set.
+ */
+public class ApiServer implements AutoCloseable {
+    private static final String PROPERTY_PREFIX = "webbutiken.server.";
+
+    private final HttpServer server;
+    private final HttpServer internalServer; // Null unless an internal port is configured
+    private final ExecutorService executor;
+
+    public ApiServer(int port, CustomerService customerService, ProductService productService,
+                     OrderService orderService, CartService cartService, ReviewService reviewService,
+                     StockUpdateBuffer stockUpdates, QueryMetrics queryMetrics) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), Integer.getInteger(PROPERTY_PREFIX + "backlog", 1024));
+        executor = newRequestExecutor();
+
+        server.setExecutor(executor);
+        server.createContext("/customers", new CustomerHttpHandler(customerService));
+        server.createContext("/products", new ProductHttpHandler(productService, stockUpdates));
+        server.createContext("/orders", new OrderHttpHandler(orderService, customerService));
+        server.createContext("/cart", new CartHttpHandler(cartService));
+        server.createContext("/reviews", new ReviewHttpHandler(reviewService, customerService));
+        server.createContext("/metrics/queries", exchange -> {
+            byte[] dump = queryMetrics.dump().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, dump.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(dump);
+            }
+        });
+
+        Integer internalPort = Integer.getInteger(PROPERTY_PREFIX + "internalPort");
+
+        if (internalPort != null) {
+            internalServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), internalPort), 0);
+            internalServer.setExecutor(executor);
+            internalServer.createContext("/orders/bulk", new OrderImportHttpHandler(orderService));
+        } else {
+            internalServer = null;
+        }
+    }
+
+    public void start() {
+        server.start();
+
+        if (internalServer != null) {
+            internalServer.start();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        int stopDelaySeconds = Integer.getInteger(PROPERTY_PREFIX + "stopDelaySeconds", 1);
+        server.stop(stopDelaySeconds);
+
+        if (internalServer != null) {
+            internalServer.stop(stopDelaySeconds);
+        }
+
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Virtual threads arrived in Java 21 while the build targets 17, so they are looked up
+     * reflectively; older runtimes get a cached pool of platform threads instead.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
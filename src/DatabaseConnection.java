@@ -1,17 +1,22 @@
-import java.sql.Connection;
-import java.sql.DriverManager;
+import database.ConnectionPool;
+import database.DatabaseConfig;
+
 import java.sql.SQLException;
 
 public class DatabaseConnection {
     private static final String DATABASE_URL = "jdbc:sqlite:data/webbutiken.db";
 
-    public static Connection getConnection() throws SQLException {
+    public static ConnectionPool createPool() throws SQLException {
+        return createPool(DatabaseConfig.fromSystemProperties(DATABASE_URL));
+    }
+
+    public static ConnectionPool createPool(DatabaseConfig config) throws SQLException {
         try {
             Class.forName("org.sqlite.JDBC");
         } catch (ClassNotFoundException e) {
             throw new SQLException("The SQLite JDBC driver could not be found.", e);
         }
 
-        return DriverManager.getConnection(DATABASE_URL);
+        return new ConnectionPool(config);
     }
 }
@@ -2,37 +2,157 @@ import customer.CustomerController;
 import customer.CustomerRepository;
 import customer.CustomerService;
 
+import database.ConnectionPool;
+import database.QueryMetrics;
+import database.QueryPlanCheck;
+import database.QueryPlanVerifier;
+import database.SchemaMigrator;
+
+import order.CartService;
 import order.OrderController;
 import order.OrderRepository;
 import order.OrderService;
 
+import product.CategoryIndex;
 import product.ProductController;
 import product.ProductRepository;
 import product.ProductService;
+import product.ProductSnapshot;
+import product.StockUpdateBuffer;
+
+import review.ReviewRepository;
+import review.ReviewService;
 
-import java.sql.Connection;
+import javax.management.JMException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 public class Main {
     public static void main(String[] args) {
-        try (Connection connection = DatabaseConnection.getConnection()) {
-            CustomerRepository customerRepository = new CustomerRepository(connection);
+        List<String> options = Arrays.asList(args);
+        int exitCode = 0;
+
+        try (ConnectionPool connectionPool = DatabaseConnection.createPool()) {
+            new SchemaMigrator(connectionPool).migrate();
+            registerQueryMetrics(connectionPool);
+
+            if (options.contains("--check-query-plans")) {
+                exitCode = checkQueryPlans(connectionPool) ? 0 : 1;
+                return;
+            }
+
+            CustomerRepository customerRepository = new CustomerRepository(connectionPool);
             CustomerService customerService = new CustomerService(customerRepository);
             CustomerController customerController = new CustomerController(customerService);
 
-            ProductRepository productRepository = new ProductRepository(connection);
-            ProductService productService = new ProductService(productRepository);
+            ProductRepository productRepository = new ProductRepository(connectionPool);
+            CategoryIndex categoryIndex = CategoryIndex.load(productRepository);
+            ProductSnapshot productSnapshot =
+                    Boolean.parseBoolean(System.getProperty("webbutiken.productSnapshot.enabled", "true"))
+                            ? ProductSnapshot.load(productRepository) : null;
+            ProductService productService = new ProductService(productRepository, categoryIndex, productSnapshot);
             ProductController productController = new ProductController(productService);
 
-            OrderRepository orderRepository = new OrderRepository(connection);
-            OrderService orderService = new OrderService(orderRepository, customerService);
+            OrderRepository orderRepository = new OrderRepository(connectionPool);
+            OrderService orderService = new OrderService(orderRepository, customerService, productService);
             OrderController orderController = new OrderController(orderService);
 
-            Menu menu = new Menu(customerController, productController, orderController);
+            ReviewService reviewService = new ReviewService(new ReviewRepository(connectionPool), productService);
+
+            if (options.contains("--server")) {
+                // Closed after the server has stopped, so the last buffered stock changes are written
+                try (StockUpdateBuffer stockUpdates =
+                             StockUpdateBuffer.fromSystemProperties(productRepository, productService)) {
+                    runServer(customerService, productService, orderService,
+                            CartService.fromSystemProperties(customerService, productService, orderService),
+                            reviewService, stockUpdates, connectionPool.getQueryMetrics());
+                }
+
+                return;
+            }
+
+            Menu menu = new Menu(customerController, productController, orderController,
+                    connectionPool.getQueryMetrics());
             menu.showMainMenu();
             menu.closeScanner();
         } catch (SQLException e) {
             System.err.println("Could not connect to the database: " + e.getMessage());
+            exitCode = 1;
+        } catch (IOException e) {
+            System.err.println("Could not start the server: " + e.getMessage());
+            exitCode = 1;
+        } finally {
+            if (exitCode != 0) {
+                System.exit(exitCode);
+            }
+        }
+    }
+
+    /**
+     * Serves the API until the JVM is asked to shut down, then stops the server before the
+     * connection pool is closed.
+     */
+    private static void runServer(CustomerService customerService, ProductService productService,
+                                  OrderService orderService, CartService cartService,
+                                  ReviewService reviewService, StockUpdateBuffer stockUpdates,
+                                  QueryMetrics queryMetrics) throws IOException {
+        int port = Integer.getInteger("webbutiken.server.port", 8080);
+        CountDownLatch shutdown = new CountDownLatch(1);
+        Thread mainThread = Thread.currentThread();
+
+        try (ApiServer server = new ApiServer(port, customerService, productService, orderService, cartService,
+                reviewService, stockUpdates, queryMetrics)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                shutdown.countDown();
+
+                try {
+                    mainThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+
+            server.start();
+            System.out.println("Serving the API on port " + server.getPort() + ".");
+            shutdown.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void registerQueryMetrics(ConnectionPool connectionPool) {
+        try {
+            connectionPool.getQueryMetrics().registerMBeans(ManagementFactory.getPlatformMBeanServer());
+        } catch (JMException e) {
+            System.err.println("Could not publish the query statistics through JMX: " + e.getMessage());
         }
     }
+
+    private static boolean checkQueryPlans(ConnectionPool connectionPool) throws SQLException {
+        List<QueryPlanCheck> checks = new ArrayList<>();
+        checks.addAll(CustomerRepository.queryPlanChecks());
+        checks.addAll(ProductRepository.queryPlanChecks());
+        checks.addAll(OrderRepository.queryPlanChecks());
+        checks.addAll(ReviewRepository.queryPlanChecks());
+
+        List<String> violations = new QueryPlanVerifier(connectionPool).verify(checks);
+
+        if (violations.isEmpty()) {
+            System.out.println("All " + checks.size() + " repository queries use indexes.");
+            return true;
+        }
+
+        System.err.println("Queries doing full table scans:");
+
+        for (String violation : violations) {
+            System.err.println("- " + violation);
+        }
+
+        return false;
+    }
 }
@@ -1,4 +1,5 @@
 import customer.CustomerController;
+import database.QueryMetrics;
 import order.OrderController;
 import product.ProductController;
 
@@ -10,14 +11,17 @@ public class Menu {
     private final CustomerController customerController;
     private final ProductController productController;
     private final OrderController orderController;
+    private final QueryMetrics queryMetrics;
     private final Scanner scanner;
 
     public Menu(CustomerController customerController,
                 ProductController productController,
-                OrderController orderController) {
+                OrderController orderController,
+                QueryMetrics queryMetrics) {
         this.customerController = customerController;
         this.productController = productController;
         this.orderController = orderController;
+        this.queryMetrics = queryMetrics;
         this.scanner = new Scanner(System.in);
     }
 
@@ -30,6 +34,7 @@ public class Menu {
             System.out.println("1. Customer menu");
             System.out.println("2. Product menu");
             System.out.println("3. Order menu");
+            System.out.println("4. Query statistics");
             System.out.println("0. Exit");
             System.out.print("Choose an option: ");
 
@@ -58,6 +63,11 @@ public class Menu {
                     orderController.showMenu();
                     break;
 
+                case 4:
+                    System.out.println();
+                    System.out.print(queryMetrics.dump());
+                    break;
+
                 case 0:
                     System.out.println("Closing the application.");
                     break;
@@ -0,0 +1,8 @@
+package cache;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+    V load(K key) throws SQLException;
+}
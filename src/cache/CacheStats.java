@@ -0,0 +1,81 @@
+package cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class CacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordExpiration() {
+        expirations.increment();
+    }
+
+    void recordLoad(long loadTimeNanos) {
+        loads.increment();
+        totalLoadTimeNanos.add(loadTimeNanos);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return totalLoadTimeNanos.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public double getAverageLoadTimeMillis() {
+        long loadCount = getLoads();
+        return loadCount == 0 ? 0.0 : getTotalLoadTimeNanos() / 1_000_000.0 / loadCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                ", evictions=" + getEvictions() +
+                ", expirations=" + getExpirations() +
+                ", loads=" + getLoads() +
+                ", averageLoadTimeMillis=" + String.format("%.3f", getAverageLoadTimeMillis()) +
+                '}';
+    }
+}
@@ -0,0 +1,252 @@
+package cache;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent cache bounded (approximately) by size and by time to live. Reads are lock-free: a hit is a single
+ * map lookup plus setting the entry's reference bit. When the cache is full, entries are evicted
+ * in insertion order, except that entries read since they were last considered get a second
+ * chance (the CLOCK approximation of LRU). Null values are never cached.
+ * <p>
+ * A value loaded on a miss is only kept if no write to the key, or to a key sharing its
+ * generation stripe, happened while it loaded, so a slow load can never overwrite a newer
+ * {@link #put} or undo an {@link #invalidate}.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class ExpiringCache<K, V> {
+    private static final int GENERATION_STRIPES = 64;
+
+    private final int maxSize;
+    private final long timeToLiveNanos;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<K> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedEntries = new AtomicInteger();
+    private final CacheStats stats = new CacheStats();
+    // Bumped before every write, so loads can tell whether they raced with one
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public ExpiringCache(int maxSize, Duration timeToLive) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1.");
+        }
+
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+    }
+
+    /**
+     * Returns the cached value for the key, or null if it is missing or expired.
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry != null) {
+            if (!entry.isExpired(System.nanoTime())) {
+                entry.referenced = true;
+                stats.recordHit();
+                return entry.value;
+            }
+
+            if (entries.remove(key, entry)) {
+                stats.recordExpiration();
+            }
+        }
+
+        stats.recordMiss();
+        return null;
+    }
+
+    /**
+     * Returns the cached value for the key, loading and caching it on a miss.
+     *
+     * @param key The key
+     * @param loader Loads the value on a miss; may return null if there is no value
+     * @return The value, or null if the loader found none
+     * @throws SQLException If the loader fails
+     */
+    public V get(K key, CacheLoader<K, V> loader) throws SQLException {
+        V value = getIfPresent(key);
+
+        if (value != null) {
+            return value;
+        }
+
+        long generation = generation(key);
+        long start = System.nanoTime();
+        value = loader.load(key);
+        stats.recordLoad(System.nanoTime() - start);
+        putIfCurrent(key, value, generation);
+        return value;
+    }
+
+    /**
+     * Takes the write generation of a key, to be passed to {@link #putIfCurrent} with the value
+     * loaded after this call.
+     */
+    public long generation(K key) {
+        return generations.get(stripe(key));
+    }
+
+    /**
+     * Caches a loaded value unless the key may have been written since {@code generation} was
+     * taken, in which case the value may be older than the database and is dropped.
+     */
+    public void putIfCurrent(K key, V value, long generation) {
+        if (value == null || generations.get(stripe(key)) != generation) {
+            return;
+        }
+
+        Entry<V> entry = store(key, value);
+
+        // A write that bumped the generation after the check above may have missed the entry
+        if (generations.get(stripe(key)) != generation) {
+            entries.remove(key, entry);
+        }
+    }
+
+    public void put(K key, V value) {
+        if (value == null) {
+            invalidate(key);
+            return;
+        }
+
+        generations.incrementAndGet(stripe(key));
+        store(key, value);
+    }
+
+    /**
+     * Caches the value unless the key already has a live value.
+     *
+     * @return The value that was already cached, or null if {@code value} was cached
+     */
+    public V putIfAbsent(K key, V value) {
+        Entry<V> created = new Entry<>(value, System.nanoTime() + timeToLiveNanos);
+
+        while (true) {
+            Entry<V> existing = entries.putIfAbsent(key, created);
+
+            if (existing == null) {
+                evictionQueue.offer(key);
+
+                if (queuedEntries.incrementAndGet() > maxSize) {
+                    evict();
+                }
+
+                return null;
+            }
+
+            if (!existing.isExpired(System.nanoTime())) {
+                existing.referenced = true;
+                return existing.value;
+            }
+
+            // Still queued for eviction under the same key, so it is not queued again
+            if (entries.replace(key, existing, created)) {
+                stats.recordExpiration();
+                return null;
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        generations.incrementAndGet(stripe(key));
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    private Entry<V> store(K key, V value) {
+        Entry<V> entry = new Entry<>(value, System.nanoTime() + timeToLiveNanos);
+        Entry<V> previous = entries.put(key, entry);
+
+        if (previous == null) {
+            evictionQueue.offer(key);
+
+            if (queuedEntries.incrementAndGet() > maxSize) {
+                evict();
+            }
+        }
+
+        return entry;
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * Removes expired entries and trims the cache to its size, giving referenced entries a
+     * second chance. Keys of invalidated entries are dropped from the queue as they come up.
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        int budget = queuedEntries.get() * 2;
+
+        while (queuedEntries.get() > maxSize && budget-- > 0) {
+            K key = evictionQueue.poll();
+
+            if (key == null) {
+                return;
+            }
+
+            Entry<V> entry = entries.get(key);
+
+            if (entry == null) {
+                queuedEntries.decrementAndGet();
+            } else if (entry.isExpired(now)) {
+                queuedEntries.decrementAndGet();
+
+                if (entries.remove(key, entry)) {
+                    stats.recordExpiration();
+                }
+            } else if (entry.referenced) {
+                entry.referenced = false;
+                evictionQueue.offer(key);
+            } else {
+                queuedEntries.decrementAndGet();
+
+                if (entries.remove(key, entry)) {
+                    stats.recordEviction();
+                }
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAtNanos;
+        private volatile boolean referenced;
+
+        private Entry(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
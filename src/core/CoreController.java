@@ -1,6 +1,5 @@
 package core;
 
-import java.math.BigDecimal;
 import java.util.Scanner;
 
 public abstract class CoreController {
@@ -36,8 +35,20 @@ public abstract class CoreController {
         return input;
     }
 
-    protected BigDecimal getBigDecimalInput(Scanner scanner, String prompt) {
-        BigDecimal input = null;
+    protected int getPositiveIntInput(Scanner scanner, String prompt) {
+        while (true) {
+            int input = getIntInput(scanner, prompt);
+
+            if (input > 0) {
+                return input;
+            }
+
+            System.err.println("The number must be greater than zero. Please try again.");
+        }
+    }
+
+    protected Money getMoneyInput(Scanner scanner, String prompt) {
+        Money input = null;
         boolean valid = false;
 
         while (!valid) {
@@ -48,14 +59,28 @@ public abstract class CoreController {
                 System.err.println("Input cannot be empty. Please try again.");
             } else {
                 try {
-                    input = new BigDecimal(inputString);
+                    input = Money.parse(inputString);
                     valid = true;
                 } catch (NumberFormatException e) {
                     System.err.println("That wasn't a valid number. Please try again.");
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Amounts can have at most two decimals. Please try again.");
                 }
             }
         }
 
         return input;
     }
+
+    protected void printImportResult(ImportResult result) {
+        System.out.println("Imported " + result.getImported() + " rows, rejected " + result.getRejected() + ".");
+
+        for (String rejection : result.getRejections()) {
+            System.out.println("- " + rejection);
+        }
+
+        if (result.getRejections().size() < result.getRejected()) {
+            System.out.println("- ... and " + (result.getRejected() - result.getRejections().size()) + " more");
+        }
+    }
 }
@@ -0,0 +1,299 @@
+package core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class of the JSON endpoints: splits the path, turns exceptions into status codes and
+ * offers helpers for reading parameters and bodies, in the way {@link CoreController} does for
+ * the console menus.
+ */
+public abstract class CoreHttpHandler implements HttpHandler {
+    protected static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+
+    /**
+     * Handles one request. Implementations send the response with {@link #sendJson}; any
+     * exception that escapes is turned into an error response.
+     *
+     * @param exchange The request
+     * @param path The path segments after the context path, e.g. {@code ["12"]} for {@code /products/12}
+     */
+    protected abstract void route(HttpExchange exchange, List<String> path) throws SQLException, IOException;
+
+    @Override
+    public final void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange, pathSegments(exchange));
+        } catch (HttpException e) {
+            sendError(exchange, e.getStatus(), e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("Request " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                    + " failed: " + e.getMessage());
+            sendError(exchange, 500, "An error occurred while processing the request.");
+        } catch (RuntimeException e) {
+            System.err.println("Request " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                    + " failed: " + e);
+            sendError(exchange, 500, "An error occurred while processing the request.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    protected void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    protected void sendNoContent(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    protected static HttpException notFound(String message) {
+        return new HttpException(404, message);
+    }
+
+    /**
+     * Answers 401 and tells the client to authenticate with a bearer token.
+     */
+    protected static HttpException unauthorized(HttpExchange exchange, String message) {
+        exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+        return new HttpException(401, message);
+    }
+
+    /**
+     * @return The token of an {@code Authorization: Bearer} header, or null if there is none
+     */
+    protected static String bearerToken(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+
+        String token = authorization.substring(7).trim();
+        return token.isEmpty() ? null : token;
+    }
+
+    protected static HttpException methodNotAllowed(HttpExchange exchange) {
+        return new HttpException(405, exchange.getRequestMethod() + " is not supported on "
+                + exchange.getRequestURI().getPath() + ".");
+    }
+
+    protected static Map<String, Object> page(Page<?> page, List<?> items) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("items", items);
+        json.put("nextCursor", page.getNextCursor());
+        json.put("hasMore", page.hasMore());
+        return json;
+    }
+
+    protected static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals >= 0 ? pair.substring(0, equals) : pair;
+            String value = equals >= 0 ? pair.substring(equals + 1) : "";
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+
+        return parameters;
+    }
+
+    protected static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter '" + name + "' must be a whole number.");
+        }
+    }
+
+    protected static int pageSizeParameter(Map<String, String> parameters, int defaultValue) {
+        return Math.min(intParameter(parameters, "limit", defaultValue), MAX_PAGE_SIZE);
+    }
+
+    protected static LocalDateTime dateParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        return value == null || value.isEmpty() ? null : parseDate(name, value);
+    }
+
+    protected static int pathId(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw notFound("No resource at '" + segment + "'.");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the body is not a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    protected static Map<String, Object> readJsonObject(HttpExchange exchange) throws IOException {
+        byte[] bytes;
+
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new HttpException(413, "The request body is larger than " + MAX_BODY_BYTES + " bytes.");
+        }
+
+        Object body = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+
+        if (!(body instanceof Map)) {
+            throw new IllegalArgumentException("The request body must be a JSON object.");
+        }
+
+        return (Map<String, Object>) body;
+    }
+
+    protected static String stringField(Map<String, Object> json, String name) {
+        Object value = json.get(name);
+
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException("Field '" + name + "' must be a string.");
+        }
+
+        return (String) value;
+    }
+
+    protected static Integer intField(Map<String, Object> json, String name) {
+        Object value = json.get(name);
+
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return ((BigDecimal) value).intValueExact();
+        } catch (ClassCastException | ArithmeticException e) {
+            throw new IllegalArgumentException("Field '" + name + "' must be a whole number.");
+        }
+    }
+
+    protected static int requiredIntField(Map<String, Object> json, String name) {
+        Integer value = intField(json, name);
+
+        if (value == null) {
+            throw new IllegalArgumentException("Field '" + name + "' is required.");
+        }
+
+        return value;
+    }
+
+    /**
+     * Reads an amount given as a JSON number or string, e.g. {@code 12.50} or {@code "12.50"}.
+     */
+    protected static Money moneyField(Map<String, Object> json, String name) {
+        Object value = json.get(name);
+
+        if (value == null) {
+            return null;
+        } else if (value instanceof BigDecimal decimal) {
+            return Money.of(decimal);
+        } else if (value instanceof String string) {
+            try {
+                return Money.parse(string);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Field '" + name + "' must be an amount.");
+            }
+        }
+
+        throw new IllegalArgumentException("Field '" + name + "' must be an amount.");
+    }
+
+    protected static LocalDateTime dateField(Map<String, Object> json, String name) {
+        String value = stringField(json, name);
+        return value == null ? null : parseDate(name, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static List<Map<String, Object>> objectListField(Map<String, Object> json, String name) {
+        Object value = json.get(name);
+
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("Field '" + name + "' must be an array.");
+        }
+
+        List<Map<String, Object>> objects = new ArrayList<>(list.size());
+
+        for (Object item : list) {
+            if (!(item instanceof Map)) {
+                throw new IllegalArgumentException("Field '" + name + "' must only contain objects.");
+            }
+
+            objects.add((Map<String, Object>) item);
+        }
+
+        return objects;
+    }
+
+    private static LocalDateTime parseDate(String name, String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("'" + name + "' must be a date and time like 2024-01-31T12:00:00.");
+        }
+    }
+
+    private static List<String> pathSegments(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath().substring(exchange.getHttpContext().getPath().length());
+        List<String> segments = new ArrayList<>();
+
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+
+        return segments;
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        // The response may already be under way if writing it failed
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("status", status);
+        error.put("error", message);
+        sendJson(exchange, status, error);
+    }
+}
@@ -0,0 +1,52 @@
+package core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds fields by column name, using the header row of a CSV file, so that columns can come
+ * in any order and unknown columns are ignored.
+ */
+public class CsvColumns {
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * @param header The header row
+     * @param required The columns that must be present
+     * @throws IllegalArgumentException If a required column is missing
+     */
+    public CsvColumns(String[] header, List<String> required) {
+        for (int i = 0; i < header.length; i++) {
+            String name = header[i].trim().toLowerCase(Locale.ROOT);
+
+            // Spreadsheet programs often start UTF-8 files with a byte order mark
+            if (i == 0 && name.startsWith("\uFEFF")) {
+                name = name.substring(1);
+            }
+
+            indexes.putIfAbsent(name, i);
+        }
+
+        for (String column : required) {
+            if (!indexes.containsKey(column)) {
+                throw new IllegalArgumentException("The CSV header has no '" + column + "' column.");
+            }
+        }
+    }
+
+    /**
+     * @return The trimmed field of the column, or null if the column is missing or the field blank
+     */
+    public String get(String[] row, String column) {
+        Integer index = indexes.get(column);
+
+        if (index == null || index >= row.length) {
+            return null;
+        }
+
+        String field = row[index].trim();
+        return field.isEmpty() ? null : field;
+    }
+}
@@ -0,0 +1,153 @@
+package core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV one row at a time, so files of any size are read in constant memory.
+ * Fields may be quoted with double quotes, in which case they can contain commas, line breaks
+ * and doubled quotes. Blank lines are skipped.
+ */
+public class CsvReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NOTHING = -2;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int pushedBack = NOTHING;
+
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private long lineNumber = 1;
+    private long rowLineNumber;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Opens a UTF-8 file for reading.
+     */
+    public static CsvReader open(Path file) throws IOException {
+        return new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The fields of the next row, or null at the end of the input
+     * @throws IOException If the input cannot be read or ends inside a quoted field
+     */
+    public String[] readRow() throws IOException {
+        fields.clear();
+        field.setLength(0);
+
+        int c = read();
+
+        // Blank lines carry no row
+        while (c == '\r' || c == '\n') {
+            endOfLine(c);
+            c = read();
+        }
+
+        if (c == -1) {
+            return null;
+        }
+
+        rowLineNumber = lineNumber;
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Line " + rowLineNumber + ": the input ends inside a quoted field.");
+                }
+
+                if (c == '"') {
+                    c = read();
+
+                    if (c == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c != -1) {
+                    endOfLine(c);
+                }
+
+                fields.add(field.toString());
+                return fields.toArray(new String[0]);
+            } else {
+                field.append((char) c);
+            }
+
+            c = read();
+        }
+    }
+
+    /**
+     * @return The line on which the row last returned by {@link #readRow()} starts, counting from 1
+     */
+    public long getLineNumber() {
+        return rowLineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Consumes the line break that starts with {@code c}, which is either LF, CR LF or a lone CR.
+     */
+    private void endOfLine(int c) throws IOException {
+        lineNumber++;
+
+        if (c == '\r') {
+            int next = read();
+
+            if (next != '\n') {
+                pushedBack = next;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != NOTHING) {
+            int c = pushedBack;
+            pushedBack = NOTHING;
+            return c;
+        }
+
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,87 @@
+package core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes RFC 4180 CSV one row at a time. Fields that contain a comma, a quote or a line break
+ * are quoted; null fields are written as empty ones.
+ */
+public class CsvWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Creates or truncates a file and writes UTF-8 to it through a buffered file channel.
+     */
+    public static CsvWriter open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new CsvWriter(new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    public void writeRow(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+
+            writeField(fields[i]);
+        }
+
+        writer.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null || field.isEmpty()) {
+            return;
+        }
+
+        if (!needsQuotes(field)) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write('"');
+
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+
+            if (c == '"') {
+                writer.write('"');
+            }
+
+            writer.write(c);
+        }
+
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
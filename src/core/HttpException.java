@@ -0,0 +1,19 @@
+package core;
+
+/**
+ * Ends an HTTP request with the given status code; the message is sent to the client.
+ */
+public class HttpException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public HttpException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
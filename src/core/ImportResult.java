@@ -0,0 +1,52 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a CSV import: how many rows were imported and why rows were rejected. Only
+ * the first rejections are kept, so importing a file full of bad rows stays in bounded memory.
+ */
+public class ImportResult {
+    private static final int MAX_REJECTIONS = 100;
+
+    private int imported;
+    private int rejected;
+    private final List<String> rejections = new ArrayList<>();
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void reject(long lineNumber, String reason) {
+        rejected++;
+
+        if (rejections.size() < MAX_REJECTIONS) {
+            rejections.add("Line " + lineNumber + ": " + reason);
+        }
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return The reasons for the first rejected rows, prefixed with their line numbers
+     */
+    public List<String> getRejections() {
+        return Collections.unmodifiableList(rejections);
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{" +
+                "imported=" + imported +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
@@ -0,0 +1,326 @@
+package core;
+
+import java.math.BigDecimal;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small JSON reader and writer for the HTTP API. Objects are read into {@link LinkedHashMap}s,
+ * arrays into {@link ArrayList}s and numbers into {@link BigDecimal}s, so amounts of money are
+ * never rounded through a double.
+ */
+public final class Json {
+    /** Far deeper than any request body of the API, and shallow enough for the parser's recursion */
+    private static final int MAX_DEPTH = 64;
+
+    private Json() {}
+
+    /**
+     * Writes maps, iterables, strings, numbers, booleans, dates, {@link Money} and null as JSON.
+     */
+    public static String write(Object value) {
+        StringBuilder json = new StringBuilder();
+        write(value, json);
+        return json.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException If the text is not valid JSON, or nests objects and arrays
+     * more than {@value #MAX_DEPTH} levels deep
+     */
+    public static Object parse(String json) {
+        Parser parser = new Parser(json);
+        parser.skipWhitespace();
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+
+        if (parser.position < json.length()) {
+            throw parser.error("Unexpected text after the JSON value");
+        }
+
+        return value;
+    }
+
+    private static void write(Object value, StringBuilder json) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof String string) {
+            writeString(string, json);
+        } else if (value instanceof BigDecimal decimal) {
+            json.append(decimal.toPlainString());
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+
+            if (!Double.isFinite(number)) {
+                throw new IllegalArgumentException("JSON cannot represent " + number);
+            }
+
+            json.append(number);
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Money) {
+            json.append(value);
+        } else if (value instanceof TemporalAccessor) {
+            writeString(value.toString(), json);
+        } else if (value instanceof Map<?, ?> map) {
+            json.append('{');
+            boolean first = true;
+
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) json.append(',');
+                first = false;
+                writeString(String.valueOf(entry.getKey()), json);
+                json.append(':');
+                write(entry.getValue(), json);
+            }
+
+            json.append('}');
+        } else if (value instanceof Iterable<?> iterable) {
+            json.append('[');
+            boolean first = true;
+
+            for (Object item : iterable) {
+                if (!first) json.append(',');
+                first = false;
+                write(item, json);
+            }
+
+            json.append(']');
+        } else if (value instanceof int[] array) {
+            json.append('[');
+
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) json.append(',');
+                json.append(array[i]);
+            }
+
+            json.append(']');
+        } else {
+            throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " as JSON");
+        }
+    }
+
+    private static void writeString(String string, StringBuilder json) {
+        json.append('"');
+
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+
+        json.append('"');
+    }
+
+    private static final class Parser {
+        private final String json;
+        private int position;
+        private int depth;
+
+        Parser(String json) {
+            this.json = json;
+        }
+
+        Object readValue() {
+            if (position >= json.length()) {
+                throw error("Unexpected end of JSON");
+            }
+
+            char c = json.charAt(position);
+
+            if (c == '{' || c == '[') {
+                if (++depth > MAX_DEPTH) {
+                    throw error("Nested more than " + MAX_DEPTH + " levels deep");
+                }
+
+                Object value = c == '{' ? readObject() : readArray();
+                depth--;
+                return value;
+            }
+
+            return switch (c) {
+                case '"' -> readString();
+                case 't' -> readLiteral("true", Boolean.TRUE);
+                case 'f' -> readLiteral("false", Boolean.FALSE);
+                case 'n' -> readLiteral("null", null);
+                default -> {
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        yield readNumber();
+                    }
+
+                    throw error("Unexpected character '" + c + "'");
+                }
+            };
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+
+            while (true) {
+                skipWhitespace();
+
+                if (peek() != '"') {
+                    throw error("Expected a property name");
+                }
+
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                object.put(key, readValue());
+                skipWhitespace();
+
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+
+            while (true) {
+                skipWhitespace();
+                array.add(readValue());
+                skipWhitespace();
+
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String readString() {
+            StringBuilder string = new StringBuilder();
+            position++;
+
+            while (true) {
+                if (position >= json.length()) {
+                    throw error("Unterminated string");
+                }
+
+                char c = json.charAt(position++);
+
+                if (c == '"') {
+                    return string.toString();
+                } else if (c == '\\') {
+                    if (position >= json.length()) {
+                        throw error("Unterminated string");
+                    }
+
+                    char escaped = json.charAt(position++);
+
+                    switch (escaped) {
+                        case '"', '\\', '/' -> string.append(escaped);
+                        case 'b' -> string.append('\b');
+                        case 'f' -> string.append('\f');
+                        case 'n' -> string.append('\n');
+                        case 'r' -> string.append('\r');
+                        case 't' -> string.append('\t');
+                        case 'u' -> {
+                            if (position + 4 > json.length()) {
+                                throw error("Invalid unicode escape");
+                            }
+
+                            try {
+                                string.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                            } catch (NumberFormatException e) {
+                                throw error("Invalid unicode escape");
+                            }
+
+                            position += 4;
+                        }
+                        default -> throw error("Invalid escape '\\" + escaped + "'");
+                    }
+                } else if (c < 0x20) {
+                    throw error("Control character in string");
+                } else {
+                    string.append(c);
+                }
+            }
+        }
+
+        private BigDecimal readNumber() {
+            int start = position;
+
+            while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) {
+                position++;
+            }
+
+            try {
+                return new BigDecimal(json.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number");
+            }
+        }
+
+        private Object readLiteral(String literal, Object value) {
+            if (!json.startsWith(literal, position)) {
+                throw error("Unexpected character '" + json.charAt(position) + "'");
+            }
+
+            position += literal.length();
+            return value;
+        }
+
+        void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private char peek() {
+            if (position >= json.length()) {
+                throw error("Unexpected end of JSON");
+            }
+
+            return json.charAt(position);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+
+            position++;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at position " + position + ": " + message + ".");
+        }
+    }
+}
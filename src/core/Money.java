@@ -0,0 +1,91 @@
+package core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a whole number of minor units (cents). Arithmetic is exact and
+ * overflow is reported rather than wrapped. Stored in the database as INTEGER cents.
+ */
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    private static final int SCALE = 2;
+    /** Digits and exponents beyond this cannot fit in a long of cents, which has 19 digits */
+    private static final int MAX_DIGITS = 40;
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the amount has more than two decimals or is too large
+     */
+    public static Money of(BigDecimal amount) {
+        // Checked first, since setScale would expand an exponent like 1e999999999 into a billion digits
+        if (amount.precision() > MAX_DIGITS || Math.abs((long) amount.scale()) > MAX_DIGITS) {
+            throw new IllegalArgumentException("Not a valid amount of money: " + amount);
+        }
+
+        try {
+            return ofMinor(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not a valid amount of money: " + amount.toPlainString(), e);
+        }
+    }
+
+    /**
+     * @throws NumberFormatException If the text is not a number
+     * @throws IllegalArgumentException If the amount has more than two decimals or is too large
+     */
+    public static Money parse(String amount) {
+        return of(new BigDecimal(amount.trim()));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money times(int quantity) {
+        return ofMinor(Math.multiplyExact(minorUnits, quantity));
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        return minorUnits == ((Money) o).minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
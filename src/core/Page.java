@@ -0,0 +1,42 @@
+package core;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. The next page is requested with
+ * {@link #getNextCursor()}, the key of the last item on this page.
+ *
+ * @param <T> The item type
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final int nextCursor;
+    private final boolean hasMore;
+
+    public Page(List<T> items, int nextCursor, boolean hasMore) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items.size() +
+                ", nextCursor=" + nextCursor +
+                ", hasMore=" + hasMore +
+                '}';
+    }
+}
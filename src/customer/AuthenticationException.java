@@ -0,0 +1,12 @@
+package customer;
+
+/**
+ * Thrown when a login fails, or when a session token is unknown or has expired.
+ */
+public class AuthenticationException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public AuthenticationException(String message) {
+        super(message);
+    }
+}
@@ -18,6 +18,10 @@ public class Customer {
         this(0, name, email, phone, address, password);
     }
 
+    public Customer(Customer customer) {
+        this(customer.customerId, customer.name, customer.email, customer.phone, customer.address, customer.password);
+    }
+
     public Customer(int customerId, String name, String email, String phone, String address, String password) {
         this.customerId = customerId;
         this.name = name;
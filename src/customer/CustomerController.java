@@ -1,12 +1,18 @@
 package customer;
 
 import core.CoreController;
+import core.ImportResult;
+import core.Page;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Scanner;
 
 public class CustomerController extends CoreController {
+    private static final int PAGE_SIZE = 20;
+
     private final CustomerService customerService;
 
     public CustomerController(CustomerService customerService) {
@@ -26,6 +32,8 @@ public class CustomerController extends CoreController {
             System.out.println("3. View customer");
             System.out.println("4. Update customer");
             System.out.println("5. Delete customer");
+            System.out.println("6. Import customers from CSV");
+            System.out.println("7. Export customers to CSV");
             System.out.println("0. Back");
             System.out.print("Choose an option: ");
 
@@ -38,7 +46,7 @@ public class CustomerController extends CoreController {
                     break;
 
                 case 2:
-                    viewCustomers();
+                    viewCustomers(scanner);
                     break;
 
                 case 3:
@@ -53,6 +61,14 @@ public class CustomerController extends CoreController {
                     deleteCustomer(scanner);
                     break;
 
+                case 6:
+                    importCustomers(scanner);
+                    break;
+
+                case 7:
+                    exportCustomers(scanner);
+                    break;
+
                 case 0:
                     break;
 
@@ -90,21 +106,34 @@ public class CustomerController extends CoreController {
         }
     }
 
-    private void viewCustomers() throws SQLException {
-        List<Customer> customers = customerService.getAllCustomers();
-
+    private void viewCustomers(Scanner scanner) throws SQLException {
         System.out.println();
         System.out.println("--- View customers ---");
 
-        for (int i = 0; i < customers.size(); i++) {
-            Customer customer = customers.get(i);
-            System.out.println("Customer ID: " + customer.getCustomerId());
-            System.out.println("Name: " + customer.getName());
-            System.out.println("Email: " + customer.getEmail());
+        Page<Customer> page = customerService.getCustomersPage(0, PAGE_SIZE);
+
+        while (true) {
+            List<Customer> customers = page.getItems();
 
-            if (i < customers.size() - 1) {
-                System.out.println();
+            for (int i = 0; i < customers.size(); i++) {
+                Customer customer = customers.get(i);
+                System.out.println("Customer ID: " + customer.getCustomerId());
+                System.out.println("Name: " + customer.getName());
+                System.out.println("Email: " + customer.getEmail());
+
+                if (i < customers.size() - 1) {
+                    System.out.println();
+                }
             }
+
+            if (!page.hasMore()) break;
+
+            System.out.println();
+            String more = getStringInput(scanner, "Show more customers? (y/n): ");
+            if (!more.equalsIgnoreCase("y")) break;
+
+            System.out.println();
+            page = customerService.getCustomersPage(page.getNextCursor(), PAGE_SIZE);
         }
     }
 
@@ -198,4 +227,41 @@ public class CustomerController extends CoreController {
             System.err.println("An error occurred while processing the request: " + e.getMessage());
         }
     }
+
+    private void importCustomers(Scanner scanner) {
+        System.out.println();
+        System.out.println("--- Import customers from CSV ---");
+
+        String file = getStringInput(scanner, "Enter file path: ");
+
+        try {
+            ImportResult result = customerService.importCustomers(Path.of(file),
+                    rows -> System.out.println("Read " + rows + " rows..."));
+            printImportResult(result);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Could not read " + file + ": " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("An error occurred while processing the request: " + e.getMessage());
+        }
+    }
+
+    private void exportCustomers(Scanner scanner) {
+        System.out.println();
+        System.out.println("--- Export customers to CSV ---");
+
+        String file = getStringInput(scanner, "Enter file path: ");
+
+        try {
+            int count = customerService.exportCustomers(Path.of(file));
+            System.out.println("Exported " + count + " customers to " + file + ".");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Could not write " + file + ": " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("An error occurred while processing the request: " + e.getMessage());
+        }
+    }
 }
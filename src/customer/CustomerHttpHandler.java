@@ -0,0 +1,175 @@
+package customer;
+
+import com.sun.net.httpserver.HttpExchange;
+import core.CoreHttpHandler;
+import core.Page;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON endpoints for customers:
+ * <ul>
+ *     <li>{@code GET /customers?after=&limit=} lists a page of customers</li>
+ *     <li>{@code GET /customers/{id}} returns one customer</li>
+ *     <li>{@code POST /customers} creates a customer</li>
+ *     <li>{@code PUT /customers/{id}} changes the fields given in the body</li>
+ *     <li>{@code DELETE /customers/{id}} deletes a customer</li>
+ *     <li>{@code POST /customers/login} checks an email and password and returns a session token</li>
+ *     <li>{@code POST /customers/logout} ends the session of the bearer token</li>
+ *     <li>{@code GET /customers/me} returns the customer of the bearer token</li>
+ * </ul>
+ * Passwords are accepted but never sent back. Session tokens are sent in an
+ * {@code Authorization: Bearer} header.
+ */
+public class CustomerHttpHandler extends CoreHttpHandler {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private final CustomerService customerService;
+
+    public CustomerHttpHandler(CustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    @Override
+    protected void route(HttpExchange exchange, List<String> path) throws SQLException, IOException {
+        String method = exchange.getRequestMethod();
+
+        if (path.isEmpty()) {
+            switch (method) {
+                case "GET" -> listCustomers(exchange);
+                case "POST" -> createCustomer(exchange);
+                default -> throw methodNotAllowed(exchange);
+            }
+        } else if (path.size() == 1 && path.get(0).equals("login")) {
+            if (!method.equals("POST")) {
+                throw methodNotAllowed(exchange);
+            }
+
+            login(exchange);
+        } else if (path.size() == 1 && path.get(0).equals("logout")) {
+            if (!method.equals("POST")) {
+                throw methodNotAllowed(exchange);
+            }
+
+            customerService.logout(bearerToken(exchange));
+            sendNoContent(exchange);
+        } else if (path.size() == 1 && path.get(0).equals("me")) {
+            if (!method.equals("GET")) {
+                throw methodNotAllowed(exchange);
+            }
+
+            sendJson(exchange, 200, toJson(authenticate(exchange)));
+        } else if (path.size() == 1) {
+            int customerId = pathId(path.get(0));
+
+            switch (method) {
+                case "GET" -> getCustomer(exchange, customerId);
+                case "PUT" -> updateCustomer(exchange, customerId);
+                case "DELETE" -> deleteCustomer(exchange, customerId);
+                default -> throw methodNotAllowed(exchange);
+            }
+        } else {
+            throw notFound("No resource at " + exchange.getRequestURI().getPath() + ".");
+        }
+    }
+
+    private void listCustomers(HttpExchange exchange) throws SQLException, IOException {
+        Map<String, String> parameters = queryParameters(exchange);
+        Page<Customer> page = customerService.getCustomersPage(
+                intParameter(parameters, "after", 0), pageSizeParameter(parameters, DEFAULT_PAGE_SIZE));
+        List<Map<String, Object>> items = new ArrayList<>(page.getItems().size());
+
+        for (Customer customer : page.getItems()) {
+            items.add(toJson(customer));
+        }
+
+        sendJson(exchange, 200, page(page, items));
+    }
+
+    private void getCustomer(HttpExchange exchange, int customerId) throws SQLException, IOException {
+        sendJson(exchange, 200, toJson(findCustomer(customerId)));
+    }
+
+    private void createCustomer(HttpExchange exchange) throws SQLException, IOException {
+        Map<String, Object> json = readJsonObject(exchange);
+
+        Customer customer = customerService.createCustomer(new Customer(
+                stringField(json, "name"),
+                stringField(json, "email"),
+                stringField(json, "phone"),
+                stringField(json, "address"),
+                stringField(json, "password")
+        ));
+
+        sendJson(exchange, 201, toJson(customer));
+    }
+
+    private void updateCustomer(HttpExchange exchange, int customerId) throws SQLException, IOException {
+        Customer customer = findCustomer(customerId);
+        Map<String, Object> json = readJsonObject(exchange);
+
+        if (json.containsKey("name")) customer.setName(stringField(json, "name"));
+        if (json.containsKey("email")) customer.setEmail(stringField(json, "email"));
+        if (json.containsKey("phone")) customer.setPhone(stringField(json, "phone"));
+        if (json.containsKey("address")) customer.setAddress(stringField(json, "address"));
+        if (json.containsKey("password")) customer.setPassword(stringField(json, "password"));
+
+        customerService.updateCustomer(customer);
+        sendJson(exchange, 200, toJson(customer));
+    }
+
+    private void deleteCustomer(HttpExchange exchange, int customerId) throws SQLException, IOException {
+        findCustomer(customerId);
+        customerService.deleteCustomer(customerId);
+        sendNoContent(exchange);
+    }
+
+    private void login(HttpExchange exchange) throws SQLException, IOException {
+        Map<String, Object> json = readJsonObject(exchange);
+        Session session;
+
+        try {
+            session = customerService.login(stringField(json, "email"), stringField(json, "password"));
+        } catch (AuthenticationException e) {
+            throw unauthorized(exchange, e.getMessage());
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("token", session.getToken());
+        body.put("customerId", session.getCustomerId());
+        sendJson(exchange, 200, body);
+    }
+
+    private Customer authenticate(HttpExchange exchange) throws SQLException {
+        try {
+            return customerService.authenticate(bearerToken(exchange));
+        } catch (AuthenticationException e) {
+            throw unauthorized(exchange, e.getMessage());
+        }
+    }
+
+    private Customer findCustomer(int customerId) throws SQLException {
+        Customer customer = customerService.getCustomerById(customerId);
+
+        if (customer == null) {
+            throw notFound("No customer found with ID " + customerId + ".");
+        }
+
+        return customer;
+    }
+
+    private static Map<String, Object> toJson(Customer customer) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("customerId", customer.getCustomerId());
+        json.put("name", customer.getName());
+        json.put("email", customer.getEmail());
+        json.put("phone", customer.getPhone());
+        json.put("address", customer.getAddress());
+        return json;
+    }
+}
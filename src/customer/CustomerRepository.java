@@ -1,20 +1,87 @@
 package customer;
 
+import core.CsvWriter;
+import core.Page;
+import database.ConnectionPool;
+import database.MultiRowInsert;
+import database.PooledConnection;
+import database.QueryPlanCheck;
+import database.ResultSetStream;
+
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public class CustomerRepository {
-    private final Connection connection;
+    // Lookups by email are sent in fixed-size batches so that they all share one prepared statement
+    private static final int EMAIL_BATCH_SIZE = 64;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static final String CREATE_QUERY =
+            "INSERT INTO customers (name, email, phone, address, password) VALUES (?, ?, ?, ?, ?)";
+
+    private static final MultiRowInsert CREATE_ALL_QUERIES = new MultiRowInsert(
+            "INSERT INTO customers (name, email, phone, address, password) VALUES ", "(?, ?, ?, ?, ?)");
+
+    private static final String GET_ALL_QUERY = "SELECT customer_id, name, email FROM customers";
+
+    private static final String GET_PAGE_QUERY =
+            "SELECT customer_id, name, email FROM customers WHERE customer_id > ? ORDER BY customer_id LIMIT ?";
+
+    private static final String STREAM_ALL_QUERY =
+            "SELECT customer_id, name, email FROM customers ORDER BY customer_id";
+
+    private static final String EXPORT_QUERY =
+            "SELECT customer_id, name, email, phone, address FROM customers ORDER BY customer_id";
+
+    private static final String GET_EXISTING_EMAILS_QUERY = "SELECT email FROM customers WHERE email IN (%s)"
+            .formatted(String.join(", ", Collections.nCopies(EMAIL_BATCH_SIZE, "?")));
+
+    private static final String GET_BY_ID_QUERY = "SELECT * FROM customers WHERE customer_id = ?";
+
+    private static final String GET_PROFILE_BY_ID_QUERY =
+            "SELECT customer_id, name, email, phone, address FROM customers WHERE customer_id = ?";
+
+    private static final String GET_BY_EMAIL_QUERY =
+            "SELECT customer_id, name, email, phone, address, password FROM customers WHERE email = ?";
+
+    private static final String UPDATE_QUERY =
+            "UPDATE customers SET name = ?, email = ?, phone = ?, address = ?, password = ? WHERE customer_id = ?";
+
+    private static final String DELETE_QUERY = "DELETE FROM customers WHERE customer_id = ?";
+
+    private final ConnectionPool connectionPool;
 
-    public CustomerRepository(Connection connection) {
-        this.connection = connection;
+    public CustomerRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
     }
 
-    public Customer create(Customer customer) throws SQLException {
-        String query = "INSERT INTO customers (name, email, phone, address, password) VALUES (?, ?, ?, ?, ?)";
+    public static List<QueryPlanCheck> queryPlanChecks() {
+        return List.of(
+                new QueryPlanCheck("CustomerRepository.create", CREATE_QUERY),
+                new QueryPlanCheck("CustomerRepository.getAll", GET_ALL_QUERY, "customers"),
+                new QueryPlanCheck("CustomerRepository.getPage", GET_PAGE_QUERY),
+                new QueryPlanCheck("CustomerRepository.streamAll", STREAM_ALL_QUERY, "customers"),
+                new QueryPlanCheck("CustomerRepository.exportCsv", EXPORT_QUERY, "customers"),
+                new QueryPlanCheck("CustomerRepository.findExistingEmails", GET_EXISTING_EMAILS_QUERY),
+                new QueryPlanCheck("CustomerRepository.getById", GET_BY_ID_QUERY),
+                new QueryPlanCheck("CustomerRepository.getProfileById", GET_PROFILE_BY_ID_QUERY),
+                new QueryPlanCheck("CustomerRepository.getByEmail", GET_BY_EMAIL_QUERY),
+                new QueryPlanCheck("CustomerRepository.update", UPDATE_QUERY),
+                new QueryPlanCheck("CustomerRepository.delete", DELETE_QUERY)
+        );
+    }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+    public Customer create(Customer customer) throws SQLException {
+        try (PooledConnection connection = connectionPool.write();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("CustomerRepository.create", CREATE_QUERY,
+                             Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setString(1, customer.getName());
             pstmt.setString(2, customer.getEmail());
             pstmt.setObject(3, customer.getPhone());
@@ -46,12 +113,93 @@ public class CustomerRepository {
         }
     }
 
+    /**
+     * Inserts many customers in a single transaction, using multi-row inserts.
+     *
+     * @param customers The customers to insert
+     * @throws SQLException If a database access error occurs, such as an email that is already
+     * taken; nothing is inserted in that case
+     */
+    public void createAll(List<Customer> customers) throws SQLException {
+        if (customers.isEmpty()) {
+            return;
+        }
+
+        try (PooledConnection connection = connectionPool.write()) {
+            Connection transaction = connection.getConnection();
+
+            try {
+                transaction.setAutoCommit(false);
+
+                for (int offset = 0; offset < customers.size(); ) {
+                    int rows = CREATE_ALL_QUERIES.rowsFor(customers.size() - offset);
+
+                    try (PreparedStatement pstmt =
+                                 connection.prepareStatement("CustomerRepository.createAll",
+                                         CREATE_ALL_QUERIES.sql(rows))) {
+                        for (int i = 0; i < rows; i++) {
+                            Customer customer = customers.get(offset + i);
+                            pstmt.setString(5 * i + 1, customer.getName());
+                            pstmt.setString(5 * i + 2, customer.getEmail());
+                            pstmt.setObject(5 * i + 3, customer.getPhone());
+                            pstmt.setObject(5 * i + 4, customer.getAddress());
+                            pstmt.setString(5 * i + 5, customer.getPassword());
+                        }
+
+                        pstmt.executeUpdate();
+                    }
+
+                    offset += rows;
+                }
+
+                transaction.commit();
+            } catch (SQLException | RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * @param emails The emails to look for
+     * @return The subset of {@code emails} that already belong to a customer
+     * @throws SQLException If a database access error occurs
+     */
+    public Set<String> findExistingEmails(List<String> emails) throws SQLException {
+        Set<String> existing = new HashSet<>();
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("CustomerRepository.findExistingEmails", GET_EXISTING_EMAILS_QUERY)) {
+            for (int offset = 0; offset < emails.size(); offset += EMAIL_BATCH_SIZE) {
+                // Unused placeholders stay NULL, which matches nothing
+                for (int i = 0; i < EMAIL_BATCH_SIZE; i++) {
+                    if (offset + i < emails.size()) {
+                        pstmt.setString(i + 1, emails.get(offset + i));
+                    } else {
+                        pstmt.setNull(i + 1, Types.VARCHAR);
+                    }
+                }
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        existing.add(rs.getString("email"));
+                    }
+                }
+            }
+        }
+
+        return existing;
+    }
+
     public List<Customer> getAll() throws SQLException {
-        String query = "SELECT customer_id, name, email FROM customers";
         List<Customer> customers = new ArrayList<>();
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
+        try (PooledConnection connection = connectionPool.read();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(GET_ALL_QUERY)) {
 
             while (rs.next()) {
                 Customer customer = new Customer(
@@ -67,12 +215,147 @@ public class CustomerRepository {
         return customers;
     }
 
+    /**
+     * Returns the customers with an ID greater than the cursor, in ID order.
+     *
+     * @param afterCustomerId The cursor; 0 for the first page
+     * @param limit The maximum number of customers on the page
+     * @return The page
+     * @throws SQLException If a database access error occurs
+     */
+    public Page<Customer> getPage(int afterCustomerId, int limit) throws SQLException {
+        List<Customer> customers = new ArrayList<>(limit);
+        boolean hasMore = false;
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("CustomerRepository.getPage", GET_PAGE_QUERY)) {
+            pstmt.setInt(1, afterCustomerId);
+            pstmt.setInt(2, limit + 1);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (customers.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+
+                    customers.add(mapCustomerSummary(rs));
+                }
+            }
+        }
+
+        int nextCursor = customers.isEmpty() ?
+                afterCustomerId : customers.get(customers.size() - 1).getCustomerId();
+        return new Page<>(customers, nextCursor, hasMore);
+    }
+
+    /**
+     * Streams the ID, name and email of every customer in ID order without loading the table
+     * into memory. The stream holds a read connection until it is closed.
+     *
+     * @param fetchSize The number of rows the driver should fetch at a time
+     * @return The customers; must be closed
+     * @throws SQLException If the query cannot be started
+     */
+    public Stream<Customer> streamAll(int fetchSize) throws SQLException {
+        return ResultSetStream.query(
+                connectionPool, "CustomerRepository.streamAll", STREAM_ALL_QUERY, fetchSize,
+                CustomerRepository::mapCustomerSummary);
+    }
+
+    /**
+     * Writes a header and every customer as CSV, in ID order, straight from a forward-only
+     * result set so that the table is never held in memory. Passwords are not exported.
+     *
+     * @param writer The CSV to write to
+     * @return The number of customers written
+     * @throws SQLException If a database access error occurs
+     * @throws IOException If the CSV cannot be written
+     */
+    public int exportCsv(CsvWriter writer) throws SQLException, IOException {
+        int count = 0;
+        writer.writeRow("customer_id", "name", "email", "phone", "address");
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("CustomerRepository.exportCsv", EXPORT_QUERY)) {
+            pstmt.setFetchSize(EXPORT_FETCH_SIZE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    writer.writeRow(
+                            Integer.toString(rs.getInt("customer_id")),
+                            rs.getString("name"),
+                            rs.getString("email"),
+                            rs.getString("phone"),
+                            rs.getString("address")
+                    );
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
     public Customer getById(int customerId) throws SQLException {
-        String query = "SELECT * FROM customers WHERE customer_id = ?";
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("CustomerRepository.getById", GET_BY_ID_QUERY)) {
+            pstmt.setInt(1, customerId);
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Customer(
+                            rs.getInt("customer_id"),
+                            rs.getString("name"),
+                            rs.getString("email"),
+                            rs.getString("phone"),
+                            rs.getString("address"),
+                            rs.getString("password")
+                    );
+                } else {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The customer without the password, or null if there is none
+     * @throws SQLException If a database access error occurs
+     */
+    public Customer getProfileById(int customerId) throws SQLException {
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("CustomerRepository.getProfileById", GET_PROFILE_BY_ID_QUERY)) {
             pstmt.setInt(1, customerId);
 
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Customer(
+                            rs.getInt("customer_id"),
+                            rs.getString("name"),
+                            rs.getString("email"),
+                            rs.getString("phone"),
+                            rs.getString("address"),
+                            null
+                    );
+                } else {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The customer including the password, or null if there is none
+     * @throws SQLException If a database access error occurs
+     */
+    public Customer getByEmail(String email) throws SQLException {
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("CustomerRepository.getByEmail", GET_BY_EMAIL_QUERY)) {
+            pstmt.setString(1, email);
+
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
                     return new Customer(
@@ -91,10 +374,8 @@ public class CustomerRepository {
     }
 
     public Customer update(int customerId, Customer updatedCustomer) throws SQLException {
-        String query = "UPDATE customers SET name = ?, email = ?, phone = ?, address = ?, password = ?" +
-                       " WHERE customer_id = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (PooledConnection connection = connectionPool.write();
+             PreparedStatement pstmt = connection.prepareStatement("CustomerRepository.update", UPDATE_QUERY)) {
             pstmt.setString(1, updatedCustomer.getName());
             pstmt.setString(2, updatedCustomer.getEmail());
             pstmt.setObject(
@@ -119,11 +400,18 @@ public class CustomerRepository {
     }
 
     public void delete(int customerId) throws SQLException {
-        String query = "DELETE FROM customers WHERE customer_id = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (PooledConnection connection = connectionPool.write();
+             PreparedStatement pstmt = connection.prepareStatement("CustomerRepository.delete", DELETE_QUERY)) {
             pstmt.setInt(1, customerId);
             pstmt.executeUpdate();
         }
     }
+
+    private static Customer mapCustomerSummary(ResultSet rs) throws SQLException {
+        return new Customer(
+                rs.getInt("customer_id"),
+                rs.getString("name"),
+                rs.getString("email")
+        );
+    }
 }
@@ -1,17 +1,47 @@
 package customer;
 
+import cache.CacheStats;
+import cache.ExpiringCache;
+import core.CsvColumns;
+import core.CsvReader;
+import core.CsvWriter;
+import core.ImportResult;
+import core.Page;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
 
 public class CustomerService {
     private static final String EMAIL_REGEX =
             "^[a-zA-Z0-9_+&*-]+(?:\\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,7}$";
+    private static final int IMPORT_CHUNK_SIZE = Integer.getInteger("webbutiken.import.chunkSize", 10_000);
 
     private final CustomerRepository customerRepository;
+    private final SessionStore sessionStore;
+    // Customers without their password, for requests made in a session
+    private final ExpiringCache<Integer, Customer> profileCache;
 
     public CustomerService(CustomerRepository customerRepository) {
+        this(customerRepository, SessionStore.fromSystemProperties(), new ExpiringCache<>(
+                Integer.getInteger("webbutiken.customerCache.maxSize", 10_000),
+                Duration.ofSeconds(Long.getLong("webbutiken.customerCache.ttlSeconds", 300L))));
+    }
+
+    public CustomerService(CustomerRepository customerRepository, SessionStore sessionStore,
+                           ExpiringCache<Integer, Customer> profileCache) {
         this.customerRepository = customerRepository;
+        this.sessionStore = sessionStore;
+        this.profileCache = profileCache;
     }
 
     public Customer createCustomer(Customer customer) throws SQLException {
@@ -23,10 +53,95 @@ public class CustomerService {
         return customerRepository.getAll();
     }
 
+    public Page<Customer> getCustomersPage(int afterCustomerId, int pageSize) throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1.");
+        }
+
+        return customerRepository.getPage(afterCustomerId, pageSize);
+    }
+
+    public Stream<Customer> streamAllCustomers(int fetchSize) throws SQLException {
+        return customerRepository.streamAll(fetchSize);
+    }
+
     public Customer getCustomerById(int customerId) throws SQLException {
         return customerRepository.getById(customerId);
     }
 
+    /**
+     * Checks the email and password of a customer and starts a session.
+     *
+     * @throws AuthenticationException If there is no customer with that email and password
+     * @throws SQLException If a database access error occurs
+     */
+    public Session login(String email, String password) throws SQLException {
+        if (isNullOrEmpty(email) || isNullOrEmpty(password)) {
+            throw new IllegalArgumentException("Email and password are required.");
+        }
+
+        Customer customer = customerRepository.getByEmail(email.trim());
+
+        // Compared in constant time so the response time does not reveal how much of a password matched
+        if (customer == null || !MessageDigest.isEqual(
+                customer.getPassword().getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8))) {
+            throw new AuthenticationException("Wrong email or password.");
+        }
+
+        // Not cached here: a login racing a change to the customer could cache the old row.
+        // authenticate loads the profile through the cache, which guards against that.
+        return sessionStore.create(customer.getCustomerId());
+    }
+
+    /**
+     * Returns the customer of a session. The customer is served from memory, so requests made in
+     * a session do not read the customer from the database.
+     *
+     * @param token The session token
+     * @return The customer, without the password
+     * @throws AuthenticationException If the session is unknown or has expired, or the customer was deleted
+     * @throws SQLException If a database access error occurs
+     */
+    public Customer authenticate(String token) throws SQLException {
+        Session session = getSession(token);
+        Customer customer = profileCache.get(session.getCustomerId(), customerRepository::getProfileById);
+
+        if (customer == null) {
+            sessionStore.invalidate(token);
+            throw new AuthenticationException("The customer of this session no longer exists.");
+        }
+
+        return new Customer(customer);
+    }
+
+    /**
+     * Checks a session token without looking up its customer, for requests that only need to
+     * know who is asking.
+     *
+     * @throws AuthenticationException If the session is unknown or has expired
+     */
+    public Session getSession(String token) {
+        Session session = sessionStore.get(token);
+
+        if (session == null) {
+            throw new AuthenticationException("Not logged in, or the session has expired.");
+        }
+
+        return session;
+    }
+
+    public void logout(String token) {
+        sessionStore.invalidate(token);
+    }
+
+    public int getSessionCount() {
+        return sessionStore.size();
+    }
+
+    public CacheStats getProfileCacheStats() {
+        return profileCache.getStats();
+    }
+
     public boolean updateCustomer(Customer customer) throws SQLException {
         Customer existingCustomer = customerRepository.getById(customer.getCustomerId());
 
@@ -37,7 +152,12 @@ public class CustomerService {
         validateCustomerInput(customer);
 
         if (!existingCustomer.equals(customer)) {
-            customerRepository.update(customer.getCustomerId(), customer);
+            try {
+                customerRepository.update(customer.getCustomerId(), customer);
+            } finally {
+                profileCache.invalidate(customer.getCustomerId());
+            }
+
             return true;
         } else {
             return false;
@@ -51,7 +171,125 @@ public class CustomerService {
             throw new IllegalArgumentException("No customer found with ID " + customerId + ".");
         }
 
-        customerRepository.delete(customerId);
+        try {
+            customerRepository.delete(customerId);
+        } finally {
+            profileCache.invalidate(customerId);
+            // Requests that only check the session, such as cart changes, must not outlive the customer
+            sessionStore.invalidateCustomer(customerId);
+        }
+    }
+
+    /**
+     * Imports customers from a CSV file with a header row containing {@code name}, {@code email}
+     * and {@code password}, and optionally {@code phone} and {@code address}. Rows are validated
+     * like {@link #createCustomer}; rows whose email is taken, by an existing customer or an
+     * earlier row, are rejected. Rows are inserted in chunks of {@code webbutiken.import.chunkSize},
+     * each in its own transaction, so chunks committed before a database error stay imported.
+     *
+     * @param file The CSV file
+     * @param progress Called with the number of rows read after every chunk
+     * @return How many customers were imported and why rows were rejected
+     * @throws IllegalArgumentException If a required column is missing
+     * @throws IOException If the file cannot be read
+     * @throws SQLException If a database access error occurs
+     */
+    public ImportResult importCustomers(Path file, IntConsumer progress) throws IOException, SQLException {
+        ImportResult result = new ImportResult();
+
+        try (CsvReader reader = CsvReader.open(file)) {
+            String[] header = reader.readRow();
+
+            if (header == null) {
+                return result;
+            }
+
+            CsvColumns columns = new CsvColumns(header, List.of("name", "email", "password"));
+            List<Customer> customers = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            List<Long> lineNumbers = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            Set<String> chunkEmails = new HashSet<>();
+            int rows = 0;
+            String[] row;
+
+            while ((row = reader.readRow()) != null) {
+                rows++;
+
+                try {
+                    Customer customer = new Customer(
+                            columns.get(row, "name"),
+                            columns.get(row, "email"),
+                            columns.get(row, "phone"),
+                            columns.get(row, "address"),
+                            columns.get(row, "password")
+                    );
+                    validateCustomerInput(customer);
+
+                    // Earlier chunks are already in the database, see importChunk
+                    if (!chunkEmails.add(customer.getEmail())) {
+                        throw new IllegalArgumentException("Email " + customer.getEmail() + " appears more than once.");
+                    }
+
+                    customers.add(customer);
+                    lineNumbers.add(reader.getLineNumber());
+                } catch (IllegalArgumentException e) {
+                    result.reject(reader.getLineNumber(), e.getMessage());
+                }
+
+                if (customers.size() == IMPORT_CHUNK_SIZE) {
+                    importChunk(customers, lineNumbers, result);
+                    chunkEmails.clear();
+                    progress.accept(rows);
+                }
+            }
+
+            importChunk(customers, lineNumbers, result);
+            progress.accept(rows);
+        }
+
+        return result;
+    }
+
+    /**
+     * Exports every customer except their password to a CSV file.
+     *
+     * @param file The file to create or overwrite
+     * @return The number of customers exported
+     * @throws IOException If the file cannot be written
+     * @throws SQLException If a database access error occurs
+     */
+    public int exportCustomers(Path file) throws IOException, SQLException {
+        try (CsvWriter writer = CsvWriter.open(file)) {
+            return customerRepository.exportCsv(writer);
+        }
+    }
+
+    private void importChunk(List<Customer> customers, List<Long> lineNumbers, ImportResult result)
+            throws SQLException {
+        if (customers.isEmpty()) {
+            return;
+        }
+
+        List<String> emails = new ArrayList<>(customers.size());
+
+        for (Customer customer : customers) {
+            emails.add(customer.getEmail());
+        }
+
+        Set<String> existingEmails = customerRepository.findExistingEmails(emails);
+        List<Customer> newCustomers = new ArrayList<>(customers.size());
+
+        for (int i = 0; i < customers.size(); i++) {
+            if (existingEmails.contains(customers.get(i).getEmail())) {
+                result.reject(lineNumbers.get(i), "Email " + customers.get(i).getEmail() + " is already taken.");
+            } else {
+                newCustomers.add(customers.get(i));
+            }
+        }
+
+        customerRepository.createAll(newCustomers);
+        result.addImported(newCustomers.size());
+        customers.clear();
+        lineNumbers.clear();
     }
 
     private boolean isNullOrEmpty(String string) {
@@ -0,0 +1,40 @@
+package customer;
+
+import java.time.Instant;
+
+/**
+ * A logged in customer, identified by an unguessable token that the client sends with every
+ * request. Immutable.
+ */
+public final class Session {
+    private final String token;
+    private final int customerId;
+    private final Instant createdAt;
+
+    public Session(String token, int customerId, Instant createdAt) {
+        this.token = token;
+        this.customerId = customerId;
+        this.createdAt = createdAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        // The token is a credential and stays out of logs
+        return "Session{" +
+                "customerId=" + customerId +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
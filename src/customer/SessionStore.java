@@ -0,0 +1,96 @@
+package customer;
+
+import cache.CacheStats;
+import cache.ExpiringCache;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The sessions of logged in customers, kept in memory only. Looking up a session is a
+ * lock-free map read. Sessions expire a fixed time after login, and the store is bounded:
+ * when it is full, sessions that have not been used recently are dropped first and their
+ * customers have to log in again. Sessions do not survive a restart.
+ * <p>
+ * All sessions of a customer are revoked with {@link #invalidateCustomer}, which records the
+ * time instead of finding the sessions, so the store needs no index by customer.
+ */
+public class SessionStore {
+    private static final int TOKEN_BYTES = 32;
+
+    private final ExpiringCache<String, Session> sessions;
+    private final Duration timeToLive;
+    // Sessions created at or before the time are revoked; kept until such sessions have expired anyway
+    private final Map<Integer, Instant> revokedAt = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public SessionStore(int maxSessions, Duration timeToLive) {
+        this.sessions = new ExpiringCache<>(maxSessions, timeToLive);
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Configured with the system properties {@code webbutiken.sessions.maxSize} (100,000) and
+     * {@code webbutiken.sessions.ttlMinutes} (30).
+     */
+    public static SessionStore fromSystemProperties() {
+        return new SessionStore(
+                Integer.getInteger("webbutiken.sessions.maxSize", 100_000),
+                Duration.ofMinutes(Long.getLong("webbutiken.sessions.ttlMinutes", 30L)));
+    }
+
+    public Session create(int customerId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+
+        Session session = new Session(
+                Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), customerId, Instant.now());
+        sessions.put(session.getToken(), session);
+        return session;
+    }
+
+    /**
+     * @return The session, or null if the token is unknown or the session has expired
+     */
+    public Session get(String token) {
+        Session session = token == null ? null : sessions.getIfPresent(token);
+
+        if (session != null && !revokedAt.isEmpty()) {
+            Instant revoked = revokedAt.get(session.getCustomerId());
+
+            if (revoked != null && !session.getCreatedAt().isAfter(revoked)) {
+                sessions.invalidate(token);
+                return null;
+            }
+        }
+
+        return session;
+    }
+
+    /**
+     * Ends every current session of a customer, such as when the customer is deleted.
+     */
+    public void invalidateCustomer(int customerId) {
+        Instant now = Instant.now();
+        revokedAt.values().removeIf(revoked -> revoked.plus(timeToLive).isBefore(now));
+        revokedAt.put(customerId, now);
+    }
+
+    public void invalidate(String token) {
+        if (token != null) {
+            sessions.invalidate(token);
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public CacheStats getStats() {
+        return sessions.getStats();
+    }
+}
@@ -0,0 +1,282 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed-size pool of SQLite connections: one writer connection, guarded by a fair lock so
+ * that writes are serialized, and a set of read-only connections that can be used concurrently.
+ * Connections are borrowed per operation and returned by closing the {@link PooledConnection}.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final DatabaseConfig config;
+    private final PooledConnection writer;
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private final BlockingQueue<PooledConnection> readers;
+    private final List<PooledConnection> allReaders = new ArrayList<>();
+    private final StatementCacheStats statementCacheStats = new StatementCacheStats();
+    private final ConnectionPoolStats stats = new ConnectionPoolStats();
+    private final QueryMetrics queryMetrics = new QueryMetrics();
+    private final SlowQueryLog slowQueryLog; // May be null
+    private volatile boolean closed;
+
+    public ConnectionPool(DatabaseConfig config) throws SQLException {
+        this.config = config;
+        this.readers = new ArrayBlockingQueue<>(config.getReadConnections());
+        this.slowQueryLog = config.isQueryMetricsEnabled()
+                ? SlowQueryLog.fromSystemProperties(() -> openConnection(true)) : null;
+
+        // The writer is opened first so that the journal mode is in place before any reader attaches
+        this.writer = newPooledConnection(openConnection(false), true);
+
+        try {
+            for (int i = 0; i < config.getReadConnections(); i++) {
+                PooledConnection reader = newPooledConnection(openConnection(true), false);
+                allReaders.add(reader);
+                readers.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public DatabaseConfig getConfig() {
+        return config;
+    }
+
+    public StatementCacheStats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    public ConnectionPoolStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return The per-query statistics; empty if query metrics are disabled in the configuration
+     */
+    public QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+
+    /**
+     * @return The slow query log, or null if it or query metrics are turned off
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Borrows a read-only connection. The caller must close it to return it to the pool.
+     *
+     * @return A read-only connection
+     * @throws SQLException If the pool is closed or no connection became available in time
+     */
+    public PooledConnection read() throws SQLException {
+        ensureOpen();
+
+        PooledConnection connection = readers.poll();
+
+        if (connection != null) {
+            stats.recordRead();
+            return connection.borrow();
+        }
+
+        try {
+            long start = System.nanoTime();
+            connection = readers.poll(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS);
+
+            if (connection == null) {
+                stats.recordTimeout();
+                throw new SQLException("Timed out waiting for a read connection.");
+            }
+
+            stats.recordContendedRead(System.nanoTime() - start);
+            return connection.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection.", e);
+        }
+    }
+
+    /**
+     * Borrows the single writer connection. Only one thread can hold it at a time; a thread
+     * that already holds it gets the same connection back, so write operations can be nested.
+     *
+     * @return The writer connection
+     * @throws SQLException If the pool is closed or the writer did not become available in time
+     */
+    public PooledConnection write() throws SQLException {
+        ensureOpen();
+
+        // A plain tryLock() would barge past queued writers, so only peek at the lock here
+        boolean contended = writeLock.isLocked() && !writeLock.isHeldByCurrentThread();
+        long start = contended ? System.nanoTime() : 0;
+
+        try {
+            if (!writeLock.tryLock(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                stats.recordTimeout();
+                throw new SQLException("Timed out waiting for the write connection.");
+            }
+
+            if (contended) {
+                stats.recordContendedWrite(System.nanoTime() - start);
+            } else {
+                stats.recordWrite();
+            }
+
+            return writer.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write connection.", e);
+        }
+    }
+
+    /**
+     * Makes every read connection reload the schema. SQLite only notices a schema change made
+     * on another connection when a statement runs, so statements prepared on a reader after a
+     * migration could otherwise fail to see new tables.
+     *
+     * @throws SQLException If a read connection cannot be borrowed or refreshed
+     */
+    public void reloadSchema() throws SQLException {
+        List<PooledConnection> borrowed = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < allReaders.size(); i++) {
+                PooledConnection reader = read();
+                borrowed.add(reader);
+
+                try (Statement stmt = reader.createStatement()) {
+                    stmt.execute("SELECT 1 FROM sqlite_master LIMIT 1");
+                }
+            }
+        } finally {
+            for (PooledConnection reader : borrowed) {
+                reader.close();
+            }
+        }
+    }
+
+    void release(PooledConnection connection) throws SQLException {
+        if (connection.isWriter()) {
+            try {
+                // Only the outermost borrower resets the connection, nested borrowers share its transaction
+                if (writeLock.getHoldCount() == 1) {
+                    resetTransaction(connection.getConnection());
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } else {
+            try {
+                resetTransaction(connection.getConnection());
+            } finally {
+                if (!readers.offer(connection)) {
+                    connection.closePhysical();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) return;
+        closed = true;
+
+        SQLException failure = null;
+
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
+        }
+
+        for (PooledConnection reader : allReaders) {
+            try {
+                reader.closePhysical();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+
+        if (writer != null) {
+            writeLock.lock();
+
+            try {
+                writer.closePhysical();
+            } catch (SQLException e) {
+                failure = e;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed.");
+        }
+    }
+
+    private void resetTransaction(Connection connection) throws SQLException {
+        if (!connection.isClosed() && !connection.getAutoCommit()) {
+            try {
+                connection.rollback();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private PooledConnection newPooledConnection(Connection connection, boolean writer) {
+        StatementCache statementCache =
+                new StatementCache(connection, config.getStatementCacheSize(), statementCacheStats,
+                        config.isQueryMetricsEnabled() ? queryMetrics : null, slowQueryLog);
+        return new PooledConnection(this, connection, statementCache, writer);
+    }
+
+    private Connection openConnection(boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(config.getUrl());
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + config.getBusyTimeoutMillis());
+
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = " + pragmaKeyword(config.getJournalMode()));
+            }
+
+            stmt.execute("PRAGMA synchronous = " + pragmaKeyword(config.getSynchronous()));
+            stmt.execute("PRAGMA cache_size = " + config.getCacheSize());
+            stmt.execute("PRAGMA mmap_size = " + config.getMmapSize());
+
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+
+        return connection;
+    }
+
+    private String pragmaKeyword(String value) {
+        if (value == null || !value.matches("[A-Za-z]+")) {
+            throw new IllegalArgumentException("Invalid pragma value: " + value);
+        }
+
+        return value.toUpperCase();
+    }
+}
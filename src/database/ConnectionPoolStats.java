@@ -0,0 +1,82 @@
+package database;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often borrowers had to wait for a connection, and for how long. An acquisition is
+ * contended when no connection of the requested kind was free at the time of the request.
+ */
+public class ConnectionPoolStats {
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder contendedReads = new LongAdder();
+    private final LongAdder readWaitNanos = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder contendedWrites = new LongAdder();
+    private final LongAdder writeWaitNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    void recordRead() {
+        reads.increment();
+    }
+
+    void recordContendedRead(long waitNanos) {
+        reads.increment();
+        contendedReads.increment();
+        readWaitNanos.add(waitNanos);
+    }
+
+    void recordWrite() {
+        writes.increment();
+    }
+
+    void recordContendedWrite(long waitNanos) {
+        writes.increment();
+        contendedWrites.increment();
+        writeWaitNanos.add(waitNanos);
+    }
+
+    void recordTimeout() {
+        timeouts.increment();
+    }
+
+    public long getReads() {
+        return reads.sum();
+    }
+
+    public long getContendedReads() {
+        return contendedReads.sum();
+    }
+
+    public long getReadWaitNanos() {
+        return readWaitNanos.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getContendedWrites() {
+        return contendedWrites.sum();
+    }
+
+    public long getWriteWaitNanos() {
+        return writeWaitNanos.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{" +
+                "reads=" + getReads() +
+                ", contendedReads=" + getContendedReads() +
+                ", readWaitMillis=" + getReadWaitNanos() / 1_000_000 +
+                ", writes=" + getWrites() +
+                ", contendedWrites=" + getContendedWrites() +
+                ", writeWaitMillis=" + getWriteWaitNanos() / 1_000_000 +
+                ", timeouts=" + getTimeouts() +
+                '}';
+    }
+}
@@ -0,0 +1,114 @@
+package database;
+
+public class DatabaseConfig {
+    private static final String PROPERTY_PREFIX = "webbutiken.db.";
+
+    private final String url;
+    private final int readConnections;
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final int busyTimeoutMillis;
+    private final long acquireTimeoutMillis;
+    private final int statementCacheSize;
+    private final boolean queryMetricsEnabled;
+
+    public DatabaseConfig(String url, int readConnections, String journalMode, String synchronous,
+                          int cacheSize, long mmapSize, int busyTimeoutMillis, long acquireTimeoutMillis,
+                          int statementCacheSize, boolean queryMetricsEnabled) {
+        if (readConnections < 1) {
+            throw new IllegalArgumentException("At least one read connection is required.");
+        }
+
+        this.url = url;
+        this.readConnections = readConnections;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.queryMetricsEnabled = queryMetricsEnabled;
+    }
+
+    /**
+     * Creates a configuration for the given JDBC URL where every setting can be
+     * overridden with a system property, e.g. {@code -Dwebbutiken.db.readConnections=8}.
+     *
+     * @param url The JDBC URL of the database
+     * @return The configuration
+     */
+    public static DatabaseConfig fromSystemProperties(String url) {
+        return new DatabaseConfig(
+                System.getProperty(PROPERTY_PREFIX + "url", url),
+                Integer.getInteger(PROPERTY_PREFIX + "readConnections",
+                        Math.max(2, Runtime.getRuntime().availableProcessors())),
+                System.getProperty(PROPERTY_PREFIX + "journalMode", "WAL"),
+                System.getProperty(PROPERTY_PREFIX + "synchronous", "NORMAL"),
+                Integer.getInteger(PROPERTY_PREFIX + "cacheSize", -16000),
+                Long.getLong(PROPERTY_PREFIX + "mmapSize", 268435456L),
+                Integer.getInteger(PROPERTY_PREFIX + "busyTimeoutMillis", 5000),
+                Long.getLong(PROPERTY_PREFIX + "acquireTimeoutMillis", 30000L),
+                Integer.getInteger(PROPERTY_PREFIX + "statementCacheSize", 64),
+                Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "queryMetrics", "true"))
+        );
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getReadConnections() {
+        return readConnections;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public boolean isQueryMetricsEnabled() {
+        return queryMetricsEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return "DatabaseConfig{" +
+                "url='" + url + '\'' +
+                ", readConnections=" + readConnections +
+                ", journalMode='" + journalMode + '\'' +
+                ", synchronous='" + synchronous + '\'' +
+                ", cacheSize=" + cacheSize +
+                ", mmapSize=" + mmapSize +
+                ", busyTimeoutMillis=" + busyTimeoutMillis +
+                ", acquireTimeoutMillis=" + acquireTimeoutMillis +
+                ", statementCacheSize=" + statementCacheSize +
+                ", queryMetricsEnabled=" + queryMetricsEnabled +
+                '}';
+    }
+}
@@ -0,0 +1,96 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Wraps a result set to add the time spent in {@code next()} and the number of rows to the
+ * execution of its query. SQLite computes rows as they are stepped through, so this is where
+ * most of a query's time goes. The execution is recorded once, when the rows run out or the
+ * result set is closed.
+ */
+final class InstrumentedResultSet implements InvocationHandler {
+    private final ResultSet resultSet;
+    private final ExecutionRecorder recorder;
+    private long nanos;
+    private long rows;
+    private boolean recorded;
+
+    private InstrumentedResultSet(ResultSet resultSet, ExecutionRecorder recorder, long executeNanos) {
+        this.resultSet = resultSet;
+        this.recorder = recorder;
+        this.nanos = executeNanos;
+    }
+
+    static ResultSet wrap(ResultSet resultSet, ExecutionRecorder recorder, long executeNanos) {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class },
+                new InstrumentedResultSet(resultSet, recorder, executeNanos)
+        );
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "next":
+                long start = System.nanoTime();
+
+                try {
+                    boolean hasRow = resultSet.next();
+                    nanos += System.nanoTime() - start;
+
+                    if (hasRow) {
+                        rows++;
+                    } else {
+                        record();
+                    }
+
+                    return hasRow;
+                } catch (SQLException e) {
+                    nanos += System.nanoTime() - start;
+
+                    if (!recorded) {
+                        recorded = true;
+                        recorder.record(nanos, rows, true);
+                    }
+
+                    throw e;
+                }
+
+            case "close":
+                record();
+                resultSet.close();
+                return null;
+
+            case "equals":
+                return proxy == args[0];
+
+            case "hashCode":
+                return System.identityHashCode(proxy);
+
+            default:
+                try {
+                    return method.invoke(resultSet, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+        }
+    }
+
+    private void record() {
+        if (!recorded) {
+            recorded = true;
+            recorder.record(nanos, rows, false);
+        }
+    }
+
+    @FunctionalInterface
+    interface ExecutionRecorder {
+        void record(long nanos, long rows, boolean failed);
+    }
+}
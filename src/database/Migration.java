@@ -0,0 +1,35 @@
+package database;
+
+import java.util.List;
+
+public class Migration {
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+
+    public Migration(int version, String description, String... statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = List.of(statements);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    @Override
+    public String toString() {
+        return "Migration{" +
+                "version=" + version +
+                ", description='" + description + '\'' +
+                '}';
+    }
+}
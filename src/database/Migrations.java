@@ -0,0 +1,151 @@
+package database;
+
+import java.util.List;
+
+/**
+ * The schema migrations of the application, in version order. A migration must never be
+ * changed once it has been released; add a new one instead.
+ */
+public final class Migrations {
+    private Migrations() {}
+
+    public static List<Migration> all() {
+        return List.of(
+                new Migration(1, "Secondary indexes for foreign keys and category lookups",
+                        "CREATE INDEX IF NOT EXISTS idx_orders_customer_id ON orders (customer_id)",
+                        // Covers the order history join so orders_products rows are never visited
+                        """
+                        CREATE INDEX IF NOT EXISTS idx_orders_products_order_id
+                            ON orders_products (order_id, product_id, quantity, unit_price)
+                        """,
+                        "CREATE INDEX IF NOT EXISTS idx_orders_products_product_id ON orders_products (product_id)",
+                        """
+                        CREATE INDEX IF NOT EXISTS idx_products_categories_category_product
+                            ON products_categories (category_id, product_id)
+                        """,
+                        "CREATE INDEX IF NOT EXISTS idx_reviews_product_id ON reviews (product_id)"
+                ),
+                new Migration(2, "Full-text index over product name and description",
+                        // External content table: the text lives in products only, the triggers keep the index in sync
+                        """
+                        CREATE VIRTUAL TABLE IF NOT EXISTS products_fts USING fts5(
+                            name,
+                            description,
+                            content = 'products',
+                            content_rowid = 'product_id',
+                            tokenize = 'unicode61 remove_diacritics 2'
+                        )
+                        """,
+                        "INSERT INTO products_fts (products_fts) VALUES ('rebuild')",
+                        """
+                        CREATE TRIGGER IF NOT EXISTS products_fts_after_insert AFTER INSERT ON products BEGIN
+                            INSERT INTO products_fts (rowid, name, description)
+                            VALUES (new.product_id, new.name, new.description);
+                        END
+                        """,
+                        """
+                        CREATE TRIGGER IF NOT EXISTS products_fts_after_delete AFTER DELETE ON products BEGIN
+                            INSERT INTO products_fts (products_fts, rowid, name, description)
+                            VALUES ('delete', old.product_id, old.name, old.description);
+                        END
+                        """,
+                        """
+                        CREATE TRIGGER IF NOT EXISTS products_fts_after_update
+                        AFTER UPDATE OF name, description ON products BEGIN
+                            INSERT INTO products_fts (products_fts, rowid, name, description)
+                            VALUES ('delete', old.product_id, old.name, old.description);
+                            INSERT INTO products_fts (rowid, name, description)
+                            VALUES (new.product_id, new.name, new.description);
+                        END
+                        """
+                ),
+                new Migration(3, "Line count and total amount kept on each order",
+                        "ALTER TABLE orders ADD COLUMN line_count INTEGER NOT NULL DEFAULT 0",
+                        "ALTER TABLE orders ADD COLUMN total_amount REAL NOT NULL DEFAULT 0",
+                        """
+                        UPDATE orders
+                        SET line_count = (
+                                SELECT COUNT(*) FROM orders_products op WHERE op.order_id = orders.order_id),
+                            total_amount = (
+                                SELECT COALESCE(SUM(op.quantity * op.unit_price), 0)
+                                FROM orders_products op
+                                WHERE op.order_id = orders.order_id)
+                        """
+                ),
+                new Migration(4, "Order history index by customer and date",
+                        // Covers history pages and summaries; replaces the plain customer index, its prefix
+                        """
+                        CREATE INDEX IF NOT EXISTS idx_orders_customer_date
+                            ON orders (customer_id, order_date, order_id, line_count, total_amount)
+                        """,
+                        "DROP INDEX IF EXISTS idx_orders_customer_id"
+                ),
+                new Migration(5, "Money as integer cents instead of REAL",
+                        "ALTER TABLE products ADD COLUMN price_cents INTEGER NOT NULL DEFAULT 0",
+                        "UPDATE products SET price_cents = CAST(ROUND(price * 100) AS INTEGER)",
+                        "ALTER TABLE products DROP COLUMN price",
+                        // Indexed columns cannot be dropped, so both covering indexes are rebuilt around the new ones
+                        "DROP INDEX IF EXISTS idx_orders_products_order_id",
+                        "ALTER TABLE orders_products ADD COLUMN unit_price_cents INTEGER NOT NULL DEFAULT 0",
+                        "UPDATE orders_products SET unit_price_cents = CAST(ROUND(unit_price * 100) AS INTEGER)",
+                        "ALTER TABLE orders_products DROP COLUMN unit_price",
+                        """
+                        CREATE INDEX idx_orders_products_order_id
+                            ON orders_products (order_id, product_id, quantity, unit_price_cents)
+                        """,
+                        "DROP INDEX IF EXISTS idx_orders_customer_date",
+                        "ALTER TABLE orders ADD COLUMN total_amount_cents INTEGER NOT NULL DEFAULT 0",
+                        """
+                        UPDATE orders
+                        SET total_amount_cents = (
+                                SELECT COALESCE(SUM(op.quantity * op.unit_price_cents), 0)
+                                FROM orders_products op
+                                WHERE op.order_id = orders.order_id)
+                        """,
+                        "ALTER TABLE orders DROP COLUMN total_amount",
+                        """
+                        CREATE INDEX idx_orders_customer_date
+                            ON orders (customer_id, order_date, order_id, line_count, total_amount_cents)
+                        """
+                ),
+                new Migration(6, "Category lookups by product",
+                        // Lets the catalog export list the categories of each product without a scan
+                        """
+                        CREATE INDEX IF NOT EXISTS idx_products_categories_product_category
+                            ON products_categories (product_id, category_id)
+                        """
+                ),
+                new Migration(7, "Running review rating totals per product",
+                        // Kept up to date in the same transaction as every review insert
+                        """
+                        CREATE TABLE IF NOT EXISTS product_ratings (
+                            product_id INTEGER PRIMARY KEY,
+                            rating_count INTEGER NOT NULL DEFAULT 0,
+                            rating_sum INTEGER NOT NULL DEFAULT 0,
+                            ratings_1 INTEGER NOT NULL DEFAULT 0,
+                            ratings_2 INTEGER NOT NULL DEFAULT 0,
+                            ratings_3 INTEGER NOT NULL DEFAULT 0,
+                            ratings_4 INTEGER NOT NULL DEFAULT 0,
+                            ratings_5 INTEGER NOT NULL DEFAULT 0,
+                            FOREIGN KEY (product_id) REFERENCES products(product_id)
+                        )
+                        """,
+                        """
+                        INSERT INTO product_ratings (product_id, rating_count, rating_sum,
+                                                     ratings_1, ratings_2, ratings_3, ratings_4, ratings_5)
+                        SELECT product_id, COUNT(*), SUM(rating),
+                               SUM(rating = 1), SUM(rating = 2), SUM(rating = 3), SUM(rating = 4), SUM(rating = 5)
+                        FROM reviews
+                        WHERE product_id IN (SELECT product_id FROM products)
+                        GROUP BY product_id
+                        """,
+                        """
+                        CREATE TRIGGER IF NOT EXISTS product_ratings_after_product_delete
+                        AFTER DELETE ON products BEGIN
+                            DELETE FROM product_ratings WHERE product_id = old.product_id;
+                        END
+                        """
+                )
+        );
+    }
+}
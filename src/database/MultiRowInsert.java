@@ -0,0 +1,52 @@
+package database;
+
+import java.util.Collections;
+
+/**
+ * Builds {@code INSERT ... VALUES (...), (...)} statements for a fixed set of row counts, so
+ * that inserting any number of rows takes few round trips while only a handful of distinct
+ * statements ever reach the statement cache.
+ */
+public final class MultiRowInsert {
+    private static final int[] ROW_COUNTS = {256, 32, 4, 1};
+
+    private final String[] queries = new String[ROW_COUNTS.length];
+
+    /**
+     * @param insert The statement up to and including {@code VALUES }
+     * @param row The placeholders of one row, e.g. {@code (?, ?)}
+     */
+    public MultiRowInsert(String insert, String row) {
+        for (int i = 0; i < ROW_COUNTS.length; i++) {
+            queries[i] = insert + String.join(", ", Collections.nCopies(ROW_COUNTS[i], row));
+        }
+    }
+
+    /**
+     * @param remaining The number of rows still to insert, at least 1
+     * @return The number of rows the next statement should insert
+     */
+    public int rowsFor(int remaining) {
+        int chunk = 0;
+
+        while (ROW_COUNTS[chunk] > remaining) {
+            chunk++;
+        }
+
+        return ROW_COUNTS[chunk];
+    }
+
+    /**
+     * @param rows A row count returned by {@link #rowsFor}
+     * @return The statement that inserts that many rows
+     */
+    public String sql(int rows) {
+        for (int i = 0; i < ROW_COUNTS.length; i++) {
+            if (ROW_COUNTS[i] == rows) {
+                return queries[i];
+            }
+        }
+
+        throw new IllegalArgumentException("No statement inserts " + rows + " rows.");
+    }
+}
@@ -0,0 +1,79 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}. Closing it returns the
+ * underlying connection to the pool instead of closing it. Prepared statements
+ * are served from the connection's {@link StatementCache}.
+ * <p>
+ * Every borrow gets its own instance, including nested borrows of the writer,
+ * so each borrower can only return the connection once.
+ */
+public class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private final boolean writer;
+    private boolean closed;
+
+    PooledConnection(ConnectionPool pool, Connection connection, StatementCache statementCache, boolean writer) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = statementCache;
+        this.writer = writer;
+    }
+
+    /**
+     * @return A new instance for the same connection, for one borrower
+     */
+    PooledConnection borrow() {
+        return new PooledConnection(pool, connection, statementCache, writer);
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public boolean isWriter() {
+        return writer;
+    }
+
+    /**
+     * @param query The name the executions are recorded under in the {@link QueryMetrics}: the
+     *              public repository method running the statement, e.g. {@code ProductRepository.getById},
+     *              also when a private helper prepares it
+     * @param sql The statement
+     */
+    public PreparedStatement prepareStatement(String query, String sql) throws SQLException {
+        return statementCache.prepare(query, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    public PreparedStatement prepareStatement(String query, String sql, int autoGeneratedKeys) throws SQLException {
+        return statementCache.prepare(query, sql, autoGeneratedKeys);
+    }
+
+    public Statement createStatement() throws SQLException {
+        return connection.createStatement();
+    }
+
+    /**
+     * Returns the connection to the pool. Closing it again does nothing, so it cannot unlock
+     * the writer held by another borrower or queue a reader twice.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) return;
+        closed = true;
+
+        pool.release(this);
+    }
+
+    void closePhysical() throws SQLException {
+        statementCache.closeAll();
+        connection.close();
+    }
+}
@@ -0,0 +1,106 @@
+package database;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-query statistics for every statement prepared through a {@link PooledConnection}, keyed
+ * by the query name passed to {@link PooledConnection#prepareStatement(String, String)}: the
+ * public repository method, e.g. {@code ProductRepository.getById}. All statements of a method
+ * record into the same statistics. Published through JMX with {@link #registerMBeans} and as
+ * text with {@link #dump()}.
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+    private static final String DOMAIN = "webbutiken";
+
+    private final Map<String, QueryStats> statsByQuery = new ConcurrentHashMap<>();
+    private volatile MBeanServer mbeanServer;
+
+    /**
+     * Registers this registry and the statistics of every query, including queries seen later.
+     *
+     * @throws JMException If the names are already taken, e.g. by another pool in the same JVM
+     */
+    public void registerMBeans(MBeanServer server) throws JMException {
+        server.registerMBean(this, new ObjectName(DOMAIN + ":type=QueryMetrics"));
+        mbeanServer = server;
+
+        for (QueryStats stats : statsByQuery.values()) {
+            register(stats);
+        }
+    }
+
+    /**
+     * @return The statistics of every query seen so far, ordered by name
+     */
+    public List<QueryStats> getQueryStats() {
+        List<QueryStats> stats = new ArrayList<>(statsByQuery.values());
+        stats.sort(Comparator.comparing(QueryStats::getQuery));
+        return stats;
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        dump.append(String.format("%-45s %10s %7s %10s %9s %9s %9s %9s %9s%n", "query", "executions", "errors",
+                "rows", "mean ms", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+
+        for (QueryStats stats : getQueryStats()) {
+            dump.append(String.format("%-45s %10d %7d %10d %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    stats.getQuery(),
+                    stats.getExecutions(),
+                    stats.getErrors(),
+                    stats.getRows(),
+                    stats.getMeanMillis(),
+                    stats.getP50Millis(),
+                    stats.getP99Millis(),
+                    stats.getP999Millis(),
+                    stats.getMaxMillis()));
+        }
+
+        return dump.toString();
+    }
+
+    /**
+     * Returns the statistics that statements of the given query should record into. Called by
+     * the statement cache on a miss.
+     */
+    QueryStats forQuery(String query) {
+        QueryStats stats = statsByQuery.get(query);
+
+        if (stats == null) {
+            QueryStats created = new QueryStats(query);
+            stats = statsByQuery.putIfAbsent(query, created);
+
+            if (stats == null) {
+                stats = created;
+                register(created);
+            }
+        }
+
+        return stats;
+    }
+
+    private void register(QueryStats stats) {
+        MBeanServer server = mbeanServer;
+
+        if (server == null) {
+            return;
+        }
+
+        try {
+            server.registerMBean(stats, new ObjectName(DOMAIN + ":type=Query,name=" + stats.getQuery()));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered by registerMBeans() at the same time
+        } catch (JMException e) {
+            System.err.println("Could not register the statistics of " + stats.getQuery() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package database;
+
+/**
+ * The JMX view of all query statistics, registered as {@code webbutiken:type=QueryMetrics}.
+ */
+public interface QueryMetricsMXBean {
+    /**
+     * @return A table of the statistics of every query, as printed by {@link QueryMetrics#dump()}
+     */
+    String dump();
+}
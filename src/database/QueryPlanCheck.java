@@ -0,0 +1,32 @@
+package database;
+
+import java.util.Set;
+
+/**
+ * A repository query whose plan is verified by {@link QueryPlanVerifier}. Tables that the
+ * query is expected to read in full (listings, small lookup tables) are declared up front,
+ * by the alias SQLite prints in the plan ({@code p} for {@code products p}).
+ */
+public class QueryPlanCheck {
+    private final String name;
+    private final String sql;
+    private final Set<String> allowedScans;
+
+    public QueryPlanCheck(String name, String sql, String... allowedScans) {
+        this.name = name;
+        this.sql = sql;
+        this.allowedScans = Set.of(allowedScans);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Set<String> getAllowedScans() {
+        return allowedScans;
+    }
+}
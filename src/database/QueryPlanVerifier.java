@@ -0,0 +1,78 @@
+package database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs {@code EXPLAIN QUERY PLAN} on repository queries and reports every query that
+ * scans a table it has not declared as an allowed scan.
+ */
+public class QueryPlanVerifier {
+    private final ConnectionPool connectionPool;
+
+    public QueryPlanVerifier(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Verifies the given queries.
+     *
+     * @param checks The queries to verify
+     * @return One line per violation, empty if every query uses an index
+     * @throws SQLException If a query cannot be explained
+     */
+    public List<String> verify(List<QueryPlanCheck> checks) throws SQLException {
+        List<String> violations = new ArrayList<>();
+
+        for (QueryPlanCheck check : checks) {
+            for (String detail : explain(check.getSql())) {
+                String scannedTable = scannedTable(detail);
+
+                if (scannedTable != null && !check.getAllowedScans().contains(scannedTable)) {
+                    violations.add(check.getName() + ": " + detail);
+                }
+            }
+        }
+
+        return violations;
+    }
+
+    public List<String> explain(String sql) throws SQLException {
+        List<String> details = new ArrayList<>();
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.getConnection().prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            int parameterCount = pstmt.getParameterMetaData().getParameterCount();
+
+            for (int i = 1; i <= parameterCount; i++) {
+                pstmt.setNull(i, Types.NULL);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    details.add(rs.getString("detail"));
+                }
+            }
+        }
+
+        return details;
+    }
+
+    /**
+     * Returns the table name of a full scan plan step such as {@code SCAN products AS p}
+     * or {@code SCAN p}, or null if the step is an index lookup or not a scan.
+     */
+    private String scannedTable(String detail) {
+        if (!detail.startsWith("SCAN ") || detail.startsWith("SCAN CONSTANT ROW")
+                || detail.contains("VIRTUAL TABLE INDEX")) {
+            return null;
+        }
+
+        String[] parts = detail.split(" ");
+        return parts[1];
+    }
+}
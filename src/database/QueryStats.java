@@ -0,0 +1,91 @@
+package database;
+
+import metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution counts, rows and a latency histogram for the statements prepared by one repository
+ * method. The time of a query covers executing it and stepping through its rows, which is where
+ * SQLite does most of the work.
+ */
+public class QueryStats implements QueryStatsMXBean {
+    private final String query;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    QueryStats(String query) {
+        this.query = query;
+    }
+
+    void record(long nanos, long rowCount) {
+        latency.record(nanos);
+        rows.add(rowCount);
+    }
+
+    void recordError(long nanos) {
+        latency.record(nanos);
+        errors.increment();
+    }
+
+    @Override
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public long getExecutions() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return The rows returned by queries plus the rows changed by updates
+     */
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.getMeanNanos() / 1_000_000;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.getValueAtPercentile(50) / 1_000_000.0;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.getValueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return latency.getValueAtPercentile(99.9) / 1_000_000.0;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMaxNanos() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStats{" +
+                "query='" + query + '\'' +
+                ", executions=" + getExecutions() +
+                ", errors=" + getErrors() +
+                ", rows=" + getRows() +
+                ", p50Millis=" + String.format("%.3f", getP50Millis()) +
+                ", p99Millis=" + String.format("%.3f", getP99Millis()) +
+                '}';
+    }
+}
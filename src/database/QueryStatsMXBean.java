@@ -0,0 +1,25 @@
+package database;
+
+/**
+ * The JMX view of the statistics of one repository query, registered as
+ * {@code webbutiken:type=Query,name=<Repository.method>}.
+ */
+public interface QueryStatsMXBean {
+    String getQuery();
+
+    long getExecutions();
+
+    long getErrors();
+
+    long getRows();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,95 @@
+package database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Exposes a forward-only result set as a lazily consumed {@link Stream}. The stream owns the
+ * borrowed connection, the statement and the result set, and releases all of them when it is
+ * closed, so it must be used in a try-with-resources block.
+ */
+public final class ResultSetStream {
+    private ResultSetStream() {}
+
+    /**
+     * Runs a query and streams its rows.
+     *
+     * @param connectionPool The pool to borrow a read connection from
+     * @param query The name the query is recorded under in the {@link QueryMetrics}
+     * @param sql The query
+     * @param fetchSize The number of rows the driver should fetch at a time
+     * @param mapper Maps the current row to an item
+     * @param parameters The query parameters, bound in order
+     * @return The rows as a stream that must be closed
+     * @throws SQLException If the query cannot be started
+     */
+    public static <T> Stream<T> query(ConnectionPool connectionPool, String query, String sql, int fetchSize,
+                                      RowMapper<T> mapper, Object... parameters) throws SQLException {
+        PooledConnection connection = connectionPool.read();
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            // Forward-only and read-only by default. The stream owns the connection, so nothing else
+            // can take the cached statement while the stream is open.
+            pstmt = connection.prepareStatement(query, sql);
+            pstmt.setFetchSize(fetchSize);
+
+            for (int i = 0; i < parameters.length; i++) {
+                pstmt.setObject(i + 1, parameters[i]);
+            }
+
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            closeAll(connection, pstmt, rs);
+            throw e;
+        }
+
+        ResultSet resultSet = rs;
+        PreparedStatement statement = pstmt;
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+
+                    action.accept(mapper.map(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                closeAll(connection, statement, resultSet);
+            } catch (SQLException e) {
+                throw new UncheckedSQLException(e);
+            }
+        });
+    }
+
+    private static void closeAll(PooledConnection connection, PreparedStatement pstmt, ResultSet rs)
+            throws SQLException {
+        try {
+            if (rs != null) rs.close();
+        } finally {
+            try {
+                if (pstmt != null) pstmt.close();
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
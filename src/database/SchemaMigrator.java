@@ -0,0 +1,81 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date at startup. The applied version is tracked in
+ * SQLite's {@code user_version} header field, and every migration runs in its own
+ * transaction together with the version bump.
+ */
+public class SchemaMigrator {
+    private final ConnectionPool connectionPool;
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(ConnectionPool connectionPool) {
+        this(connectionPool, Migrations.all());
+    }
+
+    public SchemaMigrator(ConnectionPool connectionPool, List<Migration> migrations) {
+        this.connectionPool = connectionPool;
+        this.migrations = migrations;
+    }
+
+    public int getCurrentVersion() throws SQLException {
+        try (PooledConnection connection = connectionPool.write();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Applies every migration newer than the current schema version.
+     *
+     * @return The number of migrations that were applied
+     * @throws SQLException If a migration fails; the failing migration is rolled back
+     */
+    public int migrate() throws SQLException {
+        int applied = 0;
+
+        try (PooledConnection connection = connectionPool.write()) {
+            int currentVersion = getCurrentVersion();
+
+            for (Migration migration : migrations) {
+                if (migration.getVersion() <= currentVersion) continue;
+
+                apply(connection.getConnection(), migration);
+                currentVersion = migration.getVersion();
+                applied++;
+            }
+        }
+
+        if (applied > 0) {
+            connectionPool.reloadSchema();
+        }
+
+        return applied;
+    }
+
+    private void apply(Connection transaction, Migration migration) throws SQLException {
+        try (Statement stmt = transaction.createStatement()) {
+            transaction.setAutoCommit(false);
+
+            for (String statement : migration.getStatements()) {
+                stmt.execute(statement);
+            }
+
+            stmt.execute("PRAGMA user_version = " + migration.getVersion());
+            transaction.commit();
+        } catch (SQLException e) {
+            transaction.rollback();
+            throw new SQLException("Migration " + migration.getVersion() + " (" + migration.getDescription()
+                    + ") failed: " + e.getMessage(), e);
+        } finally {
+            transaction.setAutoCommit(true);
+        }
+    }
+}
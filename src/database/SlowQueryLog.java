@@ -0,0 +1,392 @@
+package database;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes repository queries that take longer than a threshold to a rotating log file, with
+ * their parameters, row count and {@code EXPLAIN QUERY PLAN} output. Queries are handed to a
+ * background thread through a bounded queue, so logging never blocks the query; when the queue
+ * is full the entry is dropped and counted instead. The query plans are taken on a connection
+ * of their own and remembered per SQL text.
+ * <p>
+ * Configured with system properties: {@code webbutiken.slowQueryLog.thresholdMillis} (100, or
+ * -1 to turn the log off), {@code .path} ({@code logs/slow-queries.log}), {@code .maxBytes}
+ * (10 MB per file) and {@code .files} (5 files kept).
+ */
+public class SlowQueryLog implements AutoCloseable {
+    private static final String PROPERTY_PREFIX = "webbutiken.slowQueryLog.";
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final String REDACTED = "'***'";
+    private static final String SENSITIVE_COLUMN = "password";
+    private static final Entry END = new Entry(null, null, null, 0, 0, false);
+
+    private static final Pattern INSERT_COLUMNS =
+            Pattern.compile("^\\s*INSERT\\s+(?:OR\\s+\\w+\\s+)?INTO\\s+\\w+\\s*\\(([^)]*)\\)\\s*VALUES",
+                    Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMPARED_COLUMN =
+            Pattern.compile("(\\w+)\\s*(?:=|==|<>|!=|<=|>=|<|>|\\bLIKE|\\bGLOB)\\s*$", Pattern.CASE_INSENSITIVE);
+
+    private final long thresholdNanos;
+    private final Path path;
+    private final long maxBytes;
+    private final int files;
+    private final Callable<Connection> connectionFactory;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writerThread;
+
+    // Only used by the writer thread
+    private final Map<String, List<String>> plans = new HashMap<>();
+    private Connection explainConnection;
+    private BufferedWriter writer;
+    private long fileBytes;
+
+    public SlowQueryLog(long thresholdMillis, Path path, long maxBytes, int files,
+                        Callable<Connection> connectionFactory) {
+        if (files < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("The slow query log needs at least one file of at least one byte.");
+        }
+
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.files = files;
+        this.connectionFactory = connectionFactory;
+        this.writerThread = new Thread(this::writeEntries, "slow-query-log");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * @param connectionFactory Opens the connection that query plans are taken on
+     * @return The log, or null if it is turned off
+     */
+    public static SlowQueryLog fromSystemProperties(Callable<Connection> connectionFactory) {
+        long thresholdMillis = Long.getLong(PROPERTY_PREFIX + "thresholdMillis", 100L);
+
+        if (thresholdMillis < 0) {
+            return null;
+        }
+
+        return new SlowQueryLog(
+                thresholdMillis,
+                Paths.get(System.getProperty(PROPERTY_PREFIX + "path", "logs/slow-queries.log")),
+                Long.getLong(PROPERTY_PREFIX + "maxBytes", 10L * 1024 * 1024),
+                Integer.getInteger(PROPERTY_PREFIX + "files", 5),
+                connectionFactory
+        );
+    }
+
+    public boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    /**
+     * Queues a slow query for logging. Never blocks.
+     *
+     * @param query The repository method that ran the query
+     * @param parameters The bound parameters, already formatted and redacted
+     */
+    void log(String query, String sql, List<String> parameters, long nanos, long rows, boolean failed) {
+        if (!queue.offer(new Entry(query, sql, parameters, nanos, rows, failed))) {
+            dropped.increment();
+        }
+    }
+
+    public long getLogged() {
+        return logged.sum();
+    }
+
+    /**
+     * @return The number of slow queries that were not logged because the queue was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Formats bound parameters for the log, replacing those of sensitive columns.
+     *
+     * @param parameters The parameters by index, starting at 0
+     * @param sensitive Which parameters to redact, from {@link #sensitiveParameters(String)}
+     */
+    static List<String> formatParameters(Object[] parameters, int count, boolean[] sensitive) {
+        List<String> formatted = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            Object value = parameters[i];
+
+            if (i < sensitive.length && sensitive[i]) {
+                formatted.add(REDACTED);
+            } else if (value == null) {
+                formatted.add("NULL");
+            } else if (value instanceof String string) {
+                formatted.add("'" + string.replace("'", "''") + "'");
+            } else if (value instanceof byte[] bytes) {
+                formatted.add("<" + bytes.length + " bytes>");
+            } else {
+                formatted.add(value.toString());
+            }
+        }
+
+        return formatted;
+    }
+
+    /**
+     * Works out which parameters of a statement bind a password column, from the column list
+     * of an INSERT or the column a parameter is compared with or assigned to. When the SQL
+     * mentions a password, parameters whose column cannot be told are redacted as well.
+     *
+     * @return One flag per parameter, in order
+     */
+    static boolean[] sensitiveParameters(String sql) {
+        int parameterCount = 0;
+
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') parameterCount++;
+        }
+
+        boolean[] sensitive = new boolean[parameterCount];
+
+        if (!sql.toLowerCase(Locale.ROOT).contains(SENSITIVE_COLUMN)) {
+            return sensitive;
+        }
+
+        Matcher insert = INSERT_COLUMNS.matcher(sql);
+        String[] insertColumns = insert.find() ? insert.group(1).split(",") : null;
+        int parameter = 0;
+
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) != '?') {
+                continue;
+            }
+
+            String column = null;
+
+            if (insertColumns != null && i > insert.end()) {
+                column = insertColumns[parameter % insertColumns.length].trim();
+            } else {
+                Matcher compared = COMPARED_COLUMN.matcher(sql.substring(Math.max(0, i - 100), i));
+
+                if (compared.find()) {
+                    column = compared.group(1);
+                }
+            }
+
+            sensitive[parameter++] = column == null || column.toLowerCase(Locale.ROOT).contains(SENSITIVE_COLUMN);
+        }
+
+        return sensitive;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!queue.offer(END, 5, TimeUnit.SECONDS)) {
+                writerThread.interrupt();
+            }
+
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeEntries() {
+        try {
+            while (true) {
+                Entry entry = queue.take();
+
+                if (entry == END) {
+                    break;
+                }
+
+                write(entry);
+
+                if (queue.isEmpty() && writer != null) {
+                    writer.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("The slow query log stopped: " + e.getMessage());
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append(LocalDateTime.now())
+                .append(String.format(Locale.ROOT, " %s %s %.3f ms, %d rows%n", entry.query,
+                        entry.failed ? "failed after" : "took", entry.nanos / 1_000_000.0, entry.rows))
+                .append("  sql: ").append(entry.sql.replaceAll("\\s+", " ").trim()).append(System.lineSeparator())
+                .append("  parameters: ").append(entry.parameters).append(System.lineSeparator())
+                .append("  plan:").append(System.lineSeparator());
+
+        for (String step : plan(entry.sql)) {
+            text.append("    ").append(step).append(System.lineSeparator());
+        }
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (writer == null || (fileBytes > 0 && fileBytes + bytes.length > maxBytes)) {
+            openFile();
+        }
+
+        writer.write(text.toString());
+        fileBytes += bytes.length;
+        logged.increment();
+    }
+
+    private List<String> plan(String sql) {
+        List<String> plan = plans.get(sql);
+
+        if (plan == null) {
+            plan = explain(sql);
+            plans.put(sql, plan);
+        }
+
+        return plan;
+    }
+
+    /**
+     * Runs {@code EXPLAIN QUERY PLAN} with every parameter unbound, indenting each step under
+     * its parent as the sqlite3 shell does.
+     */
+    private List<String> explain(String sql) {
+        List<String> steps = new ArrayList<>();
+
+        try {
+            if (explainConnection == null) {
+                explainConnection = connectionFactory.call();
+            }
+
+            try (PreparedStatement pstmt = explainConnection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+                int parameterCount = pstmt.getParameterMetaData().getParameterCount();
+
+                for (int i = 1; i <= parameterCount; i++) {
+                    pstmt.setNull(i, Types.NULL);
+                }
+
+                Map<Integer, Integer> depths = new HashMap<>();
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int depth = depths.getOrDefault(rs.getInt("parent"), -1) + 1;
+                        depths.put(rs.getInt("id"), depth);
+                        steps.add("  ".repeat(depth) + rs.getString("detail"));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            steps.add("(no plan: " + e.getMessage() + ")");
+        }
+
+        if (steps.isEmpty()) {
+            steps.add("(no plan steps)");
+        }
+
+        return steps;
+    }
+
+    private void openFile() throws IOException {
+        if (writer != null) {
+            writer.close();
+            rotate();
+        } else if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        fileBytes = Files.size(path);
+    }
+
+    /**
+     * Shifts {@code slow-queries.log} to {@code slow-queries.log.1}, that one to {@code .2}
+     * and so on, dropping the oldest.
+     */
+    private void rotate() throws IOException {
+        Files.deleteIfExists(rotated(files - 1));
+
+        for (int i = files - 2; i >= 1; i--) {
+            if (Files.exists(rotated(i))) {
+                Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        if (files > 1) {
+            Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+    }
+
+    private Path rotated(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private void closeQuietly() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not close the slow query log: " + e.getMessage());
+        }
+
+        try {
+            if (explainConnection != null) {
+                explainConnection.close();
+            }
+        } catch (SQLException ignored) {
+            // Only used for query plans
+        }
+    }
+
+    private static final class Entry {
+        final String query;
+        final String sql;
+        final List<String> parameters;
+        final long nanos;
+        final long rows;
+        final boolean failed;
+
+        Entry(String query, String sql, List<String> parameters, long nanos, long rows, boolean failed) {
+            this.query = query;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded LRU cache of prepared statements for a single connection, keyed by query name, SQL
+ * text and whether generated keys are requested. The statements handed out are proxies whose
+ * {@code close()} only resets them and closes their open result set, so callers keep using
+ * try-with-resources as usual. A statement is handed out to one caller at a time; a nested
+ * caller asking for the same key gets a statement of its own, closed when it is. When
+ * query metrics are enabled, the statements also time their executions into {@link QueryStats}
+ * and report slow ones, with their parameters, to the {@link SlowQueryLog}.
+ * Not thread-safe; it relies on the owning connection being borrowed by one thread at a time.
+ */
+class StatementCache {
+    private final Connection connection;
+    private final int maxSize;
+    private final StatementCacheStats stats;
+    private final QueryMetrics queryMetrics; // May be null
+    private final SlowQueryLog slowQueryLog; // May be null
+    private final LinkedHashMap<Key, CachedStatement> statements;
+
+    StatementCache(Connection connection, int maxSize, StatementCacheStats stats, QueryMetrics queryMetrics,
+                   SlowQueryLog slowQueryLog) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.stats = stats;
+        this.queryMetrics = queryMetrics;
+        this.slowQueryLog = queryMetrics != null ? slowQueryLog : null;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    PreparedStatement prepare(String query, String sql, int autoGeneratedKeys) throws SQLException {
+        if (maxSize <= 0) {
+            PreparedStatement statement = connection.prepareStatement(sql, autoGeneratedKeys);
+            return queryMetrics != null ? newStatement(query, sql, statement, false).proxy : statement;
+        }
+
+        // The query name is part of the key, so SQL shared by several methods is recorded under each of them
+        Key key = new Key(query, sql, autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS);
+        CachedStatement cached = statements.get(key);
+
+        if (cached != null && !cached.statement.isClosed()) {
+            if (cached.checkedOut) {
+                // Still in use further up the stack, so sharing it would reset the caller's parameters and results
+                stats.recordMiss();
+                return newStatement(query, sql, connection.prepareStatement(sql, autoGeneratedKeys), false).proxy;
+            }
+
+            stats.recordHit();
+            cached.checkedOut = true;
+            return cached.proxy;
+        }
+
+        stats.recordMiss();
+        cached = newStatement(query, sql, connection.prepareStatement(sql, autoGeneratedKeys), true);
+        cached.checkedOut = true;
+        statements.put(key, cached);
+        evictIfNecessary();
+
+        return cached.proxy;
+    }
+
+    void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+
+        statements.clear();
+    }
+
+    private CachedStatement newStatement(String query, String sql, PreparedStatement statement, boolean cached) {
+        return new CachedStatement(sql, statement, queryMetrics != null ? queryMetrics.forQuery(query) : null,
+                slowQueryLog, cached);
+    }
+
+    private void evictIfNecessary() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement eldest = iterator.next();
+            iterator.remove();
+            stats.recordEviction();
+
+            if (eldest.checkedOut) {
+                eldest.cached = false; // Closed when its caller closes it
+            } else {
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // The statement is being discarded either way
+        }
+    }
+
+    private static final class Key {
+        private final String query;
+        private final String sql;
+        private final boolean generatedKeys;
+
+        private Key(String query, String sql, boolean generatedKeys) {
+            this.query = query;
+            this.sql = sql;
+            this.generatedKeys = generatedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return generatedKeys == key.generatedKeys && query.equals(key.query) && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, sql, generatedKeys);
+        }
+    }
+
+    private static final class CachedStatement implements InvocationHandler {
+        private static final Object[] NO_PARAMETERS = new Object[0];
+
+        private final String sql;
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private final QueryStats queryStats; // May be null
+        private final SlowQueryLog slowQueryLog; // May be null
+        private boolean cached;
+        private boolean checkedOut;
+        private ResultSet resultSet; // The last one returned by an execute method, until the proxy is closed
+        // Bound values, only kept for the slow query log
+        private Object[] parameters = NO_PARAMETERS;
+        private int parameterCount;
+        private boolean[] sensitiveParameters;
+
+        private CachedStatement(String sql, PreparedStatement statement, QueryStats queryStats,
+                                SlowQueryLog slowQueryLog, boolean cached) {
+            this.sql = sql;
+            this.statement = statement;
+            this.queryStats = queryStats;
+            this.slowQueryLog = slowQueryLog;
+            this.cached = cached;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    this
+            );
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!cached) {
+                        statement.close();
+                        return null;
+                    }
+
+                    // Returning the statement to the cache: drop results and bound values, keep the compiled statement
+                    checkedOut = false;
+                    clearParameters();
+                    closeResultSet();
+
+                    if (!statement.isClosed()) {
+                        statement.clearParameters();
+                        statement.clearBatch();
+                    }
+                    return null;
+
+                case "equals":
+                    return proxy == args[0];
+
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+
+                case "clearParameters":
+                    clearParameters();
+                    return forward(method, args);
+
+                default:
+                    if (method.getName().startsWith("execute")) {
+                        Object result = queryStats != null ? execute(method, args) : forward(method, args);
+
+                        if (result instanceof ResultSet executed) {
+                            resultSet = executed;
+                        }
+
+                        return result;
+                    }
+
+                    if (slowQueryLog != null && method.getName().startsWith("set") && args != null
+                            && args.length >= 2 && args[0] instanceof Integer index) {
+                        bindParameter(index, method.getName().equals("setNull") ? null : args[1]);
+                    }
+
+                    return forward(method, args);
+            }
+        }
+
+        private void bindParameter(int index, Object value) {
+            if (index < 1) {
+                return;
+            }
+
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        private void closeResultSet() throws SQLException {
+            if (resultSet != null) {
+                try {
+                    resultSet.close();
+                } finally {
+                    resultSet = null;
+                }
+            }
+        }
+
+        private void clearParameters() {
+            Arrays.fill(parameters, 0, parameterCount, null);
+            parameterCount = 0;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            long start = System.nanoTime();
+            Object result;
+
+            try {
+                result = forward(method, args);
+            } catch (SQLException | RuntimeException e) {
+                recordExecution(System.nanoTime() - start, 0, true);
+                throw e;
+            }
+
+            long nanos = System.nanoTime() - start;
+
+            if (result instanceof ResultSet resultSet) {
+                return InstrumentedResultSet.wrap(resultSet, this::recordExecution, nanos);
+            }
+
+            recordExecution(nanos, changedRows(result), false);
+            return result;
+        }
+
+        private void recordExecution(long nanos, long rows, boolean failed) {
+            if (failed) {
+                queryStats.recordError(nanos);
+            } else {
+                queryStats.record(nanos, rows);
+            }
+
+            if (slowQueryLog != null && slowQueryLog.isSlow(nanos)) {
+                if (sensitiveParameters == null) {
+                    sensitiveParameters = SlowQueryLog.sensitiveParameters(sql);
+                }
+
+                slowQueryLog.log(queryStats.getQuery(), sql,
+                        SlowQueryLog.formatParameters(parameters, parameterCount, sensitiveParameters),
+                        nanos, rows, failed);
+            }
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private static long changedRows(Object updateCounts) {
+            long rows = 0;
+
+            if (updateCounts instanceof Number count) {
+                rows = Math.max(0, count.longValue());
+            } else if (updateCounts instanceof int[] counts) {
+                for (int count : counts) {
+                    rows += Math.max(0, count);
+                }
+            } else if (updateCounts instanceof long[] counts) {
+                for (long count : counts) {
+                    rows += Math.max(0, count);
+                }
+            }
+
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package database;
+
+import java.sql.SQLException;
+
+/**
+ * Carries an {@link SQLException} out of code that cannot throw checked exceptions,
+ * such as a {@link java.util.stream.Stream} pipeline.
+ */
+public class UncheckedSQLException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
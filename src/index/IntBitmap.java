@@ -0,0 +1,451 @@
+package index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed bitmap of non-negative ints. Values are split into chunks of 65536 by their high
+ * 16 bits; a sparse chunk is stored as a sorted array of its low 16 bits and a dense chunk
+ * (more than 4096 values) as a plain 8 KiB bitset, the same layout as a Roaring bitmap.
+ * Not thread-safe.
+ */
+public class IntBitmap {
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITSET_WORDS = 1024;
+
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+    private int size;
+
+    public static IntBitmap of(int... values) {
+        IntBitmap bitmap = new IntBitmap();
+
+        for (int value : values) {
+            bitmap.add(value);
+        }
+
+        return bitmap;
+    }
+
+    public void add(int value) {
+        checkValue(value);
+        char key = (char) (value >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+
+        if (index >= 0) {
+            containers[index] = containers[index].add((char) value);
+        } else {
+            insertContainer(-index - 1, key, new ArrayContainer().add((char) value));
+        }
+    }
+
+    public void remove(int value) {
+        if (value < 0) return;
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+
+        if (index >= 0) {
+            containers[index] = containers[index].remove((char) value);
+
+            if (containers[index].cardinality() == 0) {
+                removeContainer(index);
+            }
+        }
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) return false;
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a new bitmap with the values present in both bitmaps.
+     */
+    public IntBitmap and(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int i = 0;
+        int j = 0;
+
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+
+                if (container.cardinality() > 0) {
+                    result.appendContainer(keys[i], container);
+                }
+
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a new bitmap with the values present in either bitmap.
+     */
+    public IntBitmap or(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int i = 0;
+        int j = 0;
+
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.appendContainer(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    public IntBitmap copy() {
+        return or(new IntBitmap());
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] position = { 0 };
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "IntBitmap{cardinality=" + cardinality() + ", chunks=" + size + '}';
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Only non-negative values can be stored: " + value);
+        }
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void appendContainer(char key, Container container) {
+        insertContainer(size, key, container);
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private interface Container {
+        Container add(char value);
+
+        Container remove(char value);
+
+        boolean contains(char value);
+
+        int cardinality();
+
+        Container and(Container other);
+
+        Container or(Container other);
+
+        Container copy();
+
+        void forEach(int high, IntConsumer consumer);
+    }
+
+    private static final class ArrayContainer implements Container {
+        private char[] values;
+        private int cardinality;
+
+        private ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) return this;
+
+            if (cardinality == ARRAY_MAX_SIZE) {
+                return toBitmap().add(value);
+            }
+
+            index = -index - 1;
+
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, Math.min(ARRAY_MAX_SIZE, cardinality * 2)));
+            }
+
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+
+            return this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+
+            ArrayContainer union = new ArrayContainer(result, count);
+            return count > ARRAY_MAX_SIZE ? union.toBitmap() : union;
+        }
+
+        @Override
+        public Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer() {
+            this(new long[BITSET_WORDS], 0);
+        }
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality++;
+            }
+
+            return this;
+        }
+
+        @Override
+        public Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality--;
+            }
+
+            return cardinality <= ARRAY_MAX_SIZE ? toArrayContainer() : this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+
+            BitmapContainer bitmap = (BitmapContainer) other;
+            long[] result = new long[BITSET_WORDS];
+            int count = 0;
+
+            for (int i = 0; i < BITSET_WORDS; i++) {
+                result[i] = words[i] & bitmap.words[i];
+                count += Long.bitCount(result[i]);
+            }
+
+            BitmapContainer intersection = new BitmapContainer(result, count);
+            return count <= ARRAY_MAX_SIZE ? intersection.toArrayContainer() : intersection;
+        }
+
+        @Override
+        public Container or(Container other) {
+            BitmapContainer union = (BitmapContainer) copy();
+
+            if (other instanceof ArrayContainer) {
+                other.forEach(0, value -> union.add((char) value));
+                return union;
+            }
+
+            BitmapContainer bitmap = (BitmapContainer) other;
+            int count = 0;
+
+            for (int i = 0; i < BITSET_WORDS; i++) {
+                union.words[i] |= bitmap.words[i];
+                count += Long.bitCount(union.words[i]);
+            }
+
+            union.cardinality = count;
+            return union;
+        }
+
+        @Override
+        public Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < BITSET_WORDS; i++) {
+                long word = words[i];
+
+                while (word != 0) {
+                    consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int[] count = { 0 };
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, count[0]);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package index;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from positive int keys to int values, stored in two parallel arrays with linear
+ * probing so that neither keys nor values are boxed. Key 0 marks an empty slot and cannot be
+ * used. A missing key reads as value 0. Not thread-safe.
+ */
+public class IntIntHashMap {
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2) - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public IntIntHashMap(IntIntHashMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    /**
+     * @return The value of the key, or 0 if it is missing
+     */
+    public int get(int key) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? 0 : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return keys[find(key)] != EMPTY;
+    }
+
+    public void put(int key, int value) {
+        checkKey(key);
+        int slot = find(key);
+
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+
+        values[slot] = value;
+
+        if (size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Adds to the value of the key, which counts as 0 if it is missing.
+     *
+     * @return The new value
+     */
+    public int addTo(int key, int delta) {
+        int value = get(key) + delta;
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * @return The value the key had, or 0 if it was missing
+     */
+    public int remove(int key) {
+        int slot = find(key);
+
+        if (keys[slot] == EMPTY) {
+            return 0;
+        }
+
+        int value = values[slot];
+        keys[slot] = EMPTY;
+        size--;
+
+        // Shift the rest of the probe run back so that lookups never stop at the new gap
+        int mask = keys.length - 1;
+        int gap = slot;
+
+        for (int next = (slot + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                keys[next] = EMPTY;
+                gap = next;
+            }
+        }
+
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The keys in ascending order
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int count = 0;
+
+        for (int key : keys) {
+            if (key != EMPTY) {
+                result[count++] = key;
+            }
+        }
+
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        // Spreads sequential IDs over the table
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static void checkKey(int key) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Keys must be positive: " + key);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+
+        for (int key : keys()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+
+            builder.append(key).append('=').append(get(key));
+        }
+
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,94 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with the bucket layout of HdrHistogram: values are grouped by power of
+ * two, and each power of two is split into 128 linear sub-buckets, so every recorded value is
+ * kept to within 1% at any magnitude in a fixed amount of memory. Safe to record into from
+ * many threads at once.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final long HIGHEST_TRACKABLE_NANOS = 3_600_000_000_000L;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(HIGHEST_TRACKABLE_NANOS) + 1);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos The latency; values above one hour are recorded as one hour
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), HIGHEST_TRACKABLE_NANOS);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * Returns the value that the given percentage of recordings are at or below, rounded up to
+     * the top of its bucket as HdrHistogram does.
+     *
+     * @param percentile The percentile, from 0 to 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), getMaxNanos());
+            }
+        }
+
+        return getMaxNanos();
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (subBucket - SUB_BUCKET_HALF_COUNT);
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
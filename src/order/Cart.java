@@ -0,0 +1,79 @@
+package order;
+
+import index.IntIntHashMap;
+
+/**
+ * A shopping cart: the quantity of each product a customer intends to order. Carts live in
+ * memory only and are thread-safe, since a customer can send requests for the same session
+ * concurrently.
+ */
+public class Cart {
+    public static final int MAX_LINES = 100;
+    public static final int MAX_QUANTITY = 10_000;
+
+    private final IntIntHashMap quantities = new IntIntHashMap();
+
+    /**
+     * Adds items of a product, on top of any already in the cart.
+     *
+     * @return The new quantity of the product
+     * @throws IllegalArgumentException If the quantity is not positive or the cart is full
+     */
+    public synchronized int add(int productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive.");
+        }
+
+        return setQuantity(productId, quantities.get(productId) + quantity);
+    }
+
+    /**
+     * Sets the quantity of a product; a quantity of 0 removes it from the cart.
+     *
+     * @return The new quantity of the product
+     * @throws IllegalArgumentException If the quantity is negative or too large, or the cart is full
+     */
+    public synchronized int setQuantity(int productId, int quantity) {
+        if (productId <= 0) {
+            throw new IllegalArgumentException("Invalid product ID " + productId + ".");
+        }
+
+        if (quantity < 0 || quantity > MAX_QUANTITY) {
+            throw new IllegalArgumentException("Quantity must be between 0 and " + MAX_QUANTITY + ".");
+        }
+
+        if (quantity == 0) {
+            quantities.remove(productId);
+            return 0;
+        }
+
+        if (!quantities.containsKey(productId) && quantities.size() >= MAX_LINES) {
+            throw new IllegalArgumentException("A cart can hold at most " + MAX_LINES + " products.");
+        }
+
+        quantities.put(productId, quantity);
+        return quantity;
+    }
+
+    /**
+     * @return The quantity the product had, or 0 if it was not in the cart
+     */
+    public synchronized int remove(int productId) {
+        return quantities.remove(productId);
+    }
+
+    public synchronized void clear() {
+        quantities.clear();
+    }
+
+    public synchronized boolean isEmpty() {
+        return quantities.isEmpty();
+    }
+
+    /**
+     * @return A copy of the product quantities, which does not change with the cart
+     */
+    public synchronized IntIntHashMap snapshot() {
+        return new IntIntHashMap(quantities);
+    }
+}
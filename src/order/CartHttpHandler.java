@@ -0,0 +1,109 @@
+package order;
+
+import com.sun.net.httpserver.HttpExchange;
+import core.CoreHttpHandler;
+import customer.AuthenticationException;
+import index.IntIntHashMap;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON endpoints for the cart of the session in the {@code Authorization: Bearer} header:
+ * <ul>
+ *     <li>{@code GET /cart} returns the products and quantities in the cart</li>
+ *     <li>{@code POST /cart/items} adds a quantity of a product</li>
+ *     <li>{@code PUT /cart/items/{productId}} sets the quantity of a product; 0 removes it</li>
+ *     <li>{@code DELETE /cart/items/{productId}} removes a product</li>
+ *     <li>{@code DELETE /cart} empties the cart</li>
+ *     <li>{@code POST /cart/checkout} orders the cart at the current prices and empties it</li>
+ * </ul>
+ * Only checkout reads the database. A checkout that cannot reserve its stock is answered with
+ * 409 and the lines that failed, and the cart is kept.
+ */
+public class CartHttpHandler extends CoreHttpHandler {
+    private final CartService cartService;
+
+    public CartHttpHandler(CartService cartService) {
+        this.cartService = cartService;
+    }
+
+    @Override
+    protected void route(HttpExchange exchange, List<String> path) throws SQLException, IOException {
+        String method = exchange.getRequestMethod();
+        String token = bearerToken(exchange);
+
+        if (token == null) {
+            throw unauthorized(exchange, "A cart needs a session token.");
+        }
+
+        try {
+            if (path.isEmpty()) {
+                switch (method) {
+                    case "GET" -> sendCart(exchange, token);
+                    case "DELETE" -> {
+                        cartService.clear(token);
+                        sendNoContent(exchange);
+                    }
+                    default -> throw methodNotAllowed(exchange);
+                }
+            } else if (path.size() == 1 && path.get(0).equals("items")) {
+                if (!method.equals("POST")) {
+                    throw methodNotAllowed(exchange);
+                }
+
+                Map<String, Object> json = readJsonObject(exchange);
+                cartService.addItem(token, requiredIntField(json, "productId"), requiredIntField(json, "quantity"));
+                sendCart(exchange, token);
+            } else if (path.size() == 2 && path.get(0).equals("items")) {
+                int productId = pathId(path.get(1));
+
+                switch (method) {
+                    case "PUT" -> {
+                        cartService.setQuantity(token, productId,
+                                requiredIntField(readJsonObject(exchange), "quantity"));
+                        sendCart(exchange, token);
+                    }
+                    case "DELETE" -> {
+                        if (!cartService.removeItem(token, productId)) {
+                            throw notFound("Product " + productId + " is not in the cart.");
+                        }
+
+                        sendCart(exchange, token);
+                    }
+                    default -> throw methodNotAllowed(exchange);
+                }
+            } else if (path.size() == 1 && path.get(0).equals("checkout")) {
+                if (!method.equals("POST")) {
+                    throw methodNotAllowed(exchange);
+                }
+
+                sendJson(exchange, 201, OrderHttpHandler.toJson(cartService.checkout(token)));
+            } else {
+                throw notFound("No resource at " + exchange.getRequestURI().getPath() + ".");
+            }
+        } catch (AuthenticationException e) {
+            throw unauthorized(exchange, e.getMessage());
+        } catch (InsufficientStockException e) {
+            sendJson(exchange, 409, OrderHttpHandler.toJson(e));
+        }
+    }
+
+    private void sendCart(HttpExchange exchange, String token) throws IOException {
+        IntIntHashMap quantities = cartService.getCart(token);
+        List<Map<String, Object>> items = new ArrayList<>(quantities.size());
+
+        for (int productId : quantities.keys()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("productId", productId);
+            item.put("quantity", quantities.get(productId));
+            items.add(item);
+        }
+
+        sendJson(exchange, 200, Map.of("items", items));
+    }
+}
@@ -0,0 +1,215 @@
+package order;
+
+import cache.ExpiringCache;
+import core.Money;
+import customer.Customer;
+import customer.CustomerService;
+import index.IntBitmap;
+import index.IntIntHashMap;
+import orderproduct.OrderProduct;
+import product.Product;
+import product.ProductService;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shopping carts, one per session, kept in memory only. Adding, changing and removing items
+ * only check the session token and never touch the database; products are looked up, priced
+ * and reserved when the cart is checked out, which creates the order and reserves the stock of
+ * every line in a single transaction. A cart that is left alone expires, and carts do not
+ * survive a restart.
+ */
+public class CartService {
+    private final CustomerService customerService;
+    private final ProductService productService;
+    private final OrderService orderService;
+    private final ExpiringCache<String, Cart> carts;
+
+    public CartService(CustomerService customerService, ProductService productService, OrderService orderService,
+                       int maxCarts, Duration timeToLive) {
+        this.customerService = customerService;
+        this.productService = productService;
+        this.orderService = orderService;
+        this.carts = new ExpiringCache<>(maxCarts, timeToLive);
+    }
+
+    /**
+     * Configured with the system properties {@code webbutiken.carts.maxSize} (100,000) and
+     * {@code webbutiken.carts.ttlMinutes} (30).
+     */
+    public static CartService fromSystemProperties(CustomerService customerService, ProductService productService,
+                                                   OrderService orderService) {
+        return new CartService(
+                customerService,
+                productService,
+                orderService,
+                Integer.getInteger("webbutiken.carts.maxSize", 100_000),
+                Duration.ofMinutes(Long.getLong("webbutiken.carts.ttlMinutes", 30L)));
+    }
+
+    /**
+     * @param token The session token
+     * @return The product quantities in the cart of the session
+     * @throws customer.AuthenticationException If the session is unknown or has expired
+     */
+    public IntIntHashMap getCart(String token) {
+        customerService.getSession(token);
+        Cart cart = carts.getIfPresent(token);
+        return cart == null ? new IntIntHashMap() : cart.snapshot();
+    }
+
+    /**
+     * @return The new quantity of the product in the cart
+     */
+    public int addItem(String token, int productId, int quantity) {
+        Cart cart = cart(token);
+        int newQuantity = cart.add(productId, quantity);
+        touch(token, cart);
+        return newQuantity;
+    }
+
+    /**
+     * @return The new quantity of the product in the cart; 0 removes it
+     */
+    public int setQuantity(String token, int productId, int quantity) {
+        Cart cart = cart(token);
+        int newQuantity = cart.setQuantity(productId, quantity);
+        touch(token, cart);
+        return newQuantity;
+    }
+
+    /**
+     * @return Whether the product was in the cart
+     */
+    public boolean removeItem(String token, int productId) {
+        Cart cart = cart(token);
+        boolean removed = cart.remove(productId) != 0;
+        touch(token, cart);
+        return removed;
+    }
+
+    public void clear(String token) {
+        customerService.getSession(token);
+        carts.invalidate(token);
+    }
+
+    /**
+     * Turns the cart of the session into an order at the current prices. The order is created
+     * and the stock of every line reserved in one transaction; the cart is emptied only if that
+     * succeeds. The cart is locked while it is checked out, so it cannot be ordered twice.
+     *
+     * @param token The session token
+     * @return The created order, with its lines
+     * @throws customer.AuthenticationException If the session is unknown or has expired
+     * @throws IllegalArgumentException If the cart is empty or holds products that no longer exist
+     * @throws InsufficientStockException If a product does not have enough stock; the cart is kept
+     * @throws SQLException If a database access error occurs
+     */
+    public Order checkout(String token) throws SQLException {
+        Customer customer = customerService.authenticate(token);
+        Cart cart = carts.getIfPresent(token);
+
+        if (cart == null) {
+            throw new IllegalArgumentException("The cart is empty.");
+        }
+
+        synchronized (cart) {
+            IntIntHashMap quantities = cart.snapshot();
+
+            if (quantities.isEmpty()) {
+                throw new IllegalArgumentException("The cart is empty.");
+            }
+
+            Order order = new Order(0, customer.getCustomerId(), LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+            List<OrderProduct> lines = toOrderLines(quantities);
+            Money totalPrice = Money.ZERO;
+
+            for (OrderProduct line : lines) {
+                totalPrice = totalPrice.plus(line.getUnitPrice().times(line.getQuantity()));
+            }
+
+            Order createdOrder = orderService.createOrder(customer, order, lines);
+            createdOrder.setProducts(lines);
+            createdOrder.setLineCount(lines.size());
+            createdOrder.setTotalPrice(totalPrice);
+
+            cart.clear();
+            carts.invalidate(token);
+            return createdOrder;
+        }
+    }
+
+    public int getCartCount() {
+        return carts.size();
+    }
+
+    private List<OrderProduct> toOrderLines(IntIntHashMap quantities) throws SQLException {
+        int[] productIds = quantities.keys();
+        IntBitmap requested = new IntBitmap();
+
+        for (int productId : productIds) {
+            requested.add(productId);
+        }
+
+        List<Product> products = productService.getProductsByIds(requested);
+
+        if (products.size() < productIds.length) {
+            List<Integer> missing = new ArrayList<>();
+            IntBitmap found = new IntBitmap();
+
+            for (Product product : products) {
+                found.add(product.getProductId());
+            }
+
+            for (int productId : productIds) {
+                if (!found.contains(productId)) {
+                    missing.add(productId);
+                }
+            }
+
+            throw new IllegalArgumentException("Products no longer available: " + missing + ".");
+        }
+
+        List<OrderProduct> lines = new ArrayList<>(products.size());
+
+        for (Product product : products) {
+            OrderProduct line = new OrderProduct(
+                    0, 0, product.getProductId(), quantities.get(product.getProductId()), product.getPrice());
+            line.setProductName(product.getName());
+            lines.add(line);
+        }
+
+        return lines;
+    }
+
+    /**
+     * @return The cart of the session, created if it has none
+     */
+    private Cart cart(String token) {
+        customerService.getSession(token);
+        Cart cart = carts.getIfPresent(token);
+
+        if (cart == null) {
+            Cart created = new Cart();
+            cart = carts.putIfAbsent(token, created);
+
+            if (cart == null) {
+                cart = created;
+            }
+        }
+
+        return cart;
+    }
+
+    /**
+     * Puts the cart back so that it expires a full time to live after it was last changed.
+     */
+    private void touch(String token, Cart cart) {
+        carts.put(token, cart);
+    }
+}
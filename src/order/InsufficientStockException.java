@@ -0,0 +1,28 @@
+package order;
+
+import orderproduct.OrderProduct;
+
+import java.util.List;
+
+/**
+ * Thrown when an order cannot be created because some of its lines could not reserve stock.
+ * The transaction has been rolled back, so no stock was taken for any line.
+ */
+public class InsufficientStockException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final List<OrderProduct> failedLines;
+
+    public InsufficientStockException(List<OrderProduct> failedLines) {
+        super("Not enough stock for product IDs "
+                + failedLines.stream().map(OrderProduct::getProductId).distinct().toList() + ".");
+        this.failedLines = List.copyOf(failedLines);
+    }
+
+    /**
+     * @return The order lines whose products did not have enough stock
+     */
+    public List<OrderProduct> getFailedLines() {
+        return failedLines;
+    }
+}
@@ -1,8 +1,8 @@
 package order;
 
+import core.Money;
 import orderproduct.OrderProduct;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -11,7 +11,8 @@ public class Order {
     private int customerId;
     private LocalDateTime orderDate; // May be null
     private List<OrderProduct> products;
-    private BigDecimal totalPrice;
+    private int lineCount;
+    private Money totalPrice;
 
     public Order() {}
 
@@ -53,11 +54,19 @@ public class Order {
         this.products = products;
     }
 
-    public BigDecimal getTotalPrice() {
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(int lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public Money getTotalPrice() {
         return totalPrice;
     }
 
-    public void setTotalPrice(BigDecimal totalPrice) {
+    public void setTotalPrice(Money totalPrice) {
         this.totalPrice = totalPrice;
     }
 
@@ -68,6 +77,7 @@ public class Order {
                 ", customerId=" + customerId +
                 ", orderDate=" + orderDate +
                 ", products=" + products +
+                ", lineCount=" + lineCount +
                 ", totalPrice=" + totalPrice +
                 '}';
     }
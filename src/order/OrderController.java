@@ -1,9 +1,10 @@
 package order;
 
 import core.CoreController;
+import core.Money;
+import core.Page;
 import orderproduct.OrderProduct;
 
-import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -11,6 +12,8 @@ import java.util.List;
 import java.util.Scanner;
 
 public class OrderController extends CoreController {
+    private static final int PAGE_SIZE = 20;
+
     private final OrderService orderService;
 
     public OrderController(OrderService orderService) {
@@ -26,7 +29,7 @@ public class OrderController extends CoreController {
             System.out.println();
             System.out.println("--- Order management menu ---");
             System.out.println("1. Add order");
-            System.out.println("2. View orders (NOT IMPLEMENTED YET)");
+            System.out.println("2. View orders");
             System.out.println("3. View order");
             System.out.println("4. Update order (NOT IMPLEMENTED YET)");
             System.out.println("5. Delete order (NOT IMPLEMENTED YET)");
@@ -42,7 +45,7 @@ public class OrderController extends CoreController {
                     break;
 
                 case 2:
-                    //viewOrders(scanner);
+                    viewOrders(scanner);
                     break;
 
                 case 3:
@@ -77,8 +80,8 @@ public class OrderController extends CoreController {
 
         while (addingMore) {
             int productId = getIntInput(scanner, "Enter product ID: ");
-            int quantity = getIntInput(scanner, "Enter quantity: ");
-            BigDecimal unitPrice = getBigDecimalInput(scanner, "Enter unit price: ");
+            int quantity = getPositiveIntInput(scanner, "Enter quantity: ");
+            Money unitPrice = getMoneyInput(scanner, "Enter unit price: ");
 
             products.add(new OrderProduct(
                     0,
@@ -108,6 +111,37 @@ public class OrderController extends CoreController {
         }
     }
 
+    private void viewOrders(Scanner scanner) throws SQLException {
+        System.out.println();
+        System.out.println("--- View orders ---");
+
+        int customerId = getIntInput(scanner, "Enter customer ID: ");
+        Page<Order> page = orderService.getOrderHistory(customerId, null, null, 0, PAGE_SIZE, true);
+
+        if (page.getItems().isEmpty()) {
+            System.out.println("No orders found for this customer.");
+            return;
+        }
+
+        while (true) {
+            for (Order order : page.getItems()) {
+                System.out.println("Order ID: " + order.getOrderId()
+                                 + ", Order date: " + order.getOrderDate()
+                                 + ", Products: " + order.getLineCount()
+                                 + ", Total price: " + order.getTotalPrice());
+            }
+
+            if (!page.hasMore()) break;
+
+            System.out.println();
+            String more = getStringInput(scanner, "Show older orders? (y/n): ");
+            if (!more.equalsIgnoreCase("y")) break;
+
+            System.out.println();
+            page = orderService.getOrderHistory(customerId, null, null, page.getNextCursor(), PAGE_SIZE, true);
+        }
+    }
+
     private void viewOrder(Scanner scanner) throws SQLException {
         System.out.println();
         System.out.println("--- View order ---");
@@ -0,0 +1,187 @@
+package order;
+
+import com.sun.net.httpserver.HttpExchange;
+import core.CoreHttpHandler;
+import core.HttpException;
+import core.Page;
+import customer.AuthenticationException;
+import customer.Customer;
+import customer.CustomerService;
+import orderproduct.OrderProduct;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON endpoints for orders:
+ * <ul>
+ *     <li>{@code GET /orders?after=&limit=&from=&to=&summary=} lists a page of the customer's order
+ *     history, newest first</li>
+ *     <li>{@code POST /orders} creates an order and reserves its stock</li>
+ * </ul>
+ * An order that cannot reserve its stock is answered with 409 and the lines that failed.
+ * <p>
+ * Both need an {@code Authorization: Bearer} session token; orders are listed and placed for the
+ * customer of the session, so {@code customerId} can be left out. New orders are priced from
+ * the current products. Bulk imports go through {@link OrderImportHttpHandler} instead.
+ */
+public class OrderHttpHandler extends CoreHttpHandler {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private final OrderService orderService;
+    private final CustomerService customerService;
+
+    public OrderHttpHandler(OrderService orderService, CustomerService customerService) {
+        this.orderService = orderService;
+        this.customerService = customerService;
+    }
+
+    @Override
+    protected void route(HttpExchange exchange, List<String> path) throws SQLException, IOException {
+        String method = exchange.getRequestMethod();
+
+        try {
+            if (path.isEmpty()) {
+                switch (method) {
+                    case "GET" -> getOrderHistory(exchange);
+                    case "POST" -> createOrder(exchange);
+                    default -> throw methodNotAllowed(exchange);
+                }
+            } else {
+                throw notFound("No resource at " + exchange.getRequestURI().getPath() + ".");
+            }
+        } catch (InsufficientStockException e) {
+            sendJson(exchange, 409, toJson(e));
+        }
+    }
+
+    private void getOrderHistory(HttpExchange exchange) throws SQLException, IOException {
+        Map<String, String> parameters = queryParameters(exchange);
+        Customer customer = authenticate(exchange);
+        checkSameCustomer(customer, parameters.containsKey("customerId")
+                ? intParameter(parameters, "customerId", 0) : null);
+
+        Page<Order> page = orderService.getOrderHistory(
+                customer.getCustomerId(),
+                dateParameter(parameters, "from"),
+                dateParameter(parameters, "to"),
+                intParameter(parameters, "after", 0),
+                pageSizeParameter(parameters, DEFAULT_PAGE_SIZE),
+                Boolean.parseBoolean(parameters.get("summary")));
+        List<Map<String, Object>> items = new ArrayList<>(page.getItems().size());
+
+        for (Order order : page.getItems()) {
+            items.add(toJson(order));
+        }
+
+        sendJson(exchange, 200, page(page, items));
+    }
+
+    private void createOrder(HttpExchange exchange) throws SQLException, IOException {
+        Customer customer = authenticate(exchange);
+        Map<String, Object> json = readJsonObject(exchange);
+        checkSameCustomer(customer, intField(json, "customerId"));
+
+        Order order = readOrder(json, customer.getCustomerId());
+        orderService.priceOrders(List.of(order));
+
+        Order createdOrder = orderService.createOrder(customer, order, order.getProducts());
+        createdOrder.setProducts(order.getProducts());
+        createdOrder.setLineCount(order.getLineCount());
+        createdOrder.setTotalPrice(order.getTotalPrice());
+        sendJson(exchange, 201, toJson(createdOrder));
+    }
+
+    private Customer authenticate(HttpExchange exchange) throws SQLException {
+        try {
+            return customerService.authenticate(bearerToken(exchange));
+        } catch (AuthenticationException e) {
+            throw unauthorized(exchange, e.getMessage());
+        }
+    }
+
+    private static void checkSameCustomer(Customer customer, Integer customerId) {
+        if (customerId != null && customerId != customer.getCustomerId()) {
+            throw new HttpException(403, "The session belongs to another customer.");
+        }
+    }
+
+    /**
+     * Reads an order and its lines without prices; {@link OrderService#priceOrders} sets them.
+     */
+    static Order readOrder(Map<String, Object> json, int customerId) {
+        LocalDateTime orderDate = dateField(json, "orderDate");
+        Order order = new Order(0, customerId,
+                orderDate != null ? orderDate : LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        List<OrderProduct> products = new ArrayList<>();
+
+        for (Map<String, Object> line : objectListField(json, "products")) {
+            OrderProduct product = new OrderProduct(
+                    0,
+                    0,
+                    requiredIntField(line, "productId"),
+                    requiredIntField(line, "quantity"),
+                    null
+            );
+
+            if (product.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Every product needs a positive quantity.");
+            }
+
+            products.add(product);
+        }
+
+        order.setProducts(products);
+        return order;
+    }
+
+    static Map<String, Object> toJson(InsufficientStockException e) {
+        List<Map<String, Object>> failedLines = new ArrayList<>();
+
+        for (OrderProduct line : e.getFailedLines()) {
+            failedLines.add(toJson(line));
+        }
+
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("status", 409);
+        error.put("error", e.getMessage());
+        error.put("failedLines", failedLines);
+        return error;
+    }
+
+    static Map<String, Object> toJson(Order order) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("orderId", order.getOrderId());
+        json.put("customerId", order.getCustomerId());
+        json.put("orderDate", order.getOrderDate());
+        json.put("lineCount", order.getLineCount());
+        json.put("totalPrice", order.getTotalPrice());
+
+        if (order.getProducts() != null) {
+            List<Map<String, Object>> products = new ArrayList<>(order.getProducts().size());
+
+            for (OrderProduct product : order.getProducts()) {
+                products.add(toJson(product));
+            }
+
+            json.put("products", products);
+        }
+
+        return json;
+    }
+
+    private static Map<String, Object> toJson(OrderProduct product) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("productId", product.getProductId());
+        json.put("productName", product.getProductName());
+        json.put("quantity", product.getQuantity());
+        json.put("unitPrice", product.getUnitPrice());
+        return json;
+    }
+}
@@ -0,0 +1,48 @@
+package order;
+
+import com.sun.net.httpserver.HttpExchange;
+import core.CoreHttpHandler;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code POST /orders/bulk} creates many orders in one transaction, for importing orders from
+ * other sales channels. Each order names its own {@code customerId} and no session is checked,
+ * so this is only served on the internal listener of the API server, which is bound to the
+ * loopback address. Lines are priced from the current products, like {@code POST /orders}.
+ */
+public class OrderImportHttpHandler extends CoreHttpHandler {
+    private final OrderService orderService;
+
+    public OrderImportHttpHandler(OrderService orderService) {
+        this.orderService = orderService;
+    }
+
+    @Override
+    protected void route(HttpExchange exchange, List<String> path) throws SQLException, IOException {
+        if (!path.isEmpty()) {
+            throw notFound("No resource at " + exchange.getRequestURI().getPath() + ".");
+        }
+
+        if (!exchange.getRequestMethod().equals("POST")) {
+            throw methodNotAllowed(exchange);
+        }
+
+        List<Order> orders = new ArrayList<>();
+
+        for (Map<String, Object> json : objectListField(readJsonObject(exchange), "orders")) {
+            orders.add(OrderHttpHandler.readOrder(json, requiredIntField(json, "customerId")));
+        }
+
+        try {
+            orderService.priceOrders(orders);
+            sendJson(exchange, 201, Map.of("orderIds", orderService.createOrders(orders)));
+        } catch (InsufficientStockException e) {
+            sendJson(exchange, 409, OrderHttpHandler.toJson(e));
+        }
+    }
+}
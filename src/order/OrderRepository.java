@@ -1,97 +1,210 @@
 package order;
 
+import database.ConnectionPool;
+import database.MultiRowInsert;
+import database.PooledConnection;
+import core.Money;
+import core.Page;
+import database.QueryPlanCheck;
+import index.IntBitmap;
 import orderproduct.OrderProduct;
 
-import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class OrderRepository {
-    private final Connection connection;
+    // Written as text so it sorts and parses like the CURRENT_TIMESTAMP default
+    private static final DateTimeFormatter ORDER_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String MIN_ORDER_DATE = "0000-01-01 00:00:00";
+    private static final String MAX_ORDER_DATE = "9999-12-31 23:59:59";
 
-    public OrderRepository(Connection connection) {
-        this.connection = connection;
+    // Bulk inserts are split into multi-row statements of these sizes, so only a few shapes are ever prepared
+    private static final int ID_BATCH_SIZE = 64;
+
+    private static final String CREATE_ORDER_QUERY = """
+        INSERT INTO orders (customer_id, order_date, line_count, total_amount_cents)
+        VALUES (?, COALESCE(?, CURRENT_TIMESTAMP), ?, ?)
+    """;
+
+    private static final String CREATE_ORDER_PRODUCT_QUERY = """
+        INSERT INTO orders_products (order_id, product_id, quantity, unit_price_cents)
+        VALUES (?, ?, ?, ?)
+    """;
+
+    private static final String GET_BY_ID_QUERY = """
+        SELECT
+            o.order_id,
+            o.order_date,
+            o.total_amount_cents,
+            p.product_id,
+            p.name AS product_name,
+            op.quantity,
+            op.unit_price_cents
+        FROM orders o
+        JOIN orders_products op ON o.order_id = op.order_id
+        JOIN products p ON op.product_id = p.product_id
+        WHERE o.customer_id = ?
+        ORDER BY o.order_date, o.order_id
+    """;
+
+    // Totals are kept on the order row, so summaries never have to read orders_products
+    private static final String GET_SUMMARIES_BY_CUSTOMER_ID_QUERY = """
+        SELECT order_id, order_date, line_count, total_amount_cents
+        FROM orders
+        WHERE customer_id = ?
+        ORDER BY order_date, order_id
+    """;
+
+    // Newest first. The page ends at (order_date, order_id) below the upper bound: the range on
+    // order_date is resolved in idx_orders_customer_date, the OR only breaks ties within one date.
+    private static final String GET_HISTORY_PAGE_QUERY = """
+        SELECT order_id, order_date, line_count, total_amount_cents
+        FROM orders
+        WHERE customer_id = ?
+          AND order_date >= ?
+          AND order_date <= ?
+          AND (order_date < ? OR order_id < ?)
+        ORDER BY order_date DESC, order_id DESC
+        LIMIT ?
+    """;
+
+    private static final String GET_ORDER_DATE_QUERY = "SELECT order_date FROM orders WHERE order_id = ?";
+
+    private static final String GET_LINES_BY_ORDER_IDS_QUERY = """
+        SELECT op.order_id, p.product_id, p.name AS product_name, op.quantity, op.unit_price_cents
+        FROM orders_products op
+        JOIN products p ON op.product_id = p.product_id
+        WHERE op.order_id IN (%s)
+    """.formatted(idPlaceholders());
+
+    private static final MultiRowInsert CREATE_ORDERS_QUERIES = new MultiRowInsert(
+            "INSERT INTO orders (customer_id, order_date, line_count, total_amount_cents) VALUES ",
+            "(?, COALESCE(?, CURRENT_TIMESTAMP), ?, ?)");
+
+    private static final MultiRowInsert CREATE_ORDERS_PRODUCTS_QUERIES = new MultiRowInsert(
+            "INSERT INTO orders_products (order_id, product_id, quantity, unit_price_cents) VALUES ", "(?, ?, ?, ?)");
+
+    // Only takes stock that is there, so concurrent orders can never drive it negative
+    private static final String RESERVE_STOCK_QUERY = """
+        UPDATE products
+        SET stock_quantity = stock_quantity - ?
+        WHERE product_id = ? AND stock_quantity >= ?
+    """;
+
+    private static final String LAST_INSERT_ID_QUERY = "SELECT last_insert_rowid()";
+
+    private static final String GET_EXISTING_CUSTOMER_IDS_QUERY =
+            "SELECT customer_id FROM customers WHERE customer_id IN (%s)".formatted(idPlaceholders());
+
+    private static final String GET_EXISTING_PRODUCT_IDS_QUERY =
+            "SELECT product_id FROM products WHERE product_id IN (%s)".formatted(idPlaceholders());
+
+    private final ConnectionPool connectionPool;
+
+    public OrderRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    public static List<QueryPlanCheck> queryPlanChecks() {
+        return List.of(
+                new QueryPlanCheck("OrderRepository.create", CREATE_ORDER_QUERY),
+                new QueryPlanCheck("OrderRepository.create", CREATE_ORDER_PRODUCT_QUERY),
+                new QueryPlanCheck("OrderRepository.getById", GET_BY_ID_QUERY),
+                new QueryPlanCheck("OrderRepository.getSummariesByCustomerId", GET_SUMMARIES_BY_CUSTOMER_ID_QUERY),
+                new QueryPlanCheck("OrderRepository.getHistoryPage", GET_HISTORY_PAGE_QUERY),
+                new QueryPlanCheck("OrderRepository.getHistoryPage", GET_ORDER_DATE_QUERY),
+                new QueryPlanCheck("OrderRepository.getHistoryPage", GET_LINES_BY_ORDER_IDS_QUERY),
+                new QueryPlanCheck("OrderRepository.reserveStock", RESERVE_STOCK_QUERY),
+                new QueryPlanCheck("OrderRepository.findExistingCustomerIds", GET_EXISTING_CUSTOMER_IDS_QUERY),
+                new QueryPlanCheck("OrderRepository.findExistingProductIds", GET_EXISTING_PRODUCT_IDS_QUERY)
+        );
     }
 
+    /**
+     * Inserts an order and its lines, and takes their quantities from stock in the same transaction.
+     *
+     * @param order The order
+     * @param products The order lines
+     * @return The created order
+     * @throws IllegalArgumentException If a line has no unit price or a quantity that is not positive,
+     * or the total overflows; nothing is written
+     * @throws InsufficientStockException If any line could not reserve its stock; nothing is written
+     * @throws SQLException If a database access error occurs
+     */
     public Order create(Order order, List<OrderProduct> products) throws SQLException {
-        String queryOrders = "INSERT INTO orders (customer_id, order_date) VALUES (?, ?)";
-        String queryOrdersProducts = """
-            INSERT INTO orders_products (order_id, product_id, quantity, unit_price)
-            VALUES (?, ?, ?, ?)
-        """;
+        long totalAmountCents = totalAmountCents(products);
 
-        try {
-            connection.setAutoCommit(false);
-            int orderId;
+        try (PooledConnection connection = connectionPool.write()) {
+            Connection transaction = connection.getConnection();
 
-            try (PreparedStatement ordersStmt =
-                         connection.prepareStatement(queryOrders, Statement.RETURN_GENERATED_KEYS)) {
-                ordersStmt.setInt(1, order.getCustomerId());
+            try {
+                transaction.setAutoCommit(false);
+                reserveStock(connection, "OrderRepository.create", products);
+                int orderId;
 
-                if (order.getOrderDate() != null) {
-                    ordersStmt.setTimestamp(2, Timestamp.valueOf(order.getOrderDate()));
-                } else {
-                    ordersStmt.setNull(2, Types.TIMESTAMP);
-                }
+                try (PreparedStatement ordersStmt =
+                             connection.prepareStatement("OrderRepository.create", CREATE_ORDER_QUERY,
+                                     Statement.RETURN_GENERATED_KEYS)) {
+                    ordersStmt.setInt(1, order.getCustomerId());
 
-                ordersStmt.executeUpdate();
-                ResultSet rs = ordersStmt.getGeneratedKeys();
+                    setOrderDate(ordersStmt, 2, order.getOrderDate());
+                    ordersStmt.setInt(3, products.size());
+                    ordersStmt.setLong(4, totalAmountCents);
 
-                if (rs.next()) {
-                    orderId = rs.getInt(1);
-                } else {
-                    throw new SQLException("Failed to create order, no rows affected.");
-                }
-            }
+                    ordersStmt.executeUpdate();
 
-            try (PreparedStatement ordersProductsStmt = connection.prepareStatement(queryOrdersProducts)) {
-                for (OrderProduct op : products) {
-                    ordersProductsStmt.setInt(1, orderId);
-                    ordersProductsStmt.setInt(2, op.getProductId());
-                    ordersProductsStmt.setInt(3, op.getQuantity());
-                    ordersProductsStmt.setBigDecimal(4, op.getUnitPrice());
-                    ordersProductsStmt.addBatch();
+                    try (ResultSet rs = ordersStmt.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            orderId = rs.getInt(1);
+                        } else {
+                            throw new SQLException("Failed to create order, no rows affected.");
+                        }
+                    }
                 }
 
-                ordersProductsStmt.executeBatch();
-            }
+                try (PreparedStatement ordersProductsStmt =
+                             connection.prepareStatement("OrderRepository.create", CREATE_ORDER_PRODUCT_QUERY)) {
+                    for (OrderProduct op : products) {
+                        ordersProductsStmt.setInt(1, orderId);
+                        ordersProductsStmt.setInt(2, op.getProductId());
+                        ordersProductsStmt.setInt(3, op.getQuantity());
+                        ordersProductsStmt.setLong(4, op.getUnitPrice().getMinorUnits());
+                        ordersProductsStmt.addBatch();
+                    }
+
+                    ordersProductsStmt.executeBatch();
+                }
 
-            connection.commit();
+                transaction.commit();
 
-            return new Order(
-                    orderId,
-                    order.getCustomerId(),
-                    order.getOrderDate()
-            );
-        } catch (SQLException e) {
-            connection.rollback();
-            throw e;
-        } finally {
-            connection.setAutoCommit(true);
+                return new Order(
+                        orderId,
+                        order.getCustomerId(),
+                        order.getOrderDate()
+                );
+            } catch (SQLException | RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
         }
     }
 
     public List<Order> getById(int customerId) throws SQLException {
-        String query = """
-            SELECT
-                o.order_id,
-                o.order_date,
-                p.product_id,
-                p.name AS product_name,
-                op.quantity,
-                op.unit_price
-            FROM orders o
-            JOIN orders_products op ON o.order_id = op.order_id
-            JOIN products p ON op.product_id = p.product_id
-            WHERE o.customer_id = ?
-            ORDER BY o.order_id
-        """;
         List<Order> orders = new ArrayList<>();
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("OrderRepository.getById", GET_BY_ID_QUERY)) {
             pstmt.setInt(1, customerId);
 
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -101,8 +214,7 @@ public class OrderRepository {
                     int orderId = rs.getInt("order_id");
                     String orderDateString = rs.getString("order_date");
 
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                    LocalDateTime orderDate = LocalDateTime.parse(orderDateString, formatter);
+                    LocalDateTime orderDate = LocalDateTime.parse(orderDateString, ORDER_DATE_FORMAT);
 
                     if (currentOrder == null || currentOrder.getOrderId() != orderId) {
                         if (currentOrder != null) {
@@ -113,12 +225,12 @@ public class OrderRepository {
                         currentOrder.setOrderId(orderId);
                         currentOrder.setOrderDate(orderDate);
                         currentOrder.setProducts(new ArrayList<>());
-                        currentOrder.setTotalPrice(BigDecimal.ZERO);
+                        currentOrder.setTotalPrice(Money.ofMinor(rs.getLong("total_amount_cents")));
                     }
 
                     int productId = rs.getInt("product_id");
                     int quantity = rs.getInt("quantity");
-                    BigDecimal unitPrice = rs.getBigDecimal("unit_price");
+                    Money unitPrice = Money.ofMinor(rs.getLong("unit_price_cents"));
                     String productName = rs.getString("product_name");
 
                     OrderProduct product = new OrderProduct();
@@ -128,10 +240,6 @@ public class OrderRepository {
                     product.setProductName(productName);
 
                     currentOrder.getProducts().add(product);
-
-                    BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(quantity));
-                    BigDecimal currentTotal = currentOrder.getTotalPrice();
-                    currentOrder.setTotalPrice(currentTotal.add(lineTotal));
                 }
 
                 if (currentOrder != null) {
@@ -142,4 +250,398 @@ public class OrderRepository {
 
         return orders;
     }
+
+    /**
+     * Returns the orders of a customer with their line count and total, without the lines.
+     *
+     * @param customerId The customer ID
+     * @return The orders, oldest first; {@link Order#getProducts()} is null
+     * @throws SQLException If a database access error occurs
+     */
+    public List<Order> getSummariesByCustomerId(int customerId) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("OrderRepository.getSummariesByCustomerId",
+                             GET_SUMMARIES_BY_CUSTOMER_ID_QUERY)) {
+            pstmt.setInt(1, customerId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapOrderSummary(rs, customerId));
+                }
+            }
+        }
+
+        return orders;
+    }
+
+    /**
+     * Returns one page of a customer's order history, newest first, using keyset pagination on
+     * (order_date, order_id).
+     *
+     * @param customerId The customer ID
+     * @param from The earliest order date to include, or null for no lower bound
+     * @param to The order date to stop before, or null for no upper bound
+     * @param afterOrderId The last order ID of the previous page, or 0 for the first page
+     * @param limit The maximum number of orders on the page
+     * @param summaryOnly Whether to leave out the order lines; {@link Order#getProducts()} is null then
+     * @return The page; its cursor is the ID of its last order
+     * @throws SQLException If a database access error occurs
+     */
+    public Page<Order> getHistoryPage(int customerId, LocalDateTime from, LocalDateTime to, int afterOrderId,
+                                      int limit, boolean summaryOnly) throws SQLException {
+        List<Order> orders = new ArrayList<>(limit);
+        boolean hasMore = false;
+
+        try (PooledConnection connection = connectionPool.read()) {
+            String upperDate = to != null ? to.format(ORDER_DATE_FORMAT) : MAX_ORDER_DATE;
+            int upperOrderId = 0;
+
+            if (afterOrderId > 0) {
+                String cursorDate = getOrderDate(connection, "OrderRepository.getHistoryPage", afterOrderId);
+
+                if (cursorDate == null) {
+                    throw new SQLException("No order found with ID " + afterOrderId + " to continue from.");
+                }
+
+                // The cursor is inclusive on its date, unlike the exclusive upper bound
+                if (cursorDate.compareTo(upperDate) < 0) {
+                    upperDate = cursorDate;
+                    upperOrderId = afterOrderId;
+                }
+            }
+
+            try (PreparedStatement pstmt =
+                         connection.prepareStatement("OrderRepository.getHistoryPage", GET_HISTORY_PAGE_QUERY)) {
+                pstmt.setInt(1, customerId);
+                pstmt.setString(2, from != null ? from.format(ORDER_DATE_FORMAT) : MIN_ORDER_DATE);
+                pstmt.setString(3, upperDate);
+                pstmt.setString(4, upperDate);
+                pstmt.setInt(5, upperOrderId);
+                pstmt.setInt(6, limit + 1);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (orders.size() == limit) {
+                            hasMore = true;
+                            break;
+                        }
+
+                        orders.add(mapOrderSummary(rs, customerId));
+                    }
+                }
+            }
+
+            if (!summaryOnly) {
+                loadLines(connection, "OrderRepository.getHistoryPage", orders);
+            }
+        }
+
+        int nextCursor = orders.isEmpty() ? afterOrderId : orders.get(orders.size() - 1).getOrderId();
+        return new Page<>(orders, nextCursor, hasMore);
+    }
+
+    /**
+     * Inserts many orders and their lines in a single transaction, using multi-row inserts, and
+     * takes their quantities from stock. The lines of each order are taken from {@link Order#getProducts()}.
+     *
+     * @param orders The orders to insert
+     * @return The assigned order IDs, in the same order as {@code orders}
+     * @throws IllegalArgumentException If a line has no unit price or a quantity that is not positive,
+     * or a total overflows; nothing is written
+     * @throws InsufficientStockException If any line could not reserve its stock; nothing is written
+     * @throws SQLException If a database access error occurs; nothing is inserted in that case
+     */
+    public int[] createAll(List<Order> orders) throws SQLException {
+        int[] orderIds = new int[orders.size()];
+
+        if (orders.isEmpty()) {
+            return orderIds;
+        }
+
+        long[] totalAmountCents = new long[orders.size()];
+
+        for (int i = 0; i < orders.size(); i++) {
+            totalAmountCents[i] = totalAmountCents(orders.get(i).getProducts());
+        }
+
+        try (PooledConnection connection = connectionPool.write()) {
+            Connection transaction = connection.getConnection();
+
+            try {
+                transaction.setAutoCommit(false);
+                List<OrderProduct> lines = new ArrayList<>();
+
+                for (Order order : orders) {
+                    lines.addAll(order.getProducts());
+                }
+
+                reserveStock(connection, "OrderRepository.createAll", lines);
+
+                for (int offset = 0; offset < orders.size(); ) {
+                    int rows = CREATE_ORDERS_QUERIES.rowsFor(orders.size() - offset);
+
+                    try (PreparedStatement ordersStmt =
+                                 connection.prepareStatement("OrderRepository.createAll",
+                                         CREATE_ORDERS_QUERIES.sql(rows))) {
+                        for (int i = 0; i < rows; i++) {
+                            Order order = orders.get(offset + i);
+                            ordersStmt.setInt(4 * i + 1, order.getCustomerId());
+                            setOrderDate(ordersStmt, 4 * i + 2, order.getOrderDate());
+                            ordersStmt.setInt(4 * i + 3, order.getProducts().size());
+                            ordersStmt.setLong(4 * i + 4, totalAmountCents[offset + i]);
+                        }
+
+                        ordersStmt.executeUpdate();
+                    }
+
+                    // The rows of one statement get consecutive IDs while the writer is held
+                    int lastOrderId = lastInsertId(connection, "OrderRepository.createAll");
+
+                    for (int i = 0; i < rows; i++) {
+                        orderIds[offset + i] = lastOrderId - rows + 1 + i;
+                    }
+
+                    offset += rows;
+                }
+
+                List<Integer> lineOrderIds = new ArrayList<>(lines.size());
+
+                for (int i = 0; i < orders.size(); i++) {
+                    for (int j = 0; j < orders.get(i).getProducts().size(); j++) {
+                        lineOrderIds.add(orderIds[i]);
+                    }
+                }
+
+                for (int offset = 0; offset < lines.size(); ) {
+                    int rows = CREATE_ORDERS_PRODUCTS_QUERIES.rowsFor(lines.size() - offset);
+
+                    try (PreparedStatement ordersProductsStmt =
+                                 connection.prepareStatement("OrderRepository.createAll",
+                                         CREATE_ORDERS_PRODUCTS_QUERIES.sql(rows))) {
+                        for (int i = 0; i < rows; i++) {
+                            OrderProduct line = lines.get(offset + i);
+                            ordersProductsStmt.setInt(4 * i + 1, lineOrderIds.get(offset + i));
+                            ordersProductsStmt.setInt(4 * i + 2, line.getProductId());
+                            ordersProductsStmt.setInt(4 * i + 3, line.getQuantity());
+                            ordersProductsStmt.setLong(4 * i + 4, line.getUnitPrice().getMinorUnits());
+                        }
+
+                        ordersProductsStmt.executeUpdate();
+                    }
+
+                    offset += rows;
+                }
+
+                transaction.commit();
+
+                return orderIds;
+            } catch (SQLException | RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * @param customerIds The customer IDs to look for
+     * @return The subset of {@code customerIds} that exist
+     * @throws SQLException If a database access error occurs
+     */
+    public IntBitmap findExistingCustomerIds(IntBitmap customerIds) throws SQLException {
+        return findExistingIds("OrderRepository.findExistingCustomerIds", GET_EXISTING_CUSTOMER_IDS_QUERY, customerIds);
+    }
+
+    /**
+     * @param productIds The product IDs to look for
+     * @return The subset of {@code productIds} that exist
+     * @throws SQLException If a database access error occurs
+     */
+    public IntBitmap findExistingProductIds(IntBitmap productIds) throws SQLException {
+        return findExistingIds("OrderRepository.findExistingProductIds", GET_EXISTING_PRODUCT_IDS_QUERY, productIds);
+    }
+
+    private IntBitmap findExistingIds(String query, String sql, IntBitmap ids) throws SQLException {
+        IntBitmap existing = new IntBitmap();
+        int[] values = ids.toArray();
+
+        if (values.length == 0) {
+            return existing;
+        }
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement(query, sql)) {
+            for (int offset = 0; offset < values.length; offset += ID_BATCH_SIZE) {
+                for (int i = 0; i < ID_BATCH_SIZE; i++) {
+                    // A short last batch repeats its last ID, which matches the same row again
+                    pstmt.setInt(i + 1, values[Math.min(offset + i, values.length - 1)]);
+                }
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        existing.add(rs.getInt(1));
+                    }
+                }
+            }
+        }
+
+        return existing;
+    }
+
+    /**
+     * Takes the ordered quantities from stock with one conditional decrement per product, sent as
+     * a single batch. Lines for the same product are summed first, so they are checked together.
+     */
+    private static void reserveStock(PooledConnection connection, String query, List<OrderProduct> lines)
+            throws SQLException {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+
+        for (OrderProduct line : lines) {
+            quantities.merge(line.getProductId(), line.getQuantity(), Math::addExact);
+        }
+
+        List<Integer> productIds = new ArrayList<>(quantities.keySet());
+        int[] updateCounts;
+
+        try (PreparedStatement pstmt = connection.prepareStatement(query, RESERVE_STOCK_QUERY)) {
+            for (int productId : productIds) {
+                int quantity = quantities.get(productId);
+                pstmt.setInt(1, quantity);
+                pstmt.setInt(2, productId);
+                pstmt.setInt(3, quantity);
+                pstmt.addBatch();
+            }
+
+            updateCounts = pstmt.executeBatch();
+        }
+
+        Set<Integer> failedProductIds = new HashSet<>();
+
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == 0) {
+                failedProductIds.add(productIds.get(i));
+            }
+        }
+
+        if (!failedProductIds.isEmpty()) {
+            List<OrderProduct> failedLines = new ArrayList<>();
+
+            for (OrderProduct line : lines) {
+                if (failedProductIds.contains(line.getProductId())) {
+                    failedLines.add(line);
+                }
+            }
+
+            throw new InsufficientStockException(failedLines);
+        }
+    }
+
+    private static int lastInsertId(PooledConnection connection, String query) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(query, LAST_INSERT_ID_QUERY);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Failed to read the last inserted ID.");
+            }
+
+            return rs.getInt(1);
+        }
+    }
+
+    private static String getOrderDate(PooledConnection connection, String query, int orderId) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(query, GET_ORDER_DATE_QUERY)) {
+            pstmt.setInt(1, orderId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString("order_date") : null;
+            }
+        }
+    }
+
+    private static void loadLines(PooledConnection connection, String query, List<Order> orders) throws SQLException {
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Order> ordersById = new HashMap<>();
+
+        for (Order order : orders) {
+            order.setProducts(new ArrayList<>(order.getLineCount()));
+            ordersById.put(order.getOrderId(), order);
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(query, GET_LINES_BY_ORDER_IDS_QUERY)) {
+            for (int offset = 0; offset < orders.size(); offset += ID_BATCH_SIZE) {
+                for (int i = 0; i < ID_BATCH_SIZE; i++) {
+                    // A short last batch repeats its last ID, which matches the same rows again
+                    pstmt.setInt(i + 1, orders.get(Math.min(offset + i, orders.size() - 1)).getOrderId());
+                }
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        OrderProduct product = new OrderProduct();
+                        product.setOrderId(rs.getInt("order_id"));
+                        product.setProductId(rs.getInt("product_id"));
+                        product.setQuantity(rs.getInt("quantity"));
+                        product.setUnitPrice(Money.ofMinor(rs.getLong("unit_price_cents")));
+                        product.setProductName(rs.getString("product_name"));
+                        ordersById.get(product.getOrderId()).getProducts().add(product);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Order mapOrderSummary(ResultSet rs, int customerId) throws SQLException {
+        Order order = new Order(
+                rs.getInt("order_id"),
+                customerId,
+                LocalDateTime.parse(rs.getString("order_date"), ORDER_DATE_FORMAT)
+        );
+        order.setLineCount(rs.getInt("line_count"));
+        order.setTotalPrice(Money.ofMinor(rs.getLong("total_amount_cents")));
+        return order;
+    }
+
+    /**
+     * Sums the lines, checking each one on the way, so that a bad line is rejected before any
+     * stock is reserved.
+     *
+     * @throws IllegalArgumentException If a line is null, has no unit price or a quantity that is
+     * not positive, or the total overflows
+     */
+    private static long totalAmountCents(List<OrderProduct> products) {
+        long total = 0;
+
+        for (OrderProduct product : products) {
+            if (product == null || product.getUnitPrice() == null || product.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Every order line needs a positive quantity and a unit price.");
+            }
+
+            try {
+                total = Math.addExact(total, Math.multiplyExact(product.getUnitPrice().getMinorUnits(),
+                        (long) product.getQuantity()));
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("The order total is too large.");
+            }
+        }
+
+        return total;
+    }
+
+    private static void setOrderDate(PreparedStatement pstmt, int index, LocalDateTime orderDate)
+            throws SQLException {
+        if (orderDate != null) {
+            pstmt.setString(index, orderDate.format(ORDER_DATE_FORMAT));
+        } else {
+            pstmt.setNull(index, Types.VARCHAR);
+        }
+    }
+
+    private static String idPlaceholders() {
+        return String.join(", ", Collections.nCopies(ID_BATCH_SIZE, "?"));
+    }
 }
@@ -1,40 +1,269 @@
 package order;
 
+import core.Money;
+import core.Page;
 import customer.Customer;
 import customer.CustomerService;
+import index.IntBitmap;
 import orderproduct.OrderProduct;
+import product.Product;
+import product.ProductService;
 
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class OrderService {
     private final OrderRepository orderRepository;
     private final CustomerService customerService;
+    private final ProductService productService;
 
-    public OrderService(OrderRepository orderRepository, CustomerService customerService) {
+    public OrderService(OrderRepository orderRepository, CustomerService customerService,
+                        ProductService productService) {
         this.orderRepository = orderRepository;
         this.customerService = customerService;
+        this.productService = productService;
     }
 
+    /**
+     * Creates an order and reserves its stock in the same transaction.
+     *
+     * @throws InsufficientStockException If a product does not have enough stock; nothing is created
+     */
     public Order createOrder(Order order, List<OrderProduct> products) throws SQLException {
         validateOrderInput(order, products);
-        return orderRepository.create(order, products);
+        Order createdOrder = orderRepository.create(order, products);
+        productService.invalidateProducts(productIds(products));
+        return createdOrder;
+    }
+
+    /**
+     * Creates an order for a customer that has already been authenticated, such as the customer
+     * of a session, so the customer is not looked up again. The customer ID of the order is
+     * taken from {@code customer}.
+     *
+     * @throws InsufficientStockException If a product does not have enough stock; nothing is created
+     */
+    public Order createOrder(Customer customer, Order order, List<OrderProduct> products) throws SQLException {
+        validateOrderLines(order, products);
+        order.setCustomerId(customer.getCustomerId());
+        Order createdOrder = orderRepository.create(order, products);
+        productService.invalidateProducts(productIds(products));
+        return createdOrder;
+    }
+
+    /**
+     * Creates many orders in one transaction. Customers and products are validated up front with
+     * set-based lookups, so either every order is created or none is.
+     *
+     * @param orders The orders to create, each with its lines in {@link Order#getProducts()}
+     * @return The assigned order IDs, in the same order as {@code orders}
+     * @throws IllegalArgumentException If an order is incomplete or refers to a missing customer or product
+     * @throws InsufficientStockException If a product does not have enough stock for all orders together
+     */
+    public int[] createOrders(List<Order> orders) throws SQLException {
+        validateBulkOrderInput(orders);
+        int[] orderIds = orderRepository.createAll(orders);
+        IntBitmap productIds = new IntBitmap();
+
+        for (Order order : orders) {
+            for (OrderProduct product : order.getProducts()) {
+                productIds.add(product.getProductId());
+            }
+        }
+
+        productService.invalidateProducts(productIds);
+        return orderIds;
+    }
+
+    /**
+     * Prices the lines of orders from the current products, so a client only chooses what it
+     * orders and never the price. Sets the unit price and product name of every line, and the
+     * line count and total of every order. The products of all orders are read in one lookup.
+     *
+     * @param orders The orders, each with its lines in {@link Order#getProducts()}
+     * @throws IllegalArgumentException If a line refers to a missing product or an order total is too large
+     */
+    public void priceOrders(List<Order> orders) throws SQLException {
+        IntBitmap productIds = new IntBitmap();
+
+        for (Order order : orders) {
+            for (OrderProduct line : order.getProducts()) {
+                productIds.add(line.getProductId());
+            }
+        }
+
+        Map<Integer, Product> products = new HashMap<>();
+        IntBitmap foundIds = new IntBitmap();
+
+        for (Product product : productService.getProductsByIds(productIds)) {
+            products.put(product.getProductId(), product);
+            foundIds.add(product.getProductId());
+        }
+
+        List<Integer> missingProducts = missingIds(productIds, foundIds);
+
+        if (!missingProducts.isEmpty()) {
+            throw new IllegalArgumentException("No products found with IDs " + missingProducts + ".");
+        }
+
+        for (Order order : orders) {
+            Money totalPrice = Money.ZERO;
+
+            for (OrderProduct line : order.getProducts()) {
+                Product product = products.get(line.getProductId());
+                line.setUnitPrice(product.getPrice());
+                line.setProductName(product.getName());
+
+                try {
+                    totalPrice = totalPrice.plus(product.getPrice().times(line.getQuantity()));
+                } catch (ArithmeticException e) {
+                    throw new IllegalArgumentException("The order total is too large.");
+                }
+            }
+
+            order.setLineCount(order.getProducts().size());
+            order.setTotalPrice(totalPrice);
+        }
     }
 
     public List<Order> getOrderById(int orderId) throws SQLException {
         return orderRepository.getById(orderId);
     }
 
+    public List<Order> getOrderSummaries(int customerId) throws SQLException {
+        return orderRepository.getSummariesByCustomerId(customerId);
+    }
+
+    /**
+     * Returns one page of a customer's order history, newest first.
+     *
+     * @param customerId The customer ID
+     * @param from The earliest order date to include, or null
+     * @param to The order date to stop before, or null
+     * @param afterOrderId The cursor of the previous page, or 0 for the first page
+     * @param pageSize The maximum number of orders on the page
+     * @param summaryOnly Whether to leave out the order lines
+     */
+    public Page<Order> getOrderHistory(int customerId, LocalDateTime from, LocalDateTime to, int afterOrderId,
+                                       int pageSize, boolean summaryOnly) throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1.");
+        }
+
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("The start date must be before the end date.");
+        }
+
+        return orderRepository.getHistoryPage(customerId, from, to, afterOrderId, pageSize, summaryOnly);
+    }
+
     private void validateOrderInput(Order order, List<OrderProduct> products) throws SQLException {
+        validateOrderLines(order, products);
+
+        Customer customer = customerService.getCustomerById(order.getCustomerId());
+
+        if (customer == null) {
+            throw new IllegalArgumentException("No customer found with that ID.");
+        }
+    }
+
+    private void validateOrderLines(Order order, List<OrderProduct> products) {
         if (order == null || products == null || products.isEmpty()) {
             throw new IllegalArgumentException(
                     "Order must not be null, and the product list must not be null or empty.");
         }
 
-        Customer customer = customerService.getCustomerById(order.getCustomerId());
+        Map<Integer, Integer> quantities = new HashMap<>();
 
-        if (customer == null) {
-            throw new IllegalArgumentException("No customer found with that ID.");
+        for (OrderProduct product : products) {
+            if (product == null || product.getQuantity() <= 0 || product.getUnitPrice() == null) {
+                throw new IllegalArgumentException("Every order line needs a positive quantity and a unit price.");
+            }
+
+            addQuantity(quantities, product);
+        }
+    }
+
+    private void validateBulkOrderInput(List<Order> orders) throws SQLException {
+        if (orders == null || orders.isEmpty()) {
+            throw new IllegalArgumentException("The order list must not be null or empty.");
+        }
+
+        IntBitmap customerIds = new IntBitmap();
+        IntBitmap productIds = new IntBitmap();
+        Map<Integer, Integer> quantities = new HashMap<>();
+
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+
+            if (order == null || order.getProducts() == null || order.getProducts().isEmpty()) {
+                throw new IllegalArgumentException(
+                        "Order " + i + " must not be null, and its product list must not be null or empty.");
+            }
+
+            customerIds.add(order.getCustomerId());
+
+            for (OrderProduct product : order.getProducts()) {
+                if (product == null || product.getQuantity() <= 0 || product.getUnitPrice() == null) {
+                    throw new IllegalArgumentException(
+                            "Order " + i + " has a line without a positive quantity and a unit price.");
+                }
+
+                productIds.add(product.getProductId());
+                addQuantity(quantities, product);
+            }
+        }
+
+        List<Integer> missingCustomers = missingIds(customerIds, orderRepository.findExistingCustomerIds(customerIds));
+
+        if (!missingCustomers.isEmpty()) {
+            throw new IllegalArgumentException("No customers found with IDs " + missingCustomers + ".");
+        }
+
+        List<Integer> missingProducts = missingIds(productIds, orderRepository.findExistingProductIds(productIds));
+
+        if (!missingProducts.isEmpty()) {
+            throw new IllegalArgumentException("No products found with IDs " + missingProducts + ".");
+        }
+    }
+
+    /**
+     * Adds the quantity of a line to the total of its product. Stock is reserved once per product
+     * for the total of all its lines, so the total has to fit in an int as well as each line.
+     */
+    private static void addQuantity(Map<Integer, Integer> quantities, OrderProduct line) {
+        long quantity = (long) quantities.getOrDefault(line.getProductId(), 0) + line.getQuantity();
+
+        if (quantity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "The total quantity ordered of product " + line.getProductId() + " is too large.");
         }
+
+        quantities.put(line.getProductId(), (int) quantity);
+    }
+
+    private static IntBitmap productIds(List<OrderProduct> products) {
+        IntBitmap productIds = new IntBitmap();
+
+        for (OrderProduct product : products) {
+            productIds.add(product.getProductId());
+        }
+
+        return productIds;
+    }
+
+    private static List<Integer> missingIds(IntBitmap requested, IntBitmap existing) {
+        List<Integer> missing = new ArrayList<>();
+        requested.forEach(id -> {
+            if (!existing.contains(id)) {
+                missing.add(id);
+            }
+        });
+
+        return missing;
     }
 }
@@ -1,18 +1,18 @@
 package orderproduct;
 
-import java.math.BigDecimal;
+import core.Money;
 
 public class OrderProduct {
     private int orderProductId;
     private int orderId;
     private int productId;
     private int quantity;
-    private BigDecimal unitPrice;
+    private Money unitPrice;
     private String productName;
 
     public OrderProduct() {}
 
-    public OrderProduct(int orderProductId, int orderId, int productId, int quantity, BigDecimal unitPrice) {
+    public OrderProduct(int orderProductId, int orderId, int productId, int quantity, Money unitPrice) {
         this.orderProductId = orderProductId;
         this.orderId = orderId;
         this.productId = productId;
@@ -52,11 +52,11 @@ public class OrderProduct {
         this.quantity = quantity;
     }
 
-    public BigDecimal getUnitPrice() {
+    public Money getUnitPrice() {
         return unitPrice;
     }
 
-    public void setUnitPrice(BigDecimal unitPrice) {
+    public void setUnitPrice(Money unitPrice) {
         this.unitPrice = unitPrice;
     }
 
@@ -0,0 +1,156 @@
+package product;
+
+import index.IntBitmap;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index from category to the IDs of its products, kept as compressed bitmaps so
+ * that category searches and combinations of categories are resolved without touching the
+ * database. Loaded once at startup and maintained by {@link ProductService} on every change
+ * to products or categories.
+ */
+public class CategoryIndex {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, String> categoryNames = new HashMap<>();
+    private final Map<Integer, IntBitmap> productsByCategory = new HashMap<>();
+
+    public static CategoryIndex load(ProductRepository productRepository) throws SQLException {
+        CategoryIndex categoryIndex = new CategoryIndex();
+        categoryIndex.reload(productRepository);
+        return categoryIndex;
+    }
+
+    public void reload(ProductRepository productRepository) throws SQLException {
+        Map<Integer, String> names = productRepository.getAllCategories();
+        Map<Integer, IntBitmap> products = productRepository.getProductIdsByCategory();
+
+        lock.writeLock().lock();
+
+        try {
+            categoryNames.clear();
+            productsByCategory.clear();
+
+            for (Map.Entry<Integer, String> entry : names.entrySet()) {
+                categoryNames.put(entry.getKey(), normalize(entry.getValue()));
+            }
+
+            productsByCategory.putAll(products);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the categories whose name contains the given text, ignoring case.
+     */
+    public List<Integer> findCategoryIds(String nameFragment) {
+        String fragment = normalize(nameFragment);
+        List<Integer> categoryIds = new ArrayList<>();
+
+        lock.readLock().lock();
+
+        try {
+            for (Map.Entry<Integer, String> entry : categoryNames.entrySet()) {
+                if (entry.getValue().contains(fragment)) {
+                    categoryIds.add(entry.getKey());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return categoryIds;
+    }
+
+    /**
+     * Returns the products that belong to at least one of the given categories.
+     */
+    public IntBitmap productsInAny(List<Integer> categoryIds) {
+        IntBitmap result = new IntBitmap();
+
+        lock.readLock().lock();
+
+        try {
+            for (Integer categoryId : categoryIds) {
+                IntBitmap products = productsByCategory.get(categoryId);
+
+                if (products != null) {
+                    result = result.or(products);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the products that belong to every one of the given categories.
+     */
+    public IntBitmap productsInAll(List<Integer> categoryIds) {
+        if (categoryIds.isEmpty()) {
+            return new IntBitmap();
+        }
+
+        lock.readLock().lock();
+
+        try {
+            IntBitmap result = null;
+
+            for (Integer categoryId : categoryIds) {
+                IntBitmap products = productsByCategory.getOrDefault(categoryId, new IntBitmap());
+                result = result == null ? products.copy() : result.and(products);
+
+                if (result.isEmpty()) break;
+            }
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putCategory(int categoryId, String name) {
+        lock.writeLock().lock();
+
+        try {
+            categoryNames.put(categoryId, normalize(name));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addProduct(int categoryId, int productId) {
+        lock.writeLock().lock();
+
+        try {
+            productsByCategory.computeIfAbsent(categoryId, id -> new IntBitmap()).add(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeProduct(int productId) {
+        lock.writeLock().lock();
+
+        try {
+            for (IntBitmap products : productsByCategory.values()) {
+                products.remove(productId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+}
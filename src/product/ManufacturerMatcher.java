@@ -0,0 +1,194 @@
+package product;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Finds the manufacturer named in a product name with an Aho-Corasick automaton over all
+ * manufacturer names, so a product name is resolved in a single pass over its characters.
+ * Matching ignores case and only accepts whole words; if several manufacturers are named, the
+ * one that starts first wins, then the longest. Immutable once built, so it can be shared
+ * between threads and replaced wholesale when manufacturers change.
+ */
+public final class ManufacturerMatcher {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    // Per state: sorted transition characters and their target states
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] fail;
+    // Manufacturer whose name ends in the state, and the nearest state on the fail chain that also ends one
+    private final int[] output;
+    private final int[] outputLink;
+
+    private final int[] manufacturerIds;
+    private final String[] manufacturerNames;
+    private final int[] patternLengths;
+
+    /**
+     * @param manufacturers Manufacturer names by ID; for names that only differ in case the first one is kept
+     */
+    public ManufacturerMatcher(Map<Integer, String> manufacturers) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        outputs.add(NONE);
+
+        manufacturerIds = new int[manufacturers.size()];
+        manufacturerNames = new String[manufacturers.size()];
+        patternLengths = new int[manufacturers.size()];
+        int count = 0;
+
+        for (Map.Entry<Integer, String> manufacturer : manufacturers.entrySet()) {
+            String pattern = normalize(manufacturer.getValue());
+
+            if (pattern.isBlank()) {
+                continue;
+            }
+
+            int state = ROOT;
+
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = trie.get(state).get(pattern.charAt(i));
+
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    outputs.add(NONE);
+                    trie.get(state).put(pattern.charAt(i), next);
+                }
+
+                state = next;
+            }
+
+            if (outputs.get(state) == NONE) {
+                outputs.set(state, count);
+                manufacturerIds[count] = manufacturer.getKey();
+                manufacturerNames[count] = manufacturer.getValue();
+                patternLengths[count] = pattern.length();
+                count++;
+            }
+        }
+
+        int states = trie.size();
+        labels = new char[states][];
+        targets = new int[states][];
+        output = new int[states];
+
+        for (int state = 0; state < states; state++) {
+            TreeMap<Character, Integer> transitions = trie.get(state);
+            labels[state] = new char[transitions.size()];
+            targets[state] = new int[transitions.size()];
+            int i = 0;
+
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                labels[state][i] = transition.getKey();
+                targets[state][i] = transition.getValue();
+                i++;
+            }
+
+            output[state] = outputs.get(state);
+        }
+
+        fail = new int[states];
+        outputLink = new int[states];
+        outputLink[ROOT] = NONE;
+        Queue<Integer> queue = new ArrayDeque<>();
+
+        // Breadth first, so the fail state of every parent is final before its children are linked
+        for (int child : targets[ROOT]) {
+            fail[child] = ROOT;
+            outputLink[child] = NONE;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+
+            for (int i = 0; i < labels[state].length; i++) {
+                int child = targets[state][i];
+                int fallback = fail[state];
+                int next;
+
+                while ((next = transition(fallback, labels[state][i])) == NONE && fallback != ROOT) {
+                    fallback = fail[fallback];
+                }
+
+                fail[child] = next != NONE ? next : ROOT;
+                outputLink[child] = output[fail[child]] != NONE ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Sets the manufacturer ID and name of the product from the manufacturer named in its
+     * product name, or clears them if no manufacturer is named.
+     */
+    public void resolve(Product product) {
+        int match = find(product.getName());
+
+        if (match != NONE) {
+            product.setManufacturerId(manufacturerIds[match]);
+            product.setManufacturerName(manufacturerNames[match]);
+        } else {
+            product.setManufacturerId(null);
+            product.setManufacturerName(null);
+        }
+    }
+
+    private int find(String productName) {
+        if (productName == null) {
+            return NONE;
+        }
+
+        String text = normalize(productName);
+        int best = NONE;
+        int bestStart = Integer.MAX_VALUE;
+        int state = ROOT;
+
+        for (int end = 0; end < text.length(); end++) {
+            char c = text.charAt(end);
+            int next;
+
+            while ((next = transition(state, c)) == NONE && state != ROOT) {
+                state = fail[state];
+            }
+
+            state = next != NONE ? next : ROOT;
+
+            for (int s = output[state] != NONE ? state : outputLink[state]; s != NONE; s = outputLink[s]) {
+                int match = output[s];
+                int start = end - patternLengths[match] + 1;
+
+                if (isWordBoundary(text, start - 1) && isWordBoundary(text, end + 1)
+                        && (start < bestStart || (start == bestStart && patternLengths[match] > patternLengths[best]))) {
+                    best = match;
+                    bestStart = start;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    private int transition(int state, char c) {
+        int i = Arrays.binarySearch(labels[state], c);
+        return i >= 0 ? targets[state][i] : NONE;
+    }
+
+    private static boolean isWordBoundary(String text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
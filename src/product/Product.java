@@ -1,6 +1,7 @@
 package product;
 
-import java.math.BigDecimal;
+import core.Money;
+
 import java.util.Objects;
 
 public class Product {
@@ -9,23 +10,32 @@ public class Product {
     private String name;
     private String manufacturerName; // May be null
     private String description; // May be null
-    private BigDecimal price;
+    private Money price;
     private int stockQuantity;
+    private int ratingCount;
+    private long ratingSum;
 
     public Product(int productId, Integer manufacturerId, String name, String manufacturerName) {
         this(productId, manufacturerId, name, manufacturerName, null, null, 0);
     }
 
-    public Product(int productId, String name, String description, BigDecimal price, int stockQuantity) {
+    public Product(int productId, String name, String description, Money price, int stockQuantity) {
         this(productId, null, name, null, description, price, stockQuantity);
     }
 
-    public Product(String name, String description, BigDecimal price, int stockQuantity) {
+    public Product(String name, String description, Money price, int stockQuantity) {
         this(0, null, name, null, description, price, stockQuantity);
     }
 
+    public Product(Product product) {
+        this(product.productId, product.manufacturerId, product.name, product.manufacturerName,
+                product.description, product.price, product.stockQuantity);
+        this.ratingCount = product.ratingCount;
+        this.ratingSum = product.ratingSum;
+    }
+
     public Product(int productId, Integer manufacturerId, String name, String manufacturerName, String description,
-                   BigDecimal price, int stockQuantity) {
+                   Money price, int stockQuantity) {
         this.productId = productId;
         this.manufacturerId = manufacturerId;
         this.name = name;
@@ -75,11 +85,11 @@ public class Product {
         this.description = description;
     }
 
-    public BigDecimal getPrice() {
+    public Money getPrice() {
         return price;
     }
 
-    public void setPrice(BigDecimal price) {
+    public void setPrice(Money price) {
         this.price = price;
     }
 
@@ -91,6 +101,26 @@ public class Product {
         this.stockQuantity = stockQuantity;
     }
 
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    /**
+     * @return The average review rating from 1 to 5, or null if the product has no reviews
+     */
+    public Double getAverageRating() {
+        return ratingCount == 0 ? null : (double) ratingSum / ratingCount;
+    }
+
+    public void setRating(int ratingCount, long ratingSum) {
+        this.ratingCount = ratingCount;
+        this.ratingSum = ratingSum;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
@@ -113,6 +143,7 @@ public class Product {
                 ", description='" + (description != null ? description : "N/A") + '\'' +
                 ", price=" + price +
                 ", stockQuantity=" + stockQuantity +
+                ", ratingCount=" + ratingCount +
                 '}';
     }
 }
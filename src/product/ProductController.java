@@ -1,13 +1,19 @@
 package product;
 
 import core.CoreController;
+import core.ImportResult;
+import core.Money;
+import core.Page;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Scanner;
 
 public class ProductController extends CoreController {
+    private static final int PAGE_SIZE = 20;
+
     private final ProductService productService;
 
     public ProductController(ProductService productService) {
@@ -29,6 +35,8 @@ public class ProductController extends CoreController {
             System.out.println("5. Delete product");
             System.out.println("6. Search products by name");
             System.out.println("7. Search products by category");
+            System.out.println("8. Import products from CSV");
+            System.out.println("9. Export products to CSV");
             System.out.println("0. Back");
             System.out.print("Choose an option: ");
 
@@ -41,7 +49,7 @@ public class ProductController extends CoreController {
                     break;
 
                 case 2:
-                    viewProducts();
+                    viewProducts(scanner);
                     break;
 
                 case 3:
@@ -64,6 +72,14 @@ public class ProductController extends CoreController {
                     searchProductsByCategory(scanner);
                     break;
 
+                case 8:
+                    importProducts(scanner);
+                    break;
+
+                case 9:
+                    exportProducts(scanner);
+                    break;
+
                 case 0:
                     break;
 
@@ -79,7 +95,7 @@ public class ProductController extends CoreController {
 
         String name = getStringInput(scanner, "Enter name: ");
         String description = getStringInput(scanner, "Enter description (optional): ");
-        BigDecimal price = getBigDecimalInput(scanner, "Enter price: ");
+        Money price = getMoneyInput(scanner, "Enter price: ");
         int stockQuantity = getIntInput(scanner, "Enter stock quantity: ");
 
         Product product = new Product(
@@ -99,21 +115,35 @@ public class ProductController extends CoreController {
         }
     }
 
-    private void viewProducts() throws SQLException {
-        List<Product> products = productService.getAllProducts();
-
+    private void viewProducts(Scanner scanner) throws SQLException {
         System.out.println();
         System.out.println("--- View products ---");
 
-        for (int i = 0; i < products.size(); i++) {
-            Product product = products.get(i);
-            System.out.println("Product ID: " + product.getProductId());
-            System.out.println("Name: " + product.getName());
-            System.out.println("Description: " + product.getDescription());
+        Page<Product> page = productService.getProductsPage(0, PAGE_SIZE);
+
+        while (true) {
+            List<Product> products = page.getItems();
+
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                System.out.println("Product ID: " + product.getProductId());
+                System.out.println("Name: " + product.getName());
+                System.out.println("Description: " + (product.getDescription() != null ?
+                        product.getDescription() : "N/A"));
 
-            if (i < products.size() - 1) {
-                System.out.println();
+                if (i < products.size() - 1) {
+                    System.out.println();
+                }
             }
+
+            if (!page.hasMore()) break;
+
+            System.out.println();
+            String more = getStringInput(scanner, "Show more products? (y/n): ");
+            if (!more.equalsIgnoreCase("y")) break;
+
+            System.out.println();
+            page = productService.getProductsPage(page.getNextCursor(), PAGE_SIZE);
         }
     }
 
@@ -132,6 +162,9 @@ public class ProductController extends CoreController {
             System.out.println("Description: " + (product.getDescription() != null ? product.getDescription() : "N/A"));
             System.out.println("Price: " + product.getPrice());
             System.out.println("Stock quantity: " + product.getStockQuantity());
+            System.out.println("Rating: " + (product.getAverageRating() != null
+                    ? String.format("%.1f of 5 (%d reviews)", product.getAverageRating(), product.getRatingCount())
+                    : "No reviews"));
         } else {
             System.out.println("No product found with ID " + productId + ".");
         }
@@ -160,7 +193,7 @@ public class ProductController extends CoreController {
         if (description.isEmpty()) description = existingProduct.getDescription();
 
         System.out.println("Current price: " + existingProduct.getPrice());
-        BigDecimal price = getBigDecimalInput(scanner, "Enter new price (or leave blank to keep current): ");
+        Money price = getMoneyInput(scanner, "Enter new price (or leave blank to keep current): ");
         if (price == null) price = existingProduct.getPrice();
 
         System.out.println("Current stock quantity: " + existingProduct.getStockQuantity());
@@ -238,4 +271,41 @@ public class ProductController extends CoreController {
             }
         }
     }
+
+    private void importProducts(Scanner scanner) {
+        System.out.println();
+        System.out.println("--- Import products from CSV ---");
+
+        String file = getStringInput(scanner, "Enter file path: ");
+
+        try {
+            ImportResult result = productService.importProducts(Path.of(file),
+                    rows -> System.out.println("Read " + rows + " rows..."));
+            printImportResult(result);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Could not read " + file + ": " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("An error occurred while processing the request: " + e.getMessage());
+        }
+    }
+
+    private void exportProducts(Scanner scanner) {
+        System.out.println();
+        System.out.println("--- Export products to CSV ---");
+
+        String file = getStringInput(scanner, "Enter file path: ");
+
+        try {
+            int count = productService.exportProducts(Path.of(file));
+            System.out.println("Exported " + count + " products to " + file + ".");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Could not write " + file + ": " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("An error occurred while processing the request: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,224 @@
+package product;
+
+import core.Money;
+
+import java.util.function.Predicate;
+
+/**
+ * A combination of product criteria, built with {@link #builder()}. Every criterion is
+ * optional; a product has to meet all that are set. Immutable.
+ * <p>
+ * The name, manufacturer, price, stock and rating criteria are compiled into one SQL statement
+ * by {@link ProductRepository#findByFilter}. Category and {@link Builder#matching} criteria are
+ * checked on the rows as they are read, stopping as soon as the limit is reached.
+ */
+public final class ProductFilter {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    public enum Sort {
+        /** Best full-text match first; only with a name criterion */
+        RELEVANCE,
+        ID,
+        NAME,
+        PRICE_ASCENDING,
+        PRICE_DESCENDING,
+        /** Highest average rating first, products without reviews last */
+        RATING
+    }
+
+    private final String name;
+    private final String category;
+    private final String manufacturer;
+    private final Money minPrice;
+    private final Money maxPrice;
+    private final boolean inStockOnly;
+    private final Double minRating;
+    private final Predicate<Product> postFilter;
+    private final Sort sort;
+    private final int limit;
+
+    private ProductFilter(Builder builder) {
+        this.name = builder.name;
+        this.category = builder.category;
+        this.manufacturer = builder.manufacturer;
+        this.minPrice = builder.minPrice;
+        this.maxPrice = builder.maxPrice;
+        this.inStockOnly = builder.inStockOnly;
+        this.minRating = builder.minRating;
+        this.postFilter = builder.postFilter;
+        this.sort = builder.sort != null ? builder.sort : builder.name != null ? Sort.RELEVANCE : Sort.ID;
+        this.limit = builder.limit;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Words that must each start a word of the product name or description, or null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return A fragment of a category name the product must be in, or null
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return A fragment of the manufacturer name, or null
+     */
+    public String getManufacturer() {
+        return manufacturer;
+    }
+
+    public Money getMinPrice() {
+        return minPrice;
+    }
+
+    public Money getMaxPrice() {
+        return maxPrice;
+    }
+
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+    /**
+     * @return The lowest average rating, or null; products without reviews never meet a minimum
+     */
+    public Double getMinRating() {
+        return minRating;
+    }
+
+    /**
+     * @return The criterion checked on each product after it is read, or null
+     */
+    public Predicate<Product> getPostFilter() {
+        return postFilter;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductFilter{" +
+                "name='" + name + '\'' +
+                ", category='" + category + '\'' +
+                ", manufacturer='" + manufacturer + '\'' +
+                ", minPrice=" + minPrice +
+                ", maxPrice=" + maxPrice +
+                ", inStockOnly=" + inStockOnly +
+                ", minRating=" + minRating +
+                ", postFilter=" + (postFilter != null) +
+                ", sort=" + sort +
+                ", limit=" + limit +
+                '}';
+    }
+
+    public static final class Builder {
+        private String name;
+        private String category;
+        private String manufacturer;
+        private Money minPrice;
+        private Money maxPrice;
+        private boolean inStockOnly;
+        private Double minRating;
+        private Predicate<Product> postFilter;
+        private Sort sort;
+        private int limit = DEFAULT_LIMIT;
+
+        private Builder() {}
+
+        public Builder name(String name) {
+            this.name = blankToNull(name);
+            return this;
+        }
+
+        public Builder category(String category) {
+            this.category = blankToNull(category);
+            return this;
+        }
+
+        public Builder manufacturer(String manufacturer) {
+            this.manufacturer = blankToNull(manufacturer);
+            return this;
+        }
+
+        /**
+         * @param minPrice The lowest price, inclusive, or null for no lower bound
+         * @param maxPrice The highest price, inclusive, or null for no upper bound
+         */
+        public Builder priceBetween(Money minPrice, Money maxPrice) {
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            return this;
+        }
+
+        public Builder inStockOnly(boolean inStockOnly) {
+            this.inStockOnly = inStockOnly;
+            return this;
+        }
+
+        public Builder minRating(Double minRating) {
+            this.minRating = minRating;
+            return this;
+        }
+
+        /**
+         * Adds a criterion that cannot be expressed in SQL. It is checked on each product as it
+         * is read, so a selective one makes the query read more rows to fill the limit.
+         */
+        public Builder matching(Predicate<Product> predicate) {
+            this.postFilter = postFilter == null ? predicate : postFilter.and(predicate);
+            return this;
+        }
+
+        public Builder sort(Sort sort) {
+            this.sort = sort;
+            return this;
+        }
+
+        public Builder limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException If the criteria contradict each other or are out of range
+         */
+        public ProductFilter build() {
+            if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+                throw new IllegalArgumentException("The minimum price must not be above the maximum price.");
+            }
+
+            if (minRating != null && (minRating.isNaN() || minRating < 1 || minRating > 5)) {
+                throw new IllegalArgumentException("The minimum rating must be between 1 and 5.");
+            }
+
+            if (sort == Sort.RELEVANCE && name == null) {
+                throw new IllegalArgumentException("Sorting by relevance needs a name to search for.");
+            }
+
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("The limit must be between 1 and " + MAX_LIMIT + ".");
+            }
+
+            return new ProductFilter(this);
+        }
+
+        private static String blankToNull(String value) {
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package product;
+
+import com.sun.net.httpserver.HttpExchange;
+import core.CoreHttpHandler;
+import core.Money;
+import core.Page;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * JSON endpoints for products:
+ * <ul>
+ *     <li>{@code GET /products?after=&limit=} lists a page of products</li>
+ *     <li>{@code GET /products/search?name=&category=&manufacturer=&minPrice=&maxPrice=&inStock=&minRating=&sort=&limit=}
+ *     finds the products that meet every criterion given, see {@link ProductFilter}</li>
+ *     <li>{@code GET /products/{id}} returns one product</li>
+ *     <li>{@code POST /products} creates a product</li>
+ *     <li>{@code PUT /products/{id}} changes the price and stock of a product</li>
+ *     <li>{@code DELETE /products/{id}} deletes a product</li>
+ *     <li>{@code GET /products/{id}/stock} returns the stock of a product, including buffered changes</li>
+ *     <li>{@code POST /products/{id}/stock} buffers a change to the stock of a product, see {@link StockUpdateBuffer}</li>
+ * </ul>
+ */
+public class ProductHttpHandler extends CoreHttpHandler {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private final ProductService productService;
+    private final StockUpdateBuffer stockUpdates;
+
+    public ProductHttpHandler(ProductService productService, StockUpdateBuffer stockUpdates) {
+        this.productService = productService;
+        this.stockUpdates = stockUpdates;
+    }
+
+    @Override
+    protected void route(HttpExchange exchange, List<String> path) throws SQLException, IOException {
+        String method = exchange.getRequestMethod();
+
+        if (path.isEmpty()) {
+            switch (method) {
+                case "GET" -> listProducts(exchange);
+                case "POST" -> createProduct(exchange);
+                default -> throw methodNotAllowed(exchange);
+            }
+        } else if (path.size() == 1 && path.get(0).equals("search")) {
+            if (!method.equals("GET")) {
+                throw methodNotAllowed(exchange);
+            }
+
+            searchProducts(exchange);
+        } else if (path.size() == 1) {
+            int productId = pathId(path.get(0));
+
+            switch (method) {
+                case "GET" -> getProduct(exchange, productId);
+                case "PUT" -> updateProduct(exchange, productId);
+                case "DELETE" -> deleteProduct(exchange, productId);
+                default -> throw methodNotAllowed(exchange);
+            }
+        } else if (path.size() == 2 && path.get(1).equals("stock")) {
+            int productId = pathId(path.get(0));
+
+            switch (method) {
+                case "GET" -> getStock(exchange, productId);
+                case "POST" -> addStock(exchange, productId);
+                default -> throw methodNotAllowed(exchange);
+            }
+        } else {
+            throw notFound("No resource at " + exchange.getRequestURI().getPath() + ".");
+        }
+    }
+
+    private void listProducts(HttpExchange exchange) throws SQLException, IOException {
+        Map<String, String> parameters = queryParameters(exchange);
+        Page<Product> page = productService.getProductsPage(
+                intParameter(parameters, "after", 0), pageSizeParameter(parameters, DEFAULT_PAGE_SIZE));
+
+        sendJson(exchange, 200, page(page, toJson(page.getItems())));
+    }
+
+    private void searchProducts(HttpExchange exchange) throws SQLException, IOException {
+        Map<String, String> parameters = queryParameters(exchange);
+        ProductFilter.Builder filter = ProductFilter.builder()
+                .name(parameters.get("name"))
+                .category(parameters.get("category"))
+                .manufacturer(parameters.get("manufacturer"))
+                .priceBetween(moneyParameter(parameters, "minPrice"), moneyParameter(parameters, "maxPrice"))
+                .inStockOnly(Boolean.parseBoolean(parameters.get("inStock")))
+                .limit(intParameter(parameters, "limit", ProductFilter.DEFAULT_LIMIT));
+
+        if (parameters.containsKey("minRating")) {
+            try {
+                filter.minRating(Double.parseDouble(parameters.get("minRating")));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Parameter 'minRating' must be a number.");
+            }
+        }
+
+        if (parameters.containsKey("sort")) {
+            try {
+                filter.sort(ProductFilter.Sort.valueOf(parameters.get("sort").toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Parameter 'sort' must be one of "
+                        + Arrays.toString(ProductFilter.Sort.values()).toLowerCase(Locale.ROOT) + ".");
+            }
+        }
+
+        sendJson(exchange, 200, Map.of("items", toJson(productService.findProducts(filter.build()))));
+    }
+
+    private void getProduct(HttpExchange exchange, int productId) throws SQLException, IOException {
+        sendJson(exchange, 200, toJson(findProduct(productId)));
+    }
+
+    private void createProduct(HttpExchange exchange) throws SQLException, IOException {
+        Map<String, Object> json = readJsonObject(exchange);
+        Integer stockQuantity = intField(json, "stockQuantity");
+
+        Product product = productService.createProduct(new Product(
+                stringField(json, "name"),
+                stringField(json, "description"),
+                moneyField(json, "price"),
+                stockQuantity != null ? stockQuantity : -1
+        ));
+
+        sendJson(exchange, 201, toJson(product));
+    }
+
+    /**
+     * Only price and stock can be changed, as in the console menu; fields left out keep their
+     * current value.
+     */
+    private void updateProduct(HttpExchange exchange, int productId) throws SQLException, IOException {
+        Product product = findProduct(productId);
+        Map<String, Object> json = readJsonObject(exchange);
+        Money price = moneyField(json, "price");
+        Integer stockQuantity = intField(json, "stockQuantity");
+
+        if (price != null) product.setPrice(price);
+        if (stockQuantity != null) product.setStockQuantity(stockQuantity);
+
+        productService.updateProduct(product);
+        sendJson(exchange, 200, toJson(product));
+    }
+
+    private void deleteProduct(HttpExchange exchange, int productId) throws SQLException, IOException {
+        findProduct(productId);
+        productService.deleteProduct(productId);
+        sendNoContent(exchange);
+    }
+
+    private void getStock(HttpExchange exchange, int productId) throws SQLException, IOException {
+        sendJson(exchange, 200, toStockJson(productId, findStock(productId)));
+    }
+
+    /**
+     * Answers 202 Accepted: the change is written to the database with the next flush.
+     */
+    private void addStock(HttpExchange exchange, int productId) throws SQLException, IOException {
+        findProduct(productId);
+        stockUpdates.addStock(productId, requiredIntField(readJsonObject(exchange), "delta"));
+        sendJson(exchange, 202, toStockJson(productId, findStock(productId)));
+    }
+
+    private Product findProduct(int productId) throws SQLException {
+        Product product = productService.getProductById(productId);
+
+        if (product == null) {
+            throw notFound("No product found with ID " + productId + ".");
+        }
+
+        return product;
+    }
+
+    private int findStock(int productId) throws SQLException {
+        Integer stockQuantity = stockUpdates.getStockQuantity(productId);
+
+        if (stockQuantity == null) {
+            throw notFound("No product found with ID " + productId + ".");
+        }
+
+        return stockQuantity;
+    }
+
+    private static Map<String, Object> toStockJson(int productId, int stockQuantity) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("productId", productId);
+        json.put("stockQuantity", stockQuantity);
+        return json;
+    }
+
+    private static Money moneyParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return Money.parse(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter '" + name + "' must be an amount.");
+        }
+    }
+
+    private static List<Map<String, Object>> toJson(List<Product> products) {
+        List<Map<String, Object>> json = new ArrayList<>(products.size());
+
+        for (Product product : products) {
+            json.add(toJson(product));
+        }
+
+        return json;
+    }
+
+    private static Map<String, Object> toJson(Product product) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("productId", product.getProductId());
+        json.put("name", product.getName());
+        json.put("description", product.getDescription());
+        json.put("manufacturerId", product.getManufacturerId());
+        json.put("manufacturerName", product.getManufacturerName());
+        json.put("price", product.getPrice());
+        json.put("stockQuantity", product.getStockQuantity());
+        json.put("averageRating", product.getAverageRating());
+        json.put("ratingCount", product.getRatingCount());
+        return json;
+    }
+}
@@ -1,22 +1,222 @@
 package product;
 
+import core.CsvWriter;
+import core.Money;
+import core.Page;
+import database.ConnectionPool;
+import database.MultiRowInsert;
+import database.PooledConnection;
+import database.QueryPlanCheck;
+import database.ResultSetStream;
+import index.IntBitmap;
+
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class ProductRepository {
-    private final Connection connection;
+    // Lookups by ID are sent in fixed-size batches so that they all share one prepared statement
+    private static final int ID_BATCH_SIZE = 64;
+
+    private static final String CREATE_QUERY =
+            "INSERT INTO products (manufacturer_id, name, description, price_cents, stock_quantity) VALUES (?, ?, ?, ?, ?)";
+
+    private static final MultiRowInsert CREATE_ALL_QUERIES = new MultiRowInsert(
+            "INSERT INTO products (manufacturer_id, name, description, price_cents, stock_quantity) VALUES ",
+            "(?, ?, ?, ?, ?)");
+
+    private static final String GET_ALL_QUERY = """
+        SELECT p.product_id, p.name AS product_name,
+               m.manufacturer_id, m.name AS manufacturer_name
+        FROM products p
+        LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+    """;
+
+    private static final String GET_PAGE_QUERY = """
+        SELECT p.product_id, p.name AS product_name,
+               p.description, p.price_cents, p.stock_quantity,
+               m.manufacturer_id, m.name AS manufacturer_name,
+               r.rating_count, r.rating_sum
+        FROM products p
+        LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+        LEFT JOIN product_ratings r ON r.product_id = p.product_id
+        WHERE p.product_id > ?
+        ORDER BY p.product_id
+        LIMIT ?
+    """;
+
+    private static final String STREAM_ALL_QUERY = """
+        SELECT p.product_id, p.name AS product_name,
+               p.description, p.price_cents, p.stock_quantity,
+               m.manufacturer_id, m.name AS manufacturer_name,
+               r.rating_count, r.rating_sum
+        FROM products p
+        LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+        LEFT JOIN product_ratings r ON r.product_id = p.product_id
+        ORDER BY p.product_id
+    """;
+
+    private static final String EXPORT_QUERY = """
+        SELECT p.product_id, p.name AS product_name,
+               p.description, p.price_cents, p.stock_quantity,
+               m.name AS manufacturer_name,
+               (SELECT group_concat(c.name, '|')
+                FROM products_categories pc
+                JOIN categories c ON c.category_id = pc.category_id
+                WHERE pc.product_id = p.product_id) AS categories
+        FROM products p
+        LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+        ORDER BY p.product_id
+    """;
+
+    private static final String GET_BY_ID_QUERY = """
+        SELECT p.product_id, p.name AS product_name,
+               p.description, p.price_cents, p.stock_quantity,
+               m.manufacturer_id, m.name AS manufacturer_name,
+               r.rating_count, r.rating_sum
+        FROM products p
+        LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+        LEFT JOIN product_ratings r ON r.product_id = p.product_id
+        WHERE p.product_id = ?
+    """;
+
+    private static final String UPDATE_QUERY =
+            "UPDATE products SET price_cents = ?, stock_quantity = ? WHERE product_id = ?";
+
+    private static final String ADD_STOCK_QUERY =
+            "UPDATE products SET stock_quantity = MAX(stock_quantity + ?, 0) WHERE product_id = ?";
+
+    private static final String DELETE_QUERY = "DELETE FROM products WHERE product_id = ?";
+
+    private static final String SEARCH_BY_NAME_QUERY = """
+        SELECT p.product_id, p.name AS product_name,
+               p.description, p.price_cents, p.stock_quantity,
+               m.manufacturer_id, m.name AS manufacturer_name,
+               r.rating_count, r.rating_sum
+        FROM products_fts
+        JOIN products p ON p.product_id = products_fts.rowid
+        LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+        LEFT JOIN product_ratings r ON r.product_id = p.product_id
+        WHERE products_fts MATCH ?
+        ORDER BY bm25(products_fts, 10.0, 1.0)
+        LIMIT ?
+    """;
+
+    private static final String SEARCH_BY_CATEGORY_QUERY = """
+        SELECT p.product_id, p.name AS product_name,
+               p.description, p.price_cents, p.stock_quantity,
+               m.manufacturer_id, m.name AS manufacturer_name,
+               r.rating_count, r.rating_sum
+        FROM categories c
+        CROSS JOIN products_categories pc ON pc.category_id = c.category_id
+        JOIN products p ON p.product_id = pc.product_id
+        LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+        LEFT JOIN product_ratings r ON r.product_id = p.product_id
+        WHERE LOWER(c.name) LIKE ?
+    """;
+
+    private static final String GET_BY_IDS_QUERY = """
+        SELECT p.product_id, p.name AS product_name,
+               p.description, p.price_cents, p.stock_quantity,
+               m.manufacturer_id, m.name AS manufacturer_name,
+               r.rating_count, r.rating_sum
+        FROM products p
+        LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+        LEFT JOIN product_ratings r ON r.product_id = p.product_id
+        WHERE p.product_id IN (%s)
+    """.formatted(String.join(", ", Collections.nCopies(ID_BATCH_SIZE, "?")));
+
+    private static final String GET_ALL_CATEGORIES_QUERY = "SELECT category_id, name FROM categories";
+
+    private static final String GET_ALL_MANUFACTURERS_QUERY =
+            "SELECT manufacturer_id, name FROM manufacturers ORDER BY manufacturer_id";
+
+    private static final String GET_PRODUCT_IDS_BY_CATEGORY_QUERY =
+            "SELECT category_id, product_id FROM products_categories";
+
+    private static final String CREATE_CATEGORY_QUERY = "INSERT INTO categories (name) VALUES (?)";
+
+    private static final String ADD_TO_CATEGORY_QUERY =
+            "INSERT INTO products_categories (product_id, category_id) VALUES (?, ?)";
+
+    private static final MultiRowInsert ADD_ALL_TO_CATEGORIES_QUERIES = new MultiRowInsert(
+            "INSERT INTO products_categories (product_id, category_id) VALUES ", "(?, ?)");
+
+    private static final String LAST_INSERT_ID_QUERY = "SELECT last_insert_rowid()";
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    // Every filter query shape, by [full-text][manufacturer][sort]; null where the sort needs full text
+    private static final String[][][] FILTER_QUERIES = filterQueries();
+
+    private final ConnectionPool connectionPool;
+    private volatile ManufacturerMatcher manufacturerMatcher;
+
+    public ProductRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    public static List<QueryPlanCheck> queryPlanChecks() {
+        List<QueryPlanCheck> checks = new ArrayList<>(List.of(
+                new QueryPlanCheck("ProductRepository.create", CREATE_QUERY),
+                new QueryPlanCheck("ProductRepository.getAll", GET_ALL_QUERY, "p"),
+                new QueryPlanCheck("ProductRepository.getPage", GET_PAGE_QUERY),
+                new QueryPlanCheck("ProductRepository.streamAll", STREAM_ALL_QUERY, "p"),
+                new QueryPlanCheck("ProductRepository.exportCsv", EXPORT_QUERY, "p"),
+                new QueryPlanCheck("ProductRepository.getById", GET_BY_ID_QUERY),
+                new QueryPlanCheck("ProductRepository.update", UPDATE_QUERY),
+                new QueryPlanCheck("ProductRepository.addStock", ADD_STOCK_QUERY),
+                new QueryPlanCheck("ProductRepository.delete", DELETE_QUERY),
+                new QueryPlanCheck("ProductRepository.searchByName", SEARCH_BY_NAME_QUERY),
+                // Category names are matched by substring, the category table itself is small
+                new QueryPlanCheck("ProductRepository.searchByCategory", SEARCH_BY_CATEGORY_QUERY, "c"),
+                new QueryPlanCheck("ProductRepository.getByIds", GET_BY_IDS_QUERY),
+                // Loaded in full once at startup to build the category index
+                new QueryPlanCheck("ProductRepository.getAllCategories", GET_ALL_CATEGORIES_QUERY, "categories"),
+                // Loaded in full to build the manufacturer matcher
+                new QueryPlanCheck("ProductRepository.getAllManufacturers", GET_ALL_MANUFACTURERS_QUERY,
+                        "manufacturers"),
+                new QueryPlanCheck("ProductRepository.getProductIdsByCategory",
+                        GET_PRODUCT_IDS_BY_CATEGORY_QUERY, "products_categories"),
+                new QueryPlanCheck("ProductRepository.createCategory", CREATE_CATEGORY_QUERY),
+                new QueryPlanCheck("ProductRepository.createAll", CREATE_CATEGORY_QUERY),
+                new QueryPlanCheck("ProductRepository.addToCategory", ADD_TO_CATEGORY_QUERY)
+        ));
+
+        for (int fullText = 0; fullText < 2; fullText++) {
+            for (int byManufacturer = 0; byManufacturer < 2; byManufacturer++) {
+                for (ProductFilter.Sort sort : ProductFilter.Sort.values()) {
+                    String sql = FILTER_QUERIES[fullText][byManufacturer][sort.ordinal()];
+
+                    if (sql == null) {
+                        continue;
+                    }
 
-    public ProductRepository(Connection connection) {
-        this.connection = connection;
+                    String name = "ProductRepository.findByFilter(" + (fullText == 1 ? "name, " : "")
+                            + (byManufacturer == 1 ? "manufacturer, " : "") + sort + ")";
+                    // Without a name to search for, price, stock and rating are checked row by row
+                    checks.add(fullText == 1 ? new QueryPlanCheck(name, sql) : new QueryPlanCheck(name, sql, "p"));
+                }
+            }
+        }
+
+        return checks;
     }
 
     public Product create(Product product) throws SQLException {
         resolveManufacturerFromName(product);
-        String query = "INSERT INTO products (manufacturer_id, name, description, price, stock_quantity)" +
-                       " VALUES (?, ?, ?, ?, ?)";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (PooledConnection connection = connectionPool.write();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ProductRepository.create", CREATE_QUERY,
+                             Statement.RETURN_GENERATED_KEYS)) {
             if (product.getManufacturerId() == null) {
                 pstmt.setNull(1, Types.INTEGER);
             } else {
@@ -25,7 +225,7 @@ public class ProductRepository {
 
             pstmt.setString(2, product.getName());
             pstmt.setObject(3, product.getDescription());
-            pstmt.setBigDecimal(4, product.getPrice());
+            pstmt.setLong(4, product.getPrice().getMinorUnits());
             pstmt.setInt(5, product.getStockQuantity());
 
             int affectedRows = pstmt.executeUpdate();
@@ -54,23 +254,115 @@ public class ProductRepository {
         }
     }
 
+    /**
+     * Inserts many products, the new categories they are in and their category memberships in a
+     * single transaction, using multi-row inserts for the products and memberships. Products
+     * without a manufacturer ID get the manufacturer named in their product name, as in
+     * {@link #create}. The assigned IDs are set on the products.
+     *
+     * @param products The products to insert
+     * @param categoryIds The category IDs of each product, in the same order as {@code products}. An ID
+     *                    below zero stands for a new category: -1 for the first of {@code newCategories},
+     *                    -2 for the second and so on
+     * @param newCategories The names of the categories to create
+     * @return The assigned IDs of the new categories, in the same order as {@code newCategories}
+     * @throws IllegalArgumentException If there is not one list of category IDs per product
+     * @throws SQLException If a database access error occurs; nothing is inserted in that case
+     */
+    public int[] createAll(List<Product> products, List<int[]> categoryIds, List<String> newCategories)
+            throws SQLException {
+        if (categoryIds.size() != products.size()) {
+            throw new IllegalArgumentException("There must be one list of category IDs per product.");
+        }
+
+        int[] productIds = new int[products.size()];
+        int[] newCategoryIds = new int[newCategories.size()];
+
+        if (products.isEmpty()) {
+            return newCategoryIds;
+        }
+
+        for (Product product : products) {
+            if (product.getManufacturerId() == null) {
+                resolveManufacturerFromName(product);
+            }
+        }
+
+        try (PooledConnection connection = connectionPool.write()) {
+            Connection transaction = connection.getConnection();
+
+            try {
+                transaction.setAutoCommit(false);
+
+                for (int i = 0; i < newCategories.size(); i++) {
+                    newCategoryIds[i] = insertCategory(connection, "ProductRepository.createAll", newCategories.get(i));
+                }
+
+                for (int offset = 0; offset < products.size(); ) {
+                    int rows = CREATE_ALL_QUERIES.rowsFor(products.size() - offset);
+
+                    try (PreparedStatement pstmt =
+                                 connection.prepareStatement("ProductRepository.createAll",
+                                         CREATE_ALL_QUERIES.sql(rows))) {
+                        for (int i = 0; i < rows; i++) {
+                            Product product = products.get(offset + i);
+
+                            if (product.getManufacturerId() == null) {
+                                pstmt.setNull(5 * i + 1, Types.INTEGER);
+                            } else {
+                                pstmt.setInt(5 * i + 1, product.getManufacturerId());
+                            }
+
+                            pstmt.setString(5 * i + 2, product.getName());
+                            pstmt.setObject(5 * i + 3, product.getDescription());
+                            pstmt.setLong(5 * i + 4, product.getPrice().getMinorUnits());
+                            pstmt.setInt(5 * i + 5, product.getStockQuantity());
+                        }
+
+                        pstmt.executeUpdate();
+                    }
+
+                    // The rows of one statement get consecutive IDs while the writer is held
+                    int lastProductId = lastInsertId(connection, "ProductRepository.createAll");
+
+                    for (int i = 0; i < rows; i++) {
+                        productIds[offset + i] = lastProductId - rows + 1 + i;
+                    }
+
+                    offset += rows;
+                }
+
+                addAllToCategories(connection, "ProductRepository.createAll", productIds,
+                        resolveNewCategoryIds(categoryIds, newCategoryIds));
+                transaction.commit();
+            } catch (SQLException | RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+        }
+
+        for (int i = 0; i < products.size(); i++) {
+            products.get(i).setProductId(productIds[i]);
+        }
+
+        return newCategoryIds;
+    }
+
     public List<Product> getAll() throws SQLException {
-        String query = """
-            SELECT p.product_id, p.name AS product_name,
-                   m.manufacturer_id, m.name AS manufacturer_name
-            FROM products p
-            LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
-        """;
         List<Product> products = new ArrayList<>();
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
+        try (PooledConnection connection = connectionPool.read();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(GET_ALL_QUERY)) {
 
             while (rs.next()) {
+                // getObject with a type fails on NULL in the SQLite driver
+                int manufacturerId = rs.getInt("manufacturer_id");
                 Product product = new Product(
                         rs.getInt("product_id"),
-                        rs.getObject("manufacturer_id", Integer.class) != null ?
-                                rs.getInt("manufacturer_id") : null,
+                        rs.wasNull() ? null : manufacturerId,
                         rs.getString("product_name"),
                         rs.getString("manufacturer_name") != null ?
                                 rs.getString("manufacturer_name") : null
@@ -83,33 +375,98 @@ public class ProductRepository {
         return products;
     }
 
-    public Product getById(int productId) throws SQLException {
-        String query = """
-            SELECT p.product_id, p.name AS product_name,
-                   p.description, p.price, p.stock_quantity,
-                   m.manufacturer_id, m.name AS manufacturer_name
-            FROM products p
-            LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
-            WHERE p.product_id = ?
-        """;
+    /**
+     * Returns the products with an ID greater than the cursor, in ID order.
+     *
+     * @param afterProductId The cursor; 0 for the first page
+     * @param limit The maximum number of products on the page
+     * @return The page
+     * @throws SQLException If a database access error occurs
+     */
+    public Page<Product> getPage(int afterProductId, int limit) throws SQLException {
+        List<Product> products = new ArrayList<>(limit);
+        boolean hasMore = false;
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, productId);
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("ProductRepository.getPage", GET_PAGE_QUERY)) {
+            pstmt.setInt(1, afterProductId);
+            pstmt.setInt(2, limit + 1);
 
             try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    Object manufacturerObj = rs.getObject("manufacturer_id");
-                    Integer manufacturerId = (manufacturerObj != null) ? ((Number) manufacturerObj).intValue() : null;
+                while (rs.next()) {
+                    if (products.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+
+                    products.add(mapProduct(rs));
+                }
+            }
+        }
+
+        int nextCursor = products.isEmpty() ?
+                afterProductId : products.get(products.size() - 1).getProductId();
+        return new Page<>(products, nextCursor, hasMore);
+    }
 
-                    return new Product(
-                            rs.getInt("product_id"),
-                            manufacturerId,
+    /**
+     * Streams every product in ID order without loading the table into memory. The stream
+     * holds a read connection until it is closed.
+     *
+     * @param fetchSize The number of rows the driver should fetch at a time
+     * @return The products; must be closed
+     * @throws SQLException If the query cannot be started
+     */
+    public Stream<Product> streamAll(int fetchSize) throws SQLException {
+        return ResultSetStream.query(connectionPool, "ProductRepository.streamAll", STREAM_ALL_QUERY, fetchSize,
+                ProductRepository::mapProduct);
+    }
+
+    /**
+     * Writes a header and every product as CSV, in ID order, straight from a forward-only result
+     * set so that the catalog is never held in memory. The categories of a product are joined
+     * with {@code |}.
+     *
+     * @param writer The CSV to write to
+     * @return The number of products written
+     * @throws SQLException If a database access error occurs
+     * @throws IOException If the CSV cannot be written
+     */
+    public int exportCsv(CsvWriter writer) throws SQLException, IOException {
+        int count = 0;
+        writer.writeRow("product_id", "name", "manufacturer", "description", "price", "stock_quantity", "categories");
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("ProductRepository.exportCsv", EXPORT_QUERY)) {
+            pstmt.setFetchSize(EXPORT_FETCH_SIZE);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    writer.writeRow(
+                            Integer.toString(rs.getInt("product_id")),
                             rs.getString("product_name"),
                             rs.getString("manufacturer_name"),
                             rs.getString("description"),
-                            rs.getBigDecimal("price"),
-                            rs.getInt("stock_quantity")
+                            Money.ofMinor(rs.getLong("price_cents")).toString(),
+                            Integer.toString(rs.getInt("stock_quantity")),
+                            rs.getString("categories")
                     );
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    public Product getById(int productId) throws SQLException {
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("ProductRepository.getById", GET_BY_ID_QUERY)) {
+            pstmt.setInt(1, productId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapProduct(rs);
                 } else {
                     return null;
                 }
@@ -117,11 +474,10 @@ public class ProductRepository {
         }
     }
 
-    public Product update(int productId, Product updatedProduct) throws SQLException {
-        String query = "UPDATE products SET price = ?, stock_quantity = ? WHERE product_id = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setBigDecimal(1, updatedProduct.getPrice());
+    public void update(int productId, Product updatedProduct) throws SQLException {
+        try (PooledConnection connection = connectionPool.write();
+             PreparedStatement pstmt = connection.prepareStatement("ProductRepository.update", UPDATE_QUERY)) {
+            pstmt.setLong(1, updatedProduct.getPrice().getMinorUnits());
             pstmt.setInt(2, updatedProduct.getStockQuantity());
             pstmt.setInt(3, productId);
 
@@ -131,46 +487,80 @@ public class ProductRepository {
                 throw new SQLException("Failed to update product, no rows affected.");
             }
         }
+    }
 
-        return getById(productId);
+    /**
+     * Adds a delta to the stock of each product in a single transaction, using a batch of
+     * updates. Stock never drops below zero; products that no longer exist are skipped.
+     *
+     * @param productIds The product IDs
+     * @param deltas The delta of each product, in the same order as {@code productIds}
+     * @param count The number of products to update, from the start of both arrays
+     * @throws SQLException If a database access error occurs; nothing is written in that case
+     */
+    public void addStock(int[] productIds, int[] deltas, int count) throws SQLException {
+        try (PooledConnection connection = connectionPool.write()) {
+            Connection transaction = connection.getConnection();
+
+            try {
+                transaction.setAutoCommit(false);
+
+                try (PreparedStatement pstmt =
+                             connection.prepareStatement("ProductRepository.addStock", ADD_STOCK_QUERY)) {
+                    for (int i = 0; i < count; i++) {
+                        pstmt.setInt(1, deltas[i]);
+                        pstmt.setInt(2, productIds[i]);
+                        pstmt.addBatch();
+                    }
+
+                    pstmt.executeBatch();
+                }
+
+                transaction.commit();
+            } catch (SQLException | RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+        }
     }
 
     public void delete(int productId) throws SQLException {
-        String query = "DELETE FROM products WHERE product_id = ?";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (PooledConnection connection = connectionPool.write();
+             PreparedStatement pstmt = connection.prepareStatement("ProductRepository.delete", DELETE_QUERY)) {
             pstmt.setInt(1, productId);
             pstmt.executeUpdate();
         }
     }
 
-    public List<Product> searchByName(String keyword) throws SQLException {
-        String query = """
-            SELECT p.product_id, p.name AS product_name,
-                   p.description, p.price, p.stock_quantity,
-                   m.manufacturer_id, m.name AS manufacturer_name
-            FROM products p
-            LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
-            WHERE LOWER(p.name) LIKE ?
-        """;
+    /**
+     * Searches the full-text index over product names and descriptions. Every word of the
+     * keyword must match the start of a word in the product, and matches in the name rank
+     * higher than matches in the description.
+     *
+     * @param keyword The words to search for
+     * @param limit The maximum number of products to return
+     * @return The matching products, best match first
+     * @throws SQLException If a database access error occurs
+     */
+    public List<Product> searchByName(String keyword, int limit) throws SQLException {
         List<Product> products = new ArrayList<>();
+        String matchQuery = toMatchQuery(keyword);
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, "%" + keyword.toLowerCase() + "%");
+        if (matchQuery.isEmpty()) {
+            return products;
+        }
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ProductRepository.searchByName", SEARCH_BY_NAME_QUERY)) {
+            pstmt.setString(1, matchQuery);
+            pstmt.setInt(2, limit);
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Product product = new Product(
-                            rs.getInt("product_id"),
-                            rs.getObject("manufacturer_id", Integer.class),
-                            rs.getString("product_name"),
-                            rs.getString("manufacturer_name"),
-                            rs.getString("description"),
-                            rs.getBigDecimal("price"),
-                            rs.getInt("stock_quantity")
-                    );
-
-                    products.add(product);
+                    products.add(mapProduct(rs));
                 }
             }
         }
@@ -179,34 +569,16 @@ public class ProductRepository {
     }
 
     public List<Product> searchByCategory(String categoryName) throws SQLException {
-        String query = """
-            SELECT p.product_id, p.name AS product_name,
-                   p.description, p.price, p.stock_quantity,
-                   m.manufacturer_id, m.name AS manufacturer_name
-            FROM products p
-            JOIN products_categories pc ON p.product_id = pc.product_id
-            JOIN categories c ON pc.category_id = c.category_id
-            LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
-            WHERE LOWER(c.name) LIKE ?
-        """;
         List<Product> products = new ArrayList<>();
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ProductRepository.searchByCategory", SEARCH_BY_CATEGORY_QUERY)) {
             pstmt.setString(1, "%" + categoryName.toLowerCase() + "%");
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Product product = new Product(
-                            rs.getInt("product_id"),
-                            rs.getObject("manufacturer_id", Integer.class),
-                            rs.getString("product_name"),
-                            rs.getString("manufacturer_name"),
-                            rs.getString("description"),
-                            rs.getBigDecimal("price"),
-                            rs.getInt("stock_quantity")
-                    );
-
-                    products.add(product);
+                    products.add(mapProduct(rs));
                 }
             }
         }
@@ -215,38 +587,386 @@ public class ProductRepository {
     }
 
     /**
-     * Attempts to resolve and set the manufacturer ID and name for the given product
-     * by searching for a manufacturer whose name contains any of the keywords
-     * from the product's name.
+     * Finds the products that meet a filter with a single query. The name, manufacturer, price,
+     * stock and rating criteria are part of the SQL; the statement is one of a small, fixed set
+     * of shapes chosen by whether there is a name and a manufacturer and by the sort order, and
+     * unused criteria are bound to values every product meets, so the prepared statements are
+     * reused across filters. Rows are read one at a time and checked against
+     * {@code postFilter}, and reading stops as soon as the limit is reached.
      *
-     * @param product The product for which to resolve the manufacturer
+     * @param filter The filter
+     * @param postFilter Checked on each product after it is read; null if there is nothing to check
+     * @return At most {@link ProductFilter#getLimit()} products, in the order of the filter
      * @throws SQLException If a database access error occurs
      */
-    private void resolveManufacturerFromName(Product product) throws SQLException {
-        String[] keywords = product.getName().split(" ");
-        StringBuilder queryBuilder = new StringBuilder("SELECT * FROM manufacturers WHERE ");
+    public List<Product> findByFilter(ProductFilter filter, Predicate<Product> postFilter) throws SQLException {
+        List<Product> products = new ArrayList<>();
+        String matchQuery = null;
+
+        if (filter.getName() != null) {
+            matchQuery = toMatchQuery(filter.getName());
 
-        for (int i = 0; i < keywords.length; i++) {
-            if (i > 0) queryBuilder.append(" OR ");
-            queryBuilder.append("LOWER(name) LIKE ?");
+            if (matchQuery.isEmpty()) {
+                return products;
+            }
         }
 
-        queryBuilder.append(" LIMIT 1");
+        String sql = FILTER_QUERIES[matchQuery != null ? 1 : 0][filter.getManufacturer() != null ? 1 : 0]
+                [filter.getSort().ordinal()];
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("ProductRepository.findByFilter", sql)) {
+            int index = 1;
 
-        try (PreparedStatement pstmt = connection.prepareStatement(queryBuilder.toString())) {
-            for (int i = 0; i < keywords.length; i++) {
-                pstmt.setString(i + 1, "%" + keywords[i].toLowerCase() + "%");
+            if (matchQuery != null) {
+                pstmt.setString(index++, matchQuery);
             }
 
+            Money minPrice = filter.getMinPrice();
+            Money maxPrice = filter.getMaxPrice();
+            pstmt.setLong(index++, minPrice != null ? minPrice.getMinorUnits() : Long.MIN_VALUE);
+            pstmt.setLong(index++, maxPrice != null ? maxPrice.getMinorUnits() : Long.MAX_VALUE);
+            pstmt.setInt(index++, filter.isInStockOnly() ? 1 : Integer.MIN_VALUE);
+            pstmt.setInt(index++, filter.getMinRating() != null ? 1 : 0);
+            pstmt.setDouble(index++, filter.getMinRating() != null ? filter.getMinRating() : 0);
+
+            if (filter.getManufacturer() != null) {
+                pstmt.setString(index++, containsPattern(filter.getManufacturer().toLowerCase(Locale.ROOT)));
+            }
+
+            // A negative limit is no limit: the post-filter decides how many rows are needed
+            pstmt.setInt(index, postFilter == null ? filter.getLimit() : -1);
+
             try (ResultSet rs = pstmt.executeQuery()) {
+                while (products.size() < filter.getLimit() && rs.next()) {
+                    Product product = mapProduct(rs);
+
+                    if (postFilter == null || postFilter.test(product)) {
+                        products.add(product);
+                    }
+                }
+            }
+        }
+
+        return products;
+    }
+
+    /**
+     * Looks up several products by ID in as few round trips as possible.
+     *
+     * @param productIds The IDs to look up
+     * @return The products that were found, in no particular order
+     * @throws SQLException If a database access error occurs
+     */
+    public List<Product> getByIds(int[] productIds) throws SQLException {
+        List<Product> products = new ArrayList<>(productIds.length);
+
+        if (productIds.length == 0) {
+            return products;
+        }
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt = connection.prepareStatement("ProductRepository.getByIds", GET_BY_IDS_QUERY)) {
+            for (int offset = 0; offset < productIds.length; offset += ID_BATCH_SIZE) {
+                for (int i = 0; i < ID_BATCH_SIZE; i++) {
+                    // A short last batch repeats its last ID, which matches the same row again
+                    pstmt.setInt(i + 1, productIds[Math.min(offset + i, productIds.length - 1)]);
+                }
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        products.add(mapProduct(rs));
+                    }
+                }
+            }
+        }
+
+        return products;
+    }
+
+    public Map<Integer, String> getAllCategories() throws SQLException {
+        Map<Integer, String> categories = new LinkedHashMap<>();
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ProductRepository.getAllCategories", GET_ALL_CATEGORIES_QUERY);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                categories.put(rs.getInt("category_id"), rs.getString("name"));
+            }
+        }
+
+        return categories;
+    }
+
+    public Map<Integer, String> getAllManufacturers() throws SQLException {
+        Map<Integer, String> manufacturers = new LinkedHashMap<>();
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ProductRepository.getAllManufacturers", GET_ALL_MANUFACTURERS_QUERY);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                manufacturers.put(rs.getInt("manufacturer_id"), rs.getString("name"));
+            }
+        }
+
+        return manufacturers;
+    }
+
+    /**
+     * Rebuilds the matcher that {@link #create} uses to find the manufacturer in a product name.
+     * It is built on first use; call this after manufacturers are added, renamed or removed.
+     *
+     * @throws SQLException If a database access error occurs
+     */
+    public void refreshManufacturers() throws SQLException {
+        manufacturerMatcher = new ManufacturerMatcher(getAllManufacturers());
+    }
+
+    public Map<Integer, IntBitmap> getProductIdsByCategory() throws SQLException {
+        Map<Integer, IntBitmap> productIdsByCategory = new LinkedHashMap<>();
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ProductRepository.getProductIdsByCategory",
+                             GET_PRODUCT_IDS_BY_CATEGORY_QUERY);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                productIdsByCategory
+                        .computeIfAbsent(rs.getInt("category_id"), id -> new IntBitmap())
+                        .add(rs.getInt("product_id"));
+            }
+        }
+
+        return productIdsByCategory;
+    }
+
+    public int createCategory(String name) throws SQLException {
+        try (PooledConnection connection = connectionPool.write()) {
+            return insertCategory(connection, "ProductRepository.createCategory", name);
+        }
+    }
+
+    public void addToCategory(int productId, int categoryId) throws SQLException {
+        try (PooledConnection connection = connectionPool.write();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ProductRepository.addToCategory", ADD_TO_CATEGORY_QUERY)) {
+            pstmt.setInt(1, productId);
+            pstmt.setInt(2, categoryId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void addAllToCategories(PooledConnection connection, String query, int[] productIds,
+                                           List<int[]> categoryIds) throws SQLException {
+        int links = 0;
+
+        for (int[] ids : categoryIds) {
+            links += ids.length;
+        }
+
+        int[] linkProductIds = new int[links];
+        int[] linkCategoryIds = new int[links];
+        int link = 0;
+
+        for (int i = 0; i < productIds.length; i++) {
+            for (int categoryId : categoryIds.get(i)) {
+                linkProductIds[link] = productIds[i];
+                linkCategoryIds[link] = categoryId;
+                link++;
+            }
+        }
+
+        for (int offset = 0; offset < links; ) {
+            int rows = ADD_ALL_TO_CATEGORIES_QUERIES.rowsFor(links - offset);
+
+            try (PreparedStatement pstmt =
+                         connection.prepareStatement(query, ADD_ALL_TO_CATEGORIES_QUERIES.sql(rows))) {
+                for (int i = 0; i < rows; i++) {
+                    pstmt.setInt(2 * i + 1, linkProductIds[offset + i]);
+                    pstmt.setInt(2 * i + 2, linkCategoryIds[offset + i]);
+                }
+
+                pstmt.executeUpdate();
+            }
+
+            offset += rows;
+        }
+    }
+
+    private static int insertCategory(PooledConnection connection, String query, String name) throws SQLException {
+        try (PreparedStatement pstmt =
+                     connection.prepareStatement(query, CREATE_CATEGORY_QUERY, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, name);
+            pstmt.executeUpdate();
+
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
                 if (rs.next()) {
-                    product.setManufacturerId(rs.getInt("manufacturer_id"));
-                    product.setManufacturerName(rs.getString("name"));
-                } else {
-                    product.setManufacturerId(null);
-                    product.setManufacturerName(null);
+                    return rs.getInt(1);
+                }
+            }
+
+            throw new SQLException("Failed to create category, no rows affected.");
+        }
+    }
+
+    /**
+     * Replaces the placeholders of new categories, -1 for the first and so on, by their assigned IDs.
+     */
+    private static List<int[]> resolveNewCategoryIds(List<int[]> categoryIds, int[] newCategoryIds) {
+        if (newCategoryIds.length == 0) {
+            return categoryIds;
+        }
+
+        List<int[]> resolved = new ArrayList<>(categoryIds.size());
+
+        for (int[] ids : categoryIds) {
+            int[] resolvedIds = ids.clone();
+
+            for (int i = 0; i < resolvedIds.length; i++) {
+                if (resolvedIds[i] < 0) {
+                    resolvedIds[i] = newCategoryIds[-1 - resolvedIds[i]];
                 }
             }
+
+            resolved.add(resolvedIds);
         }
+
+        return resolved;
+    }
+
+    private static int lastInsertId(PooledConnection connection, String query) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(query, LAST_INSERT_ID_QUERY);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Failed to read the last inserted ID.");
+            }
+
+            return rs.getInt(1);
+        }
+    }
+
+    private static String[][][] filterQueries() {
+        ProductFilter.Sort[] sorts = ProductFilter.Sort.values();
+        String[][][] queries = new String[2][2][sorts.length];
+
+        for (int fullText = 0; fullText < 2; fullText++) {
+            for (int byManufacturer = 0; byManufacturer < 2; byManufacturer++) {
+                for (ProductFilter.Sort sort : sorts) {
+                    if (sort != ProductFilter.Sort.RELEVANCE || fullText == 1) {
+                        queries[fullText][byManufacturer][sort.ordinal()] =
+                                filterQuery(fullText == 1, byManufacturer == 1, sort);
+                    }
+                }
+            }
+        }
+
+        return queries;
+    }
+
+    private static String filterQuery(boolean fullText, boolean byManufacturer, ProductFilter.Sort sort) {
+        String orderBy = switch (sort) {
+            case RELEVANCE -> "bm25(products_fts, 10.0, 1.0)";
+            case ID -> "p.product_id";
+            case NAME -> "p.name COLLATE NOCASE, p.product_id";
+            case PRICE_ASCENDING -> "p.price_cents, p.product_id";
+            case PRICE_DESCENDING -> "p.price_cents DESC, p.product_id";
+            case RATING -> "COALESCE(CAST(r.rating_sum AS REAL) / r.rating_count, 0) DESC, "
+                    + "COALESCE(r.rating_count, 0) DESC, p.product_id";
+        };
+
+        return """
+            SELECT p.product_id, p.name AS product_name,
+                   p.description, p.price_cents, p.stock_quantity,
+                   m.manufacturer_id, m.name AS manufacturer_name,
+                   r.rating_count, r.rating_sum
+            %s
+            LEFT JOIN manufacturers m ON p.manufacturer_id = m.manufacturer_id
+            LEFT JOIN product_ratings r ON r.product_id = p.product_id
+            WHERE %sp.price_cents BETWEEN ? AND ?
+              AND p.stock_quantity >= ?
+              AND COALESCE(r.rating_count, 0) >= ?
+              AND COALESCE(r.rating_sum, 0) >= ? * COALESCE(r.rating_count, 0)%s
+            ORDER BY %s
+            LIMIT ?
+        """.formatted(
+                fullText
+                        ? "FROM products_fts\nJOIN products p ON p.product_id = products_fts.rowid"
+                        : "FROM products p",
+                fullText ? "products_fts MATCH ?\n  AND " : "",
+                byManufacturer ? "\n  AND LOWER(m.name) LIKE ? ESCAPE '\\'" : "",
+                orderBy);
+    }
+
+    private static Product mapProduct(ResultSet rs) throws SQLException {
+        // getObject with a type fails on NULL in the SQLite driver
+        int manufacturerId = rs.getInt("manufacturer_id");
+        Product product = new Product(
+                rs.getInt("product_id"),
+                rs.wasNull() ? null : manufacturerId,
+                rs.getString("product_name"),
+                rs.getString("manufacturer_name"),
+                rs.getString("description"),
+                Money.ofMinor(rs.getLong("price_cents")),
+                rs.getInt("stock_quantity")
+        );
+        // Products without reviews have no ratings row, which reads as zero
+        product.setRating(rs.getInt("rating_count"), rs.getLong("rating_sum"));
+        return product;
+    }
+
+    /**
+     * Turns a fragment into a LIKE pattern, with {@code ESCAPE '\'}, that matches values
+     * containing it literally, so {@code %} and {@code _} in user input are not wildcards.
+     */
+    private static String containsPattern(String fragment) {
+        StringBuilder pattern = new StringBuilder(fragment.length() + 2).append('%');
+
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+
+            if (c == '\\' || c == '%' || c == '_') {
+                pattern.append('\\');
+            }
+
+            pattern.append(c);
+        }
+
+        return pattern.append('%').toString();
+    }
+
+    /**
+     * Turns free text into an FTS5 query of quoted prefix terms, so that characters with a
+     * meaning in the FTS5 query syntax are never interpreted.
+     */
+    private String toMatchQuery(String keyword) {
+        StringBuilder matchQuery = new StringBuilder();
+
+        for (String term : keyword.split("[^\\p{L}\\p{N}]+")) {
+            if (term.isEmpty()) continue;
+            if (matchQuery.length() > 0) matchQuery.append(' ');
+            matchQuery.append('"').append(term).append("\"*");
+        }
+
+        return matchQuery.toString();
+    }
+
+    /**
+     * Attempts to resolve and set the manufacturer ID and name for the given product
+     * by finding a manufacturer name among the words of the product's name.
+     *
+     * @param product The product for which to resolve the manufacturer
+     * @throws SQLException If a database access error occurs
+     */
+    private void resolveManufacturerFromName(Product product) throws SQLException {
+        if (manufacturerMatcher == null) {
+            refreshManufacturers();
+        }
+
+        manufacturerMatcher.resolve(product);
     }
 }
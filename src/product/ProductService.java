@@ -1,31 +1,132 @@
 package product;
 
-import java.math.BigDecimal;
+import cache.CacheStats;
+import cache.ExpiringCache;
+import core.CsvColumns;
+import core.CsvReader;
+import core.CsvWriter;
+import core.ImportResult;
+import core.Money;
+import core.Page;
+import index.IntBitmap;
+
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class ProductService {
+    private static final int SEARCH_RESULT_LIMIT = 100;
+    private static final int IMPORT_CHUNK_SIZE = Integer.getInteger("webbutiken.import.chunkSize", 10_000);
+
     private final ProductRepository productRepository;
+    private final ExpiringCache<Integer, Product> productCache;
+    private final CategoryIndex categoryIndex;
+    private final ProductSnapshot productSnapshot; // May be null
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, CategoryIndex categoryIndex) {
+        this(productRepository, categoryIndex, null);
+    }
+
+    /**
+     * @param productSnapshot The snapshot that answers supported filters, or null to run every filter in SQL
+     */
+    public ProductService(ProductRepository productRepository, CategoryIndex categoryIndex,
+                          ProductSnapshot productSnapshot) {
+        this(productRepository, new ExpiringCache<>(
+                Integer.getInteger("webbutiken.productCache.maxSize", 10_000),
+                Duration.ofSeconds(Long.getLong("webbutiken.productCache.ttlSeconds", 300L))),
+                categoryIndex, productSnapshot);
+    }
+
+    public ProductService(ProductRepository productRepository, ExpiringCache<Integer, Product> productCache,
+                          CategoryIndex categoryIndex) {
+        this(productRepository, productCache, categoryIndex, null);
+    }
+
+    public ProductService(ProductRepository productRepository, ExpiringCache<Integer, Product> productCache,
+                          CategoryIndex categoryIndex, ProductSnapshot productSnapshot) {
         this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.categoryIndex = categoryIndex;
+        this.productSnapshot = productSnapshot;
     }
 
     public Product createProduct(Product product) throws SQLException {
         validateProductInput(product);
-        return productRepository.create(product);
+        Product createdProduct = productRepository.create(product);
+        productCache.put(createdProduct.getProductId(), new Product(createdProduct));
+        markStale(IntBitmap.of(createdProduct.getProductId()));
+        return createdProduct;
     }
 
     public List<Product> getAllProducts() throws SQLException {
         return productRepository.getAll();
     }
 
+    public Page<Product> getProductsPage(int afterProductId, int pageSize) throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1.");
+        }
+
+        return productRepository.getPage(afterProductId, pageSize);
+    }
+
+    public Stream<Product> streamAllProducts(int fetchSize) throws SQLException {
+        return productRepository.streamAll(fetchSize);
+    }
+
+    /**
+     * Returns the product with the given ID from the catalog cache, loading it on a miss.
+     * Callers get their own copy, so changing it does not affect the cache.
+     *
+     * @param productId The product ID
+     * @return The product, or null if there is none
+     * @throws SQLException If a database access error occurs
+     */
     public Product getProductById(int productId) throws SQLException {
-        return productRepository.getById(productId);
+        Product product = productCache.get(productId, productRepository::getById);
+        return product != null ? new Product(product) : null;
+    }
+
+    /**
+     * Reads the average review rating from the running totals that are loaded with the product,
+     * so it costs no query when the product is cached.
+     *
+     * @return The average rating from 1 to 5, or null if there is no such product or it has no reviews
+     * @throws SQLException If a database access error occurs
+     */
+    public Double getAverageRating(int productId) throws SQLException {
+        Product product = productCache.get(productId, productRepository::getById);
+        return product != null ? product.getAverageRating() : null;
+    }
+
+    /**
+     * Drops the cached copies of products whose rows were changed outside this service,
+     * such as the stock taken by a new order.
+     */
+    public void invalidateProducts(IntBitmap productIds) {
+        productIds.forEach(productCache::invalidate);
+        markStale(productIds);
+    }
+
+    public CacheStats getProductCacheStats() {
+        return productCache.getStats();
     }
 
     public boolean updateProduct(Product product) throws SQLException {
-        Product existingProduct = productRepository.getById(product.getProductId());
+        Product existingProduct = getProductById(product.getProductId());
 
         if (existingProduct == null) {
             throw new IllegalArgumentException("No product found with ID " + product.getProductId() + ".");
@@ -35,6 +136,13 @@ public class ProductService {
 
         if (!existingProduct.equals(product)) {
             productRepository.update(product.getProductId(), product);
+
+            // Only price and stock are written, the rest of the cached row is still current
+            Product updatedProduct = new Product(existingProduct);
+            updatedProduct.setPrice(product.getPrice());
+            updatedProduct.setStockQuantity(product.getStockQuantity());
+            productCache.put(product.getProductId(), updatedProduct);
+            markStale(IntBitmap.of(product.getProductId()));
             return true;
         } else {
             return false;
@@ -42,13 +150,20 @@ public class ProductService {
     }
 
     public void deleteProduct(int productId) throws SQLException {
-        Product existingProduct = productRepository.getById(productId);
+        Product existingProduct = getProductById(productId);
 
         if (existingProduct == null) {
             throw new IllegalArgumentException("No product found with ID " + productId + ".");
         }
 
-        productRepository.delete(productId);
+        try {
+            productRepository.delete(productId);
+        } finally {
+            productCache.invalidate(productId);
+            markStale(IntBitmap.of(productId));
+        }
+
+        categoryIndex.removeProduct(productId);
     }
 
     public List<Product> searchProductsByName(String keyword) throws SQLException {
@@ -56,7 +171,7 @@ public class ProductService {
             throw new IllegalArgumentException("Search keyword is required.");
         }
 
-        return productRepository.searchByName(keyword);
+        return productRepository.searchByName(keyword, SEARCH_RESULT_LIMIT);
     }
 
     public List<Product> searchProductsByCategory(String categoryName) throws SQLException {
@@ -64,7 +179,363 @@ public class ProductService {
             throw new IllegalArgumentException("Search category is required.");
         }
 
-        return productRepository.searchByCategory(categoryName);
+        return getProductsByIds(categoryIndex.productsInAny(categoryIndex.findCategoryIds(categoryName)));
+    }
+
+    /**
+     * Finds the products in the categories matching the given names. Each name matches every
+     * category whose name contains it.
+     *
+     * @param categoryNames The category names to search for
+     * @param matchAll Whether a product must be in a matching category for every name, instead of for any name
+     * @return The matching products, ordered by ID
+     * @throws SQLException If a database access error occurs
+     */
+    public List<Product> searchProductsByCategories(List<String> categoryNames, boolean matchAll)
+            throws SQLException {
+        if (categoryNames == null || categoryNames.isEmpty()
+                || categoryNames.stream().anyMatch(this::isNullOrEmpty)) {
+            throw new IllegalArgumentException("Search categories are required.");
+        }
+
+        IntBitmap productIds = null;
+
+        for (String categoryName : categoryNames) {
+            IntBitmap matches = categoryIndex.productsInAny(categoryIndex.findCategoryIds(categoryName));
+
+            if (productIds == null) {
+                productIds = matches;
+            } else {
+                productIds = matchAll ? productIds.and(matches) : productIds.or(matches);
+            }
+        }
+
+        return getProductsByIds(productIds);
+    }
+
+    /**
+     * Finds the products that meet every criterion of a filter. The category is looked up in
+     * the in-memory category index, since a category name can match any number of categories.
+     * Filters without a name or predicate run on the product snapshot, if there is one, and
+     * only the selected products are read; the others run as one query that checks the
+     * category on each row as it is read.
+     *
+     * @param filter The filter
+     * @return At most {@link ProductFilter#getLimit()} products, in the order of the filter
+     * @throws SQLException If a database access error occurs
+     */
+    public List<Product> findProducts(ProductFilter filter) throws SQLException {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter must not be null.");
+        }
+
+        Predicate<Product> postFilter = filter.getPostFilter();
+
+        if (filter.getCategory() != null) {
+            IntBitmap productIds = categoryIndex.productsInAny(categoryIndex.findCategoryIds(filter.getCategory()));
+
+            if (productIds.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            if (productSnapshot != null && productSnapshot.supports(filter)) {
+                return getSelectedProducts(productSnapshot.select(filter, productIds));
+            }
+
+            Predicate<Product> inCategory = product -> productIds.contains(product.getProductId());
+            postFilter = postFilter == null ? inCategory : inCategory.and(postFilter);
+        } else if (productSnapshot != null && productSnapshot.supports(filter)) {
+            return getSelectedProducts(productSnapshot.select(filter, null));
+        }
+
+        return productRepository.findByFilter(filter, postFilter);
+    }
+
+    /**
+     * Reads the products of a snapshot selection, keeping its order.
+     */
+    private List<Product> getSelectedProducts(int[] productIds) throws SQLException {
+        Map<Integer, Product> productsById = new HashMap<>(productIds.length * 2);
+
+        for (Product product : getProductsByIds(IntBitmap.of(productIds))) {
+            productsById.put(product.getProductId(), product);
+        }
+
+        List<Product> products = new ArrayList<>(productIds.length);
+
+        for (int productId : productIds) {
+            Product product = productsById.get(productId);
+
+            // Deleted since the selection was made
+            if (product != null) {
+                products.add(product);
+            }
+        }
+
+        return products;
+    }
+
+    public int createCategory(String name) throws SQLException {
+        if (isNullOrEmpty(name)) {
+            throw new IllegalArgumentException("Category name is required.");
+        }
+
+        int categoryId = productRepository.createCategory(name.trim());
+        categoryIndex.putCategory(categoryId, name.trim());
+        return categoryId;
+    }
+
+    public void addProductToCategory(int productId, int categoryId) throws SQLException {
+        if (getProductById(productId) == null) {
+            throw new IllegalArgumentException("No product found with ID " + productId + ".");
+        }
+
+        productRepository.addToCategory(productId, categoryId);
+        categoryIndex.addProduct(categoryId, productId);
+    }
+
+    /**
+     * Imports products from a CSV file with a header row. The {@code name} and {@code price}
+     * columns are required; {@code description}, {@code stock_quantity}, {@code manufacturer}
+     * and {@code categories} (separated by {@code |}) are optional, and other columns, such as
+     * the {@code product_id} of an export, are ignored. Missing categories are created, only for
+     * rows that are imported. Rows are inserted in chunks of {@code webbutiken.import.chunkSize},
+     * each in its own transaction together with the categories it creates, so chunks committed
+     * before a database error stay imported.
+     *
+     * @param file The CSV file
+     * @param progress Called with the number of rows read after every chunk
+     * @return How many products were imported and why rows were rejected
+     * @throws IllegalArgumentException If a required column is missing
+     * @throws IOException If the file cannot be read
+     * @throws SQLException If a database access error occurs
+     */
+    public ImportResult importProducts(Path file, IntConsumer progress) throws IOException, SQLException {
+        ImportResult result = new ImportResult();
+
+        try (CsvReader reader = CsvReader.open(file)) {
+            String[] header = reader.readRow();
+
+            if (header == null) {
+                return result;
+            }
+
+            CsvColumns columns = new CsvColumns(header, List.of("name", "price"));
+            Map<Integer, String> manufacturers = productRepository.getAllManufacturers();
+            Map<String, Integer> manufacturerIds = idsByName(manufacturers);
+            Map<String, Integer> categoryIds = idsByName(productRepository.getAllCategories());
+
+            List<Product> products = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            List<int[]> productCategoryIds = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            List<String> newCategories = new ArrayList<>();
+            int rows = 0;
+            String[] row;
+
+            while ((row = reader.readRow()) != null) {
+                rows++;
+
+                try {
+                    Product product = new Product(
+                            columns.get(row, "name"),
+                            columns.get(row, "description"),
+                            parseMoney(columns.get(row, "price")),
+                            parseQuantity(columns.get(row, "stock_quantity"))
+                    );
+                    validateProductInput(product);
+
+                    String manufacturer = columns.get(row, "manufacturer");
+
+                    if (manufacturer != null) {
+                        Integer manufacturerId = manufacturerIds.get(normalizeName(manufacturer));
+
+                        if (manufacturerId == null) {
+                            throw new IllegalArgumentException("Unknown manufacturer '" + manufacturer + "'.");
+                        }
+
+                        product.setManufacturerId(manufacturerId);
+                        product.setManufacturerName(manufacturers.get(manufacturerId));
+                    }
+
+                    productCategoryIds.add(
+                            resolveCategoryIds(columns.get(row, "categories"), categoryIds, newCategories));
+                    products.add(product);
+                } catch (IllegalArgumentException e) {
+                    result.reject(reader.getLineNumber(), e.getMessage());
+                }
+
+                if (products.size() == IMPORT_CHUNK_SIZE) {
+                    importChunk(products, productCategoryIds, categoryIds, newCategories, result);
+                    progress.accept(rows);
+                }
+            }
+
+            importChunk(products, productCategoryIds, categoryIds, newCategories, result);
+            progress.accept(rows);
+        }
+
+        return result;
+    }
+
+    /**
+     * Exports every product to a CSV file that {@link #importProducts} can read back.
+     *
+     * @param file The file to create or overwrite
+     * @return The number of products exported
+     * @throws IOException If the file cannot be written
+     * @throws SQLException If a database access error occurs
+     */
+    public int exportProducts(Path file) throws IOException, SQLException {
+        try (CsvWriter writer = CsvWriter.open(file)) {
+            return productRepository.exportCsv(writer);
+        }
+    }
+
+    private void importChunk(List<Product> products, List<int[]> productCategoryIds,
+                             Map<String, Integer> categoryIds, List<String> newCategories, ImportResult result)
+            throws SQLException {
+        if (products.isEmpty()) {
+            return;
+        }
+
+        int[] newCategoryIds = productRepository.createAll(products, productCategoryIds, newCategories);
+
+        for (int i = 0; i < newCategoryIds.length; i++) {
+            categoryIds.put(normalizeName(newCategories.get(i)), newCategoryIds[i]);
+            categoryIndex.putCategory(newCategoryIds[i], newCategories.get(i));
+        }
+
+        IntBitmap productIds = new IntBitmap();
+
+        for (int i = 0; i < products.size(); i++) {
+            int productId = products.get(i).getProductId();
+            productIds.add(productId);
+
+            for (int categoryId : productCategoryIds.get(i)) {
+                categoryIndex.addProduct(categoryId < 0 ? newCategoryIds[-1 - categoryId] : categoryId, productId);
+            }
+        }
+
+        markStale(productIds);
+        result.addImported(products.size());
+        products.clear();
+        productCategoryIds.clear();
+        newCategories.clear();
+    }
+
+    /**
+     * Looks up the categories named in a {@code |} separated list. A category that does not exist
+     * yet is added to {@code newCategories}, to be created with the chunk, and gets a placeholder
+     * ID below zero until then: -1 for the first new category of the chunk and so on.
+     */
+    private int[] resolveCategoryIds(String categories, Map<String, Integer> categoryIds,
+                                     List<String> newCategories) {
+        if (categories == null) {
+            return new int[0];
+        }
+
+        Set<Integer> ids = new LinkedHashSet<>();
+
+        for (String category : categories.split("\\|")) {
+            if (isNullOrEmpty(category)) {
+                continue;
+            }
+
+            Integer categoryId = categoryIds.get(normalizeName(category));
+
+            if (categoryId == null) {
+                // Replaced by the assigned ID once the chunk is imported
+                newCategories.add(category.trim());
+                categoryId = -newCategories.size();
+                categoryIds.put(normalizeName(category), categoryId);
+            }
+
+            ids.add(categoryId);
+        }
+
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void markStale(IntBitmap productIds) {
+        if (productSnapshot != null) {
+            productSnapshot.markStale(productIds);
+        }
+    }
+
+    private static Map<String, Integer> idsByName(Map<Integer, String> namesById) {
+        Map<String, Integer> idsByName = new HashMap<>();
+
+        for (Map.Entry<Integer, String> entry : namesById.entrySet()) {
+            idsByName.putIfAbsent(normalizeName(entry.getValue()), entry.getKey());
+        }
+
+        return idsByName;
+    }
+
+    private static String normalizeName(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Money parseMoney(String amount) {
+        if (amount == null) {
+            return null;
+        }
+
+        try {
+            return Money.parse(amount);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid price '" + amount + "'.");
+        }
+    }
+
+    private static int parseQuantity(String quantity) {
+        if (quantity == null) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(quantity);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid stock quantity '" + quantity + "'.");
+        }
+    }
+
+    /**
+     * Hydrates products by ID, taking what it can from the catalog cache and fetching the
+     * rest in batches. IDs without a product are left out.
+     */
+    public List<Product> getProductsByIds(IntBitmap productIds) throws SQLException {
+        int[] ids = productIds.toArray();
+        Product[] products = new Product[ids.length];
+        int[] missingIds = new int[ids.length];
+        long[] generations = new long[ids.length];
+        int missingCount = 0;
+
+        for (int i = 0; i < ids.length; i++) {
+            products[i] = productCache.getIfPresent(ids[i]);
+
+            if (products[i] == null) {
+                generations[i] = productCache.generation(ids[i]);
+                missingIds[missingCount++] = ids[i];
+            }
+        }
+
+        if (missingCount > 0) {
+            for (Product product : productRepository.getByIds(Arrays.copyOf(missingIds, missingCount))) {
+                int index = Arrays.binarySearch(ids, product.getProductId());
+                productCache.putIfCurrent(product.getProductId(), product, generations[index]);
+                products[index] = product;
+            }
+        }
+
+        List<Product> result = new ArrayList<>(ids.length);
+
+        for (Product product : products) {
+            if (product != null) {
+                result.add(new Product(product));
+            }
+        }
+
+        return result;
     }
 
     private boolean isNullOrEmpty(String string) {
@@ -88,7 +559,7 @@ public class ProductService {
             throw new IllegalArgumentException("Name is required.");
         }
 
-        if (product.getPrice() == null || product.getPrice().compareTo(BigDecimal.ZERO) < 0) {
+        if (product.getPrice() == null || product.getPrice().isNegative()) {
             throw new IllegalArgumentException("Price is required and cannot be negative.");
         }
 
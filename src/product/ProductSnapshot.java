@@ -0,0 +1,511 @@
+package product;
+
+import database.UncheckedSQLException;
+import index.IntBitmap;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A columnar in-memory copy of the catalog, so that browsing filters run without the database.
+ * Every product is one row across primitive arrays: ID, price in minor units, stock,
+ * manufacturer ID and rating totals. Names are dictionary-encoded, each row holding a code
+ * into a list of distinct names. Rows are kept in product ID order.
+ * <p>
+ * A filter scans the columns in fixed-size chunks on a parallel stream and returns a
+ * selection vector, the IDs of the matching products in the order of the filter.
+ * <p>
+ * Writes only mark products as stale, which is cheap. The next filter fetches the stale
+ * products in one batched lookup before it scans, so filters see every committed write that
+ * was marked before they started. Deleted products stay as dead rows until the next full reload,
+ * which also happens when too many products are stale at once, such as after an import.
+ */
+public class ProductSnapshot {
+    private static final int CHUNK_SIZE = 16_384;
+    private static final int LOAD_FETCH_SIZE = 1000;
+    // Beyond this many stale products, reading the whole table is cheaper than looking them up by ID
+    private static final int MAX_INCREMENTAL_REFRESH = 10_000;
+
+    private final ProductRepository productRepository;
+    // Filters take the read lock; applying a refresh takes the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object refreshLock = new Object();
+    private final Object staleLock = new Object();
+    private Columns columns;
+    private IntBitmap stale = new IntBitmap();
+
+    private ProductSnapshot(ProductRepository productRepository, Columns columns) {
+        this.productRepository = productRepository;
+        this.columns = columns;
+    }
+
+    /**
+     * Reads every product into a new snapshot.
+     *
+     * @throws SQLException If a database access error occurs
+     */
+    public static ProductSnapshot load(ProductRepository productRepository) throws SQLException {
+        return new ProductSnapshot(productRepository, readAll(productRepository));
+    }
+
+    /**
+     * Marks products whose rows were created, changed or deleted, to be read again before the
+     * next filter.
+     */
+    public void markStale(IntBitmap productIds) {
+        synchronized (staleLock) {
+            stale = stale.or(productIds);
+        }
+    }
+
+    /**
+     * Reads the stale products again. Runs before every filter, so there is no need to call it
+     * directly except to move the cost out of the next filter.
+     *
+     * @throws SQLException If a database access error occurs; the products stay stale
+     */
+    public void refresh() throws SQLException {
+        synchronized (refreshLock) {
+            IntBitmap productIds;
+
+            synchronized (staleLock) {
+                if (stale.isEmpty()) {
+                    return;
+                }
+
+                productIds = stale;
+                stale = new IntBitmap();
+            }
+
+            try {
+                if (productIds.cardinality() > MAX_INCREMENTAL_REFRESH) {
+                    Columns reloaded = readAll(productRepository);
+                    lock.writeLock().lock();
+
+                    try {
+                        columns = reloaded;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+
+                    return;
+                }
+
+                List<Product> products = productRepository.getByIds(productIds.toArray());
+                lock.writeLock().lock();
+
+                try {
+                    for (Product product : products) {
+                        columns.put(product);
+                        productIds.remove(product.getProductId());
+                    }
+
+                    // What is left was not found, so it has been deleted
+                    productIds.forEach(columns::remove);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (SQLException | RuntimeException e) {
+                markStale(productIds);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return Whether {@link #select} can answer the filter. Full-text name searches and
+     * criteria given as predicates need the product rows, so they are left to SQL.
+     */
+    public boolean supports(ProductFilter filter) {
+        return filter.getName() == null && filter.getPostFilter() == null;
+    }
+
+    /**
+     * Runs a filter over the snapshot.
+     *
+     * @param filter The filter, which must be {@linkplain #supports supported}
+     * @param restrictTo The only products that may match, such as those of a category; null for any
+     * @return The IDs of at most {@link ProductFilter#getLimit()} matching products, in the order of the filter
+     * @throws IllegalArgumentException If the filter is not supported
+     * @throws SQLException If stale products cannot be read again
+     */
+    public int[] select(ProductFilter filter, IntBitmap restrictTo) throws SQLException {
+        if (!supports(filter)) {
+            throw new IllegalArgumentException("The product snapshot cannot search by name or run predicates.");
+        }
+
+        refresh();
+        lock.readLock().lock();
+
+        try {
+            Columns columns = this.columns;
+            Criteria criteria = new Criteria(filter, restrictTo, columns);
+            RowOrder order = columns.order(filter.getSort());
+            int limit = filter.getLimit();
+            int chunks = (columns.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+            // Each chunk keeps only what could make the final cut: its first rows in ID order, or its best rows
+            int[][] parts = IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> {
+                        int from = chunk * CHUNK_SIZE;
+                        int to = Math.min(from + CHUNK_SIZE, columns.size);
+                        return order == null
+                                ? columns.scan(criteria, from, to, limit)
+                                : topRows(columns.scan(criteria, from, to, Integer.MAX_VALUE), limit, order);
+                    })
+                    .toArray(int[][]::new);
+
+            int[] rows = concat(parts);
+            rows = order == null ? Arrays.copyOf(rows, Math.min(rows.length, limit)) : topRows(rows, limit, order);
+            int[] productIds = new int[rows.length];
+
+            for (int i = 0; i < rows.length; i++) {
+                productIds[i] = columns.ids[rows[i]];
+            }
+
+            return productIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of products in the snapshot
+     */
+    public int size() {
+        lock.readLock().lock();
+
+        try {
+            return columns.liveRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Columns readAll(ProductRepository productRepository) throws SQLException {
+        Columns columns = new Columns();
+
+        try (Stream<Product> products = productRepository.streamAll(LOAD_FETCH_SIZE)) {
+            Iterator<Product> iterator = products.iterator();
+
+            while (iterator.hasNext()) {
+                columns.put(iterator.next());
+            }
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+
+        return columns;
+    }
+
+    /**
+     * @return The best {@code limit} rows in order
+     */
+    private static int[] topRows(int[] rows, int limit, RowOrder order) {
+        int[] heap = new int[Math.min(rows.length, limit)];
+        int size = 0;
+
+        // A max-heap on the order, so the worst of the rows kept so far is on top
+        for (int row : rows) {
+            if (size < heap.length) {
+                heap[size] = row;
+                siftUp(heap, size++, order);
+            } else if (order.compare(row, heap[0]) < 0) {
+                heap[0] = row;
+                siftDown(heap, size, order);
+            }
+        }
+
+        return Arrays.stream(heap)
+                .boxed()
+                .sorted(order::compare)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static void siftUp(int[] heap, int index, RowOrder order) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+
+            if (order.compare(heap[index], heap[parent]) <= 0) {
+                return;
+            }
+
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, RowOrder order) {
+        int index = 0;
+
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < size && order.compare(heap[left], heap[largest]) > 0) largest = left;
+            if (right < size && order.compare(heap[right], heap[largest]) > 0) largest = right;
+
+            if (largest == index) {
+                return;
+            }
+
+            swap(heap, index, largest);
+            index = largest;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int value = array[i];
+        array[i] = array[j];
+        array[j] = value;
+    }
+
+    private static int[] concat(int[][] parts) {
+        int length = 0;
+
+        for (int[] part : parts) {
+            length += part.length;
+        }
+
+        int[] result = new int[length];
+        int offset = 0;
+
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+
+        return result;
+    }
+
+    /**
+     * Compares two rows; rows that come first in the result compare lower.
+     */
+    @FunctionalInterface
+    private interface RowOrder {
+        int compare(int row, int otherRow);
+    }
+
+    /**
+     * A filter turned into plain values for the scan loop.
+     */
+    private static final class Criteria {
+        final long minPrice;
+        final long maxPrice;
+        final int minStock;
+        final double minRating;
+        final boolean[] manufacturers; // By manufacturer ID; null for any manufacturer
+        final IntBitmap restrictTo; // May be null
+
+        Criteria(ProductFilter filter, IntBitmap restrictTo, Columns columns) {
+            this.minPrice = filter.getMinPrice() != null ? filter.getMinPrice().getMinorUnits() : Long.MIN_VALUE;
+            this.maxPrice = filter.getMaxPrice() != null ? filter.getMaxPrice().getMinorUnits() : Long.MAX_VALUE;
+            this.minStock = filter.isInStockOnly() ? 1 : Integer.MIN_VALUE;
+            this.minRating = filter.getMinRating() != null ? filter.getMinRating() : 0;
+            this.manufacturers = filter.getManufacturer() != null
+                    ? columns.manufacturersMatching(filter.getManufacturer()) : null;
+            this.restrictTo = restrictTo;
+        }
+    }
+
+    /**
+     * The column arrays. Only changed under the write lock of the snapshot.
+     */
+    private static final class Columns {
+        private static final int NO_MANUFACTURER = 0;
+
+        int size;
+        int liveRows;
+        int[] ids = new int[1024];
+        long[] priceCents = new long[1024];
+        int[] stock = new int[1024];
+        int[] manufacturerIds = new int[1024];
+        int[] nameCodes = new int[1024];
+        int[] ratingCounts = new int[1024];
+        long[] ratingSums = new long[1024];
+        boolean[] live = new boolean[1024];
+
+        final List<String> names = new ArrayList<>();
+        final Map<String, Integer> nameDictionary = new HashMap<>();
+        final Map<Integer, String> manufacturerNames = new HashMap<>();
+
+        /**
+         * Adds the product, or overwrites its row if it already has one.
+         */
+        void put(Product product) {
+            int row = find(product.getProductId());
+
+            if (row < 0) {
+                row = -row - 1;
+                insertRow(row);
+                ids[row] = product.getProductId();
+            }
+
+            if (!live[row]) {
+                live[row] = true;
+                liveRows++;
+            }
+
+            priceCents[row] = product.getPrice().getMinorUnits();
+            stock[row] = product.getStockQuantity();
+            manufacturerIds[row] = product.getManufacturerId() != null ? product.getManufacturerId() : NO_MANUFACTURER;
+            nameCodes[row] = nameCode(product.getName());
+            ratingCounts[row] = product.getRatingCount();
+            ratingSums[row] = product.getRatingSum();
+
+            if (product.getManufacturerId() != null && product.getManufacturerName() != null) {
+                manufacturerNames.put(product.getManufacturerId(), product.getManufacturerName().toLowerCase(Locale.ROOT));
+            }
+        }
+
+        void remove(int productId) {
+            int row = find(productId);
+
+            if (row >= 0 && live[row]) {
+                live[row] = false;
+                liveRows--;
+            }
+        }
+
+        int[] scan(Criteria criteria, int from, int to, int maxRows) {
+            int[] rows = new int[Math.min(to - from, maxRows)];
+            int count = 0;
+
+            for (int row = from; row < to && count < rows.length; row++) {
+                if (!live[row]) continue;
+
+                long price = priceCents[row];
+                if (price < criteria.minPrice || price > criteria.maxPrice) continue;
+                if (stock[row] < criteria.minStock) continue;
+
+                if (criteria.manufacturers != null) {
+                    int manufacturerId = manufacturerIds[row];
+
+                    if (manufacturerId >= criteria.manufacturers.length || !criteria.manufacturers[manufacturerId]) {
+                        continue;
+                    }
+                }
+
+                if (criteria.minRating > 0) {
+                    int ratingCount = ratingCounts[row];
+                    if (ratingCount == 0 || ratingSums[row] < criteria.minRating * ratingCount) continue;
+                }
+
+                if (criteria.restrictTo != null && !criteria.restrictTo.contains(ids[row])) continue;
+
+                rows[count++] = row;
+            }
+
+            return Arrays.copyOf(rows, count);
+        }
+
+        /**
+         * @return The order of the sort, or null for product ID order, which is the row order
+         */
+        RowOrder order(ProductFilter.Sort sort) {
+            return switch (sort) {
+                case ID, RELEVANCE -> null;
+                case NAME -> (row, otherRow) -> {
+                    int result = String.CASE_INSENSITIVE_ORDER.compare(
+                            names.get(nameCodes[row]), names.get(nameCodes[otherRow]));
+                    return result != 0 ? result : Integer.compare(row, otherRow);
+                };
+                case PRICE_ASCENDING -> (row, otherRow) -> {
+                    int result = Long.compare(priceCents[row], priceCents[otherRow]);
+                    return result != 0 ? result : Integer.compare(row, otherRow);
+                };
+                case PRICE_DESCENDING -> (row, otherRow) -> {
+                    int result = Long.compare(priceCents[otherRow], priceCents[row]);
+                    return result != 0 ? result : Integer.compare(row, otherRow);
+                };
+                case RATING -> (row, otherRow) -> {
+                    int result = Double.compare(averageRating(otherRow), averageRating(row));
+
+                    if (result == 0) {
+                        result = Integer.compare(ratingCounts[otherRow], ratingCounts[row]);
+                    }
+
+                    return result != 0 ? result : Integer.compare(row, otherRow);
+                };
+            };
+        }
+
+        /**
+         * Evaluates a manufacturer name fragment once per manufacturer instead of once per row.
+         */
+        boolean[] manufacturersMatching(String nameFragment) {
+            String fragment = nameFragment.toLowerCase(Locale.ROOT);
+            int maxId = manufacturerNames.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            boolean[] matching = new boolean[maxId + 1];
+
+            for (Map.Entry<Integer, String> manufacturer : manufacturerNames.entrySet()) {
+                matching[manufacturer.getKey()] = manufacturer.getValue().contains(fragment);
+            }
+
+            return matching;
+        }
+
+        private double averageRating(int row) {
+            return ratingCounts[row] == 0 ? 0 : (double) ratingSums[row] / ratingCounts[row];
+        }
+
+        private int nameCode(String name) {
+            return nameDictionary.computeIfAbsent(name, key -> {
+                names.add(key);
+                return names.size() - 1;
+            });
+        }
+
+        /**
+         * @return The row of the product, or (-(insertion point) - 1) if it has none
+         */
+        private int find(int productId) {
+            // Products are nearly always added with a new highest ID
+            if (size == 0 || productId > ids[size - 1]) {
+                return -size - 1;
+            }
+
+            return Arrays.binarySearch(ids, 0, size, productId);
+        }
+
+        private void insertRow(int row) {
+            if (size == ids.length) {
+                int capacity = size + (size >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                priceCents = Arrays.copyOf(priceCents, capacity);
+                stock = Arrays.copyOf(stock, capacity);
+                manufacturerIds = Arrays.copyOf(manufacturerIds, capacity);
+                nameCodes = Arrays.copyOf(nameCodes, capacity);
+                ratingCounts = Arrays.copyOf(ratingCounts, capacity);
+                ratingSums = Arrays.copyOf(ratingSums, capacity);
+                live = Arrays.copyOf(live, capacity);
+            }
+
+            if (row < size) {
+                int moved = size - row;
+                System.arraycopy(ids, row, ids, row + 1, moved);
+                System.arraycopy(priceCents, row, priceCents, row + 1, moved);
+                System.arraycopy(stock, row, stock, row + 1, moved);
+                System.arraycopy(manufacturerIds, row, manufacturerIds, row + 1, moved);
+                System.arraycopy(nameCodes, row, nameCodes, row + 1, moved);
+                System.arraycopy(ratingCounts, row, ratingCounts, row + 1, moved);
+                System.arraycopy(ratingSums, row, ratingSums, row + 1, moved);
+                System.arraycopy(live, row, live, row + 1, moved);
+            }
+
+            live[row] = false;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package product;
+
+import index.IntBitmap;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Buffers stock changes in memory and writes them behind, so that a feed pushing many changes
+ * for the same products costs one row update per product per flush instead of a read, an
+ * update and another read per change. Deltas for the same product are added together; they are
+ * flushed in a single transaction every {@code flushIntervalMillis}, as soon as
+ * {@code maxPendingProducts} products have changes waiting, and when the buffer is closed.
+ * <p>
+ * {@link #getStockQuantity} includes the changes that are still waiting, and never runs while
+ * a flush is moving changes from the buffer to the database, so it never counts a change twice
+ * or misses one. Stock is written with a floor of zero. Orders reserve stock from the database
+ * and so only see a change once it has been flushed.
+ * <p>
+ * Configured with system properties: {@code webbutiken.stockBuffer.flushIntervalMillis} (100)
+ * and {@code .maxPendingProducts} (1000).
+ */
+public class StockUpdateBuffer implements AutoCloseable {
+    private static final String PROPERTY_PREFIX = "webbutiken.stockBuffer.";
+
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final int maxPendingProducts;
+    private final ConcurrentHashMap<Integer, Integer> pendingDeltas = new ConcurrentHashMap<>();
+    // Readers take the read lock, a flush the write lock; adding a delta takes neither
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private volatile boolean closed;
+
+    public StockUpdateBuffer(ProductRepository productRepository, ProductService productService,
+                             long flushIntervalMillis, int maxPendingProducts) {
+        if (flushIntervalMillis < 1 || maxPendingProducts < 1) {
+            throw new IllegalArgumentException("The stock buffer needs a positive flush interval and size.");
+        }
+
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.maxPendingProducts = maxPendingProducts;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stock-update-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(
+                this::flushInBackground, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static StockUpdateBuffer fromSystemProperties(ProductRepository productRepository,
+                                                         ProductService productService) {
+        return new StockUpdateBuffer(
+                productRepository,
+                productService,
+                Long.getLong(PROPERTY_PREFIX + "flushIntervalMillis", 100L),
+                Integer.getInteger(PROPERTY_PREFIX + "maxPendingProducts", 1000)
+        );
+    }
+
+    /**
+     * Adds a change to the stock of a product, to be written with the next flush.
+     *
+     * @param productId The product ID
+     * @param delta The number of items added to stock, or taken from it if negative
+     * @throws IllegalArgumentException If there is no such product
+     * @throws IllegalStateException If the buffer is closed
+     * @throws SQLException If the product cannot be looked up
+     */
+    public void addStock(int productId, int delta) throws SQLException {
+        if (closed) {
+            throw new IllegalStateException("The stock buffer is closed.");
+        }
+
+        if (productService.getProductById(productId) == null) {
+            throw new IllegalArgumentException("No product found with ID " + productId + ".");
+        }
+
+        pendingDeltas.merge(productId, delta, Integer::sum);
+        changes.increment();
+
+        if (pendingDeltas.size() >= maxPendingProducts && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushInBackground);
+        }
+    }
+
+    /**
+     * @return The stock of the product including changes that are not flushed yet, or null if
+     * there is no such product
+     * @throws SQLException If the product cannot be looked up
+     */
+    public Integer getStockQuantity(int productId) throws SQLException {
+        flushLock.readLock().lock();
+
+        try {
+            Product product = productService.getProductById(productId);
+
+            if (product == null) {
+                return null;
+            }
+
+            return Math.max(product.getStockQuantity() + pendingDeltas.getOrDefault(productId, 0), 0);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every waiting change in a single transaction. If the write fails, the changes stay
+     * in the buffer and are written with a later flush.
+     *
+     * @throws SQLException If a database access error occurs
+     */
+    public void flush() throws SQLException {
+        flushLock.writeLock().lock();
+
+        try {
+            int[] productIds = new int[pendingDeltas.size()];
+            int[] deltas = new int[productIds.length];
+            int count = 0;
+
+            for (Integer productId : pendingDeltas.keySet()) {
+                // Changes added after this point stay in the buffer for the next flush
+                Integer delta = pendingDeltas.remove(productId);
+
+                if (delta == null || delta == 0) {
+                    continue;
+                }
+
+                if (count == productIds.length) {
+                    productIds = Arrays.copyOf(productIds, count * 2 + 1);
+                    deltas = Arrays.copyOf(deltas, count * 2 + 1);
+                }
+
+                productIds[count] = productId;
+                deltas[count] = delta;
+                count++;
+            }
+
+            if (count == 0) {
+                return;
+            }
+
+            try {
+                productRepository.addStock(productIds, deltas, count);
+            } catch (SQLException | RuntimeException e) {
+                // Nothing was written, so the deltas go back to be retried
+                for (int i = 0; i < count; i++) {
+                    pendingDeltas.merge(productIds[i], deltas[i], Integer::sum);
+                }
+
+                throw e;
+            }
+
+            IntBitmap flushed = new IntBitmap();
+
+            for (int i = 0; i < count; i++) {
+                flushed.add(productIds[i]);
+            }
+
+            productService.invalidateProducts(flushed);
+            flushedRows.add(count);
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    public int getPendingProducts() {
+        return pendingDeltas.size();
+    }
+
+    /**
+     * @return The number of changes added since startup
+     */
+    public long getChanges() {
+        return changes.sum();
+    }
+
+    /**
+     * @return The number of product rows written since startup
+     */
+    public long getFlushedRows() {
+        return flushedRows.sum();
+    }
+
+    /**
+     * Stops the background flushes and writes the changes that are still waiting. Close the
+     * buffer after whatever adds changes to it has stopped.
+     */
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+        flusher.shutdown();
+
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    private void flushInBackground() {
+        flushRequested.set(false);
+
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.err.println("Could not write buffered stock changes, retrying later: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled flushes
+            System.err.println("Could not write buffered stock changes: " + e);
+        }
+    }
+}
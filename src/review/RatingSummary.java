@@ -0,0 +1,66 @@
+package review;
+
+/**
+ * The review ratings of a product: how many there are, their sum and how many there are of
+ * each rating. Read from the running totals, never computed from the reviews. Immutable.
+ */
+public final class RatingSummary {
+    private final int productId;
+    private final int count;
+    private final long sum;
+    private final int[] histogram;
+
+    /**
+     * @param histogram The number of reviews with each rating, from 1 to 5
+     */
+    public RatingSummary(int productId, int count, long sum, int[] histogram) {
+        if (histogram.length != Review.MAX_RATING) {
+            throw new IllegalArgumentException("A rating histogram needs " + Review.MAX_RATING + " buckets.");
+        }
+
+        this.productId = productId;
+        this.count = count;
+        this.sum = sum;
+        this.histogram = histogram.clone();
+    }
+
+    public static RatingSummary empty(int productId) {
+        return new RatingSummary(productId, 0, 0, new int[Review.MAX_RATING]);
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return The average rating, or null if there are no reviews
+     */
+    public Double getAverage() {
+        return count == 0 ? null : (double) sum / count;
+    }
+
+    /**
+     * @param rating A rating from 1 to 5
+     * @return The number of reviews with that rating
+     */
+    public int getCount(int rating) {
+        return histogram[rating - Review.MIN_RATING];
+    }
+
+    @Override
+    public String toString() {
+        return "RatingSummary{" +
+                "productId=" + productId +
+                ", count=" + count +
+                ", average=" + getAverage() +
+                '}';
+    }
+}
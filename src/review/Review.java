@@ -0,0 +1,75 @@
+package review;
+
+public class Review {
+    public static final int MIN_RATING = 1;
+    public static final int MAX_RATING = 5;
+
+    private int reviewId;
+    private int productId;
+    private int customerId;
+    private int rating;
+    private String comment; // May be null
+
+    public Review(int productId, int customerId, int rating, String comment) {
+        this(0, productId, customerId, rating, comment);
+    }
+
+    public Review(int reviewId, int productId, int customerId, int rating, String comment) {
+        this.reviewId = reviewId;
+        this.productId = productId;
+        this.customerId = customerId;
+        this.rating = rating;
+        this.comment = comment;
+    }
+
+    public int getReviewId() {
+        return reviewId;
+    }
+
+    public void setReviewId(int reviewId) {
+        this.reviewId = reviewId;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(int customerId) {
+        this.customerId = customerId;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    public void setRating(int rating) {
+        this.rating = rating;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public void setComment(String comment) {
+        this.comment = comment;
+    }
+
+    @Override
+    public String toString() {
+        return "Review{" +
+                "reviewId=" + reviewId +
+                ", productId=" + productId +
+                ", customerId=" + customerId +
+                ", rating=" + rating +
+                ", comment='" + (comment != null ? comment : "N/A") + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,128 @@
+package review;
+
+import com.sun.net.httpserver.HttpExchange;
+import core.CoreHttpHandler;
+import core.Page;
+import customer.AuthenticationException;
+import customer.CustomerService;
+import customer.Session;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON endpoints for reviews:
+ * <ul>
+ *     <li>{@code GET /reviews?productId=&after=&limit=} lists a page of a product's reviews, oldest first</li>
+ *     <li>{@code GET /reviews/summary?productId=} returns the average rating and the number of
+ *     reviews with each rating</li>
+ *     <li>{@code POST /reviews} reviews a product as the customer of the {@code Authorization: Bearer}
+ *     session</li>
+ * </ul>
+ */
+public class ReviewHttpHandler extends CoreHttpHandler {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private final ReviewService reviewService;
+    private final CustomerService customerService;
+
+    public ReviewHttpHandler(ReviewService reviewService, CustomerService customerService) {
+        this.reviewService = reviewService;
+        this.customerService = customerService;
+    }
+
+    @Override
+    protected void route(HttpExchange exchange, List<String> path) throws SQLException, IOException {
+        String method = exchange.getRequestMethod();
+
+        if (path.isEmpty()) {
+            switch (method) {
+                case "GET" -> listReviews(exchange);
+                case "POST" -> submitReview(exchange);
+                default -> throw methodNotAllowed(exchange);
+            }
+        } else if (path.size() == 1 && path.get(0).equals("summary")) {
+            if (!method.equals("GET")) {
+                throw methodNotAllowed(exchange);
+            }
+
+            sendJson(exchange, 200, toJson(reviewService.getRatingSummary(productIdParameter(exchange))));
+        } else {
+            throw notFound("No resource at " + exchange.getRequestURI().getPath() + ".");
+        }
+    }
+
+    private void listReviews(HttpExchange exchange) throws SQLException, IOException {
+        Map<String, String> parameters = queryParameters(exchange);
+        Page<Review> page = reviewService.getReviews(
+                productIdParameter(exchange),
+                intParameter(parameters, "after", 0),
+                pageSizeParameter(parameters, DEFAULT_PAGE_SIZE));
+        List<Map<String, Object>> items = new ArrayList<>(page.getItems().size());
+
+        for (Review review : page.getItems()) {
+            items.add(toJson(review));
+        }
+
+        sendJson(exchange, 200, page(page, items));
+    }
+
+    private void submitReview(HttpExchange exchange) throws SQLException, IOException {
+        Session session;
+
+        try {
+            session = customerService.getSession(bearerToken(exchange));
+        } catch (AuthenticationException e) {
+            throw unauthorized(exchange, e.getMessage());
+        }
+
+        Map<String, Object> json = readJsonObject(exchange);
+        Review review = reviewService.submitReview(new Review(
+                requiredIntField(json, "productId"),
+                session.getCustomerId(),
+                requiredIntField(json, "rating"),
+                stringField(json, "comment")
+        ));
+
+        sendJson(exchange, 201, toJson(review));
+    }
+
+    private static int productIdParameter(HttpExchange exchange) {
+        Map<String, String> parameters = queryParameters(exchange);
+
+        if (!parameters.containsKey("productId")) {
+            throw new IllegalArgumentException("Parameter 'productId' is required.");
+        }
+
+        return intParameter(parameters, "productId", 0);
+    }
+
+    private static Map<String, Object> toJson(Review review) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("reviewId", review.getReviewId());
+        json.put("productId", review.getProductId());
+        json.put("customerId", review.getCustomerId());
+        json.put("rating", review.getRating());
+        json.put("comment", review.getComment());
+        return json;
+    }
+
+    private static Map<String, Object> toJson(RatingSummary summary) {
+        Map<String, Object> histogram = new LinkedHashMap<>();
+
+        for (int rating = Review.MIN_RATING; rating <= Review.MAX_RATING; rating++) {
+            histogram.put(String.valueOf(rating), summary.getCount(rating));
+        }
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("productId", summary.getProductId());
+        json.put("averageRating", summary.getAverage());
+        json.put("ratingCount", summary.getCount());
+        json.put("ratings", histogram);
+        return json;
+    }
+}
@@ -0,0 +1,190 @@
+package review;
+
+import core.Page;
+import database.ConnectionPool;
+import database.PooledConnection;
+import database.QueryPlanCheck;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reviews and the running rating totals of each product. The totals in
+ * {@code product_ratings} are updated in the same transaction as every review insert, so an
+ * average rating is always a single row read and never an aggregate over {@code reviews}.
+ */
+public class ReviewRepository {
+    private static final String CREATE_QUERY =
+            "INSERT INTO reviews (product_id, customer_id, rating, comment) VALUES (?, ?, ?, ?)";
+
+    // One ratings_N column is bumped by passing 1 for it and 0 for the others
+    private static final String ADD_RATING_QUERY = """
+        INSERT INTO product_ratings (product_id, rating_count, rating_sum,
+                                     ratings_1, ratings_2, ratings_3, ratings_4, ratings_5)
+        VALUES (?, 1, ?, ?, ?, ?, ?, ?)
+        ON CONFLICT (product_id) DO UPDATE SET
+            rating_count = rating_count + 1,
+            rating_sum = rating_sum + excluded.rating_sum,
+            ratings_1 = ratings_1 + excluded.ratings_1,
+            ratings_2 = ratings_2 + excluded.ratings_2,
+            ratings_3 = ratings_3 + excluded.ratings_3,
+            ratings_4 = ratings_4 + excluded.ratings_4,
+            ratings_5 = ratings_5 + excluded.ratings_5
+    """;
+
+    private static final String GET_PAGE_BY_PRODUCT_QUERY = """
+        SELECT review_id, product_id, customer_id, rating, comment
+        FROM reviews
+        WHERE product_id = ? AND review_id > ?
+        ORDER BY review_id
+        LIMIT ?
+    """;
+
+    private static final String GET_RATING_SUMMARY_QUERY = """
+        SELECT rating_count, rating_sum, ratings_1, ratings_2, ratings_3, ratings_4, ratings_5
+        FROM product_ratings
+        WHERE product_id = ?
+    """;
+
+    private final ConnectionPool connectionPool;
+
+    public ReviewRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    public static List<QueryPlanCheck> queryPlanChecks() {
+        return List.of(
+                new QueryPlanCheck("ReviewRepository.create", CREATE_QUERY),
+                new QueryPlanCheck("ReviewRepository.addRating", ADD_RATING_QUERY),
+                new QueryPlanCheck("ReviewRepository.getPageByProduct", GET_PAGE_BY_PRODUCT_QUERY),
+                new QueryPlanCheck("ReviewRepository.getRatingSummary", GET_RATING_SUMMARY_QUERY)
+        );
+    }
+
+    /**
+     * Inserts a review and adds its rating to the totals of the product in one transaction.
+     *
+     * @return The review with its assigned ID
+     * @throws SQLException If a database access error occurs; nothing is written
+     */
+    public Review create(Review review) throws SQLException {
+        try (PooledConnection connection = connectionPool.write()) {
+            Connection transaction = connection.getConnection();
+
+            try {
+                transaction.setAutoCommit(false);
+                int reviewId;
+
+                try (PreparedStatement pstmt =
+                             connection.prepareStatement("ReviewRepository.create", CREATE_QUERY,
+                                     Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setInt(1, review.getProductId());
+                    pstmt.setInt(2, review.getCustomerId());
+                    pstmt.setInt(3, review.getRating());
+                    pstmt.setString(4, review.getComment());
+                    pstmt.executeUpdate();
+
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            reviewId = rs.getInt(1);
+                        } else {
+                            throw new SQLException("Failed to create review, no rows affected.");
+                        }
+                    }
+                }
+
+                try (PreparedStatement pstmt =
+                             connection.prepareStatement("ReviewRepository.create", ADD_RATING_QUERY)) {
+                    pstmt.setInt(1, review.getProductId());
+                    pstmt.setInt(2, review.getRating());
+
+                    for (int rating = Review.MIN_RATING; rating <= Review.MAX_RATING; rating++) {
+                        pstmt.setInt(2 + rating, rating == review.getRating() ? 1 : 0);
+                    }
+
+                    pstmt.executeUpdate();
+                }
+
+                transaction.commit();
+
+                return new Review(reviewId, review.getProductId(), review.getCustomerId(), review.getRating(),
+                        review.getComment());
+            } catch (SQLException | RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            } finally {
+                transaction.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the reviews of a product with an ID greater than the cursor, oldest first.
+     *
+     * @param afterReviewId The cursor; 0 for the first page
+     * @param limit The maximum number of reviews on the page
+     * @throws SQLException If a database access error occurs
+     */
+    public Page<Review> getPageByProductId(int productId, int afterReviewId, int limit) throws SQLException {
+        List<Review> reviews = new ArrayList<>(limit);
+        boolean hasMore = false;
+
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ReviewRepository.getPageByProductId", GET_PAGE_BY_PRODUCT_QUERY)) {
+            pstmt.setInt(1, productId);
+            pstmt.setInt(2, afterReviewId);
+            pstmt.setInt(3, limit + 1);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (reviews.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+
+                    reviews.add(new Review(
+                            rs.getInt("review_id"),
+                            rs.getInt("product_id"),
+                            rs.getInt("customer_id"),
+                            rs.getInt("rating"),
+                            rs.getString("comment")
+                    ));
+                }
+            }
+        }
+
+        int nextCursor = reviews.isEmpty() ? afterReviewId : reviews.get(reviews.size() - 1).getReviewId();
+        return new Page<>(reviews, nextCursor, hasMore);
+    }
+
+    /**
+     * @return The rating totals of the product; empty if it has no reviews
+     */
+    public RatingSummary getRatingSummary(int productId) throws SQLException {
+        try (PooledConnection connection = connectionPool.read();
+             PreparedStatement pstmt =
+                     connection.prepareStatement("ReviewRepository.getRatingSummary", GET_RATING_SUMMARY_QUERY)) {
+            pstmt.setInt(1, productId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return RatingSummary.empty(productId);
+                }
+
+                int[] histogram = new int[Review.MAX_RATING];
+
+                for (int i = 0; i < histogram.length; i++) {
+                    histogram[i] = rs.getInt("ratings_" + (i + Review.MIN_RATING));
+                }
+
+                return new RatingSummary(productId, rs.getInt("rating_count"), rs.getLong("rating_sum"), histogram);
+            }
+        }
+    }
+}
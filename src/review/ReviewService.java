@@ -0,0 +1,62 @@
+package review;
+
+import core.Page;
+import index.IntBitmap;
+import product.ProductService;
+
+import java.sql.SQLException;
+
+public class ReviewService {
+    private static final int MAX_COMMENT_LENGTH = 2000;
+
+    private final ReviewRepository reviewRepository;
+    private final ProductService productService;
+
+    public ReviewService(ReviewRepository reviewRepository, ProductService productService) {
+        this.reviewRepository = reviewRepository;
+        this.productService = productService;
+    }
+
+    /**
+     * Saves a review and adds its rating to the running totals of the product, which are
+     * visible in product listings as soon as this returns.
+     *
+     * @throws IllegalArgumentException If the rating is not 1 to 5, the comment is too long or
+     * there is no such product
+     */
+    public Review submitReview(Review review) throws SQLException {
+        if (review == null) {
+            throw new IllegalArgumentException("Review must not be null.");
+        }
+
+        if (review.getRating() < Review.MIN_RATING || review.getRating() > Review.MAX_RATING) {
+            throw new IllegalArgumentException(
+                    "Rating must be between " + Review.MIN_RATING + " and " + Review.MAX_RATING + ".");
+        }
+
+        if (review.getComment() != null && review.getComment().length() > MAX_COMMENT_LENGTH) {
+            throw new IllegalArgumentException("Comment must be at most " + MAX_COMMENT_LENGTH + " characters.");
+        }
+
+        if (productService.getProductById(review.getProductId()) == null) {
+            throw new IllegalArgumentException("No product found with ID " + review.getProductId() + ".");
+        }
+
+        Review createdReview = reviewRepository.create(review);
+        // Cached products carry their rating
+        productService.invalidateProducts(IntBitmap.of(review.getProductId()));
+        return createdReview;
+    }
+
+    public Page<Review> getReviews(int productId, int afterReviewId, int pageSize) throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+
+        return reviewRepository.getPageByProductId(productId, afterReviewId, pageSize);
+    }
+
+    public RatingSummary getRatingSummary(int productId) throws SQLException {
+        return reviewRepository.getRatingSummary(productId);
+    }
+}
@@ -0,0 +1,139 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringCacheTest {
+    private final ExpiringCache<Integer, String> cache = new ExpiringCache<>(100, Duration.ofMinutes(10));
+
+    @Test
+    void cachesALoadThatRacedWithNoWrite() throws SQLException {
+        assertEquals("loaded", cache.get(1, key -> "loaded"));
+        assertEquals("loaded", cache.getIfPresent(1));
+    }
+
+    @Test
+    void dropsALoadThatRacedWithAPut() throws SQLException {
+        String loaded = cache.get(1, key -> {
+            cache.put(1, "written");
+            return "stale";
+        });
+
+        assertEquals("stale", loaded);
+        assertEquals("written", cache.getIfPresent(1));
+    }
+
+    @Test
+    void dropsALoadThatRacedWithAnInvalidate() throws SQLException {
+        cache.get(1, key -> {
+            cache.invalidate(1);
+            return "stale";
+        });
+
+        assertNull(cache.getIfPresent(1));
+    }
+
+    @Test
+    void dropsALoadThatRacedWithAnInvalidateAll() throws SQLException {
+        cache.get(1, key -> {
+            cache.invalidateAll();
+            return "stale";
+        });
+
+        assertNull(cache.getIfPresent(1));
+    }
+
+    @Test
+    void dropsAValueLoadedBeforeAWriteEvenIfItIsStoredAfterIt() {
+        long generation = cache.generation(1);
+        cache.invalidate(1);
+        cache.putIfCurrent(1, "stale", generation);
+
+        assertNull(cache.getIfPresent(1));
+
+        cache.putIfCurrent(1, "fresh", cache.generation(1));
+        assertEquals("fresh", cache.getIfPresent(1));
+    }
+
+    @Test
+    void neverCachesNull() throws SQLException {
+        assertNull(cache.get(1, key -> null));
+        cache.put(2, "value");
+        cache.put(2, null);
+
+        assertNull(cache.getIfPresent(2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void expiresEntriesAfterTheirTimeToLive() throws InterruptedException {
+        ExpiringCache<Integer, String> shortLived = new ExpiringCache<>(10, Duration.ofMillis(20));
+        shortLived.put(1, "value");
+        Thread.sleep(50);
+
+        assertNull(shortLived.getIfPresent(1));
+    }
+
+    @Test
+    void staysNearItsMaximumSize() {
+        ExpiringCache<Integer, String> small = new ExpiringCache<>(10, Duration.ofMinutes(10));
+
+        for (int key = 0; key < 1_000; key++) {
+            small.put(key, "value");
+        }
+
+        assertTrue(small.size() <= 11, "size " + small.size());
+        assertEquals("value", small.getIfPresent(999));
+    }
+
+    /**
+     * A loader blocked mid-load while another thread writes the key must not overwrite the
+     * write when it finishes, however the two threads are scheduled.
+     */
+    @Test
+    void aSlowLoadNeverOverwritesAConcurrentWrite() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            for (int round = 0; round < 100; round++) {
+                CountDownLatch loading = new CountDownLatch(1);
+                CountDownLatch written = new CountDownLatch(1);
+                int key = round;
+
+                Future<String> load = executor.submit(() -> cache.get(key, k -> {
+                    loading.countDown();
+                    awaitQuietly(written);
+                    return "stale";
+                }));
+
+                assertTrue(loading.await(5, TimeUnit.SECONDS));
+                cache.put(key, "written");
+                written.countDown();
+                load.get(5, TimeUnit.SECONDS);
+
+                assertEquals("written", cache.getIfPresent(key));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
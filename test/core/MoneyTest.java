@@ -0,0 +1,74 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+    @Test
+    void parsesAmountsWithUpToTwoDecimals() {
+        assertEquals(1250, Money.parse("12.5").getMinorUnits());
+        assertEquals(1250, Money.parse(" 12.500 ").getMinorUnits());
+        assertEquals(-1, Money.parse("-0.01").getMinorUnits());
+        assertEquals(100, Money.of(new BigDecimal("1E+0")).getMinorUnits());
+    }
+
+    @Test
+    void rejectsFractionsOfACent() {
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("0.001"));
+    }
+
+    @Test
+    void rejectsAmountsBeyondALongOfCents() {
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07").getMinorUnits());
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("92233720368547758.08"));
+    }
+
+    @Test
+    void rejectsHugeExponentsWithoutExpandingThem() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1e999999999")));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1e-999999999")));
+    }
+
+    @Test
+    void rejectsText() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("twelve"));
+    }
+
+    @Test
+    void printsTwoDecimals() {
+        assertEquals("12.50", Money.ofMinor(1250).toString());
+        assertEquals("-0.05", Money.ofMinor(-5).toString());
+        assertEquals(new BigDecimal("0.00"), Money.ZERO.toBigDecimal());
+    }
+
+    @Test
+    void reusesZero() {
+        assertSame(Money.ZERO, Money.ofMinor(0));
+        assertSame(Money.ZERO, Money.parse("0.00"));
+    }
+
+    @Test
+    void reportsOverflowInsteadOfWrapping() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> max.times(2));
+        assertEquals(Money.ofMinor(3000), Money.ofMinor(1000).times(3));
+    }
+
+    @Test
+    void comparesByAmount() {
+        assertTrue(Money.parse("1.10").compareTo(Money.parse("1.09")) > 0);
+        assertEquals(Money.parse("5"), Money.parse("5.00"));
+        assertEquals(Money.parse("5").hashCode(), Money.parse("5.00").hashCode());
+        assertTrue(Money.ofMinor(-1).isNegative());
+        assertFalse(Money.ZERO.isNegative());
+    }
+}
@@ -0,0 +1,90 @@
+package customer;
+
+import core.Page;
+import database.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerRepositoryTest {
+    private TestDatabase database;
+    private CustomerRepository customerRepository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.create();
+        customerRepository = new CustomerRepository(database.getConnectionPool());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Test
+    void pagesVisitEveryCustomerOnceWhateverThePageSize() throws Exception {
+        List<Integer> allCustomerIds = streamCustomerIds();
+
+        for (int limit = 1; limit <= allCustomerIds.size() + 1; limit++) {
+            assertEquals(allCustomerIds, walkPages(0, limit), "limit " + limit);
+        }
+    }
+
+    @Test
+    void aDeletedCustomerStillWorksAsACursor() throws Exception {
+        Customer deleted = customerRepository.create(
+                new Customer("Deleted", "deleted@example.com", null, null, "secret"));
+        Customer next = customerRepository.create(
+                new Customer("Next", "next@example.com", null, null, "secret"));
+        customerRepository.delete(deleted.getCustomerId());
+
+        Page<Customer> page = customerRepository.getPage(deleted.getCustomerId(), 10);
+
+        assertEquals(List.of(next.getCustomerId()), customerIds(page));
+        assertFalse(page.hasMore());
+        assertFalse(streamCustomerIds().contains(deleted.getCustomerId()));
+    }
+
+    @Test
+    void anEmptyPageKeepsItsCursor() throws Exception {
+        List<Integer> allCustomerIds = streamCustomerIds();
+        int lastId = allCustomerIds.get(allCustomerIds.size() - 1);
+        Page<Customer> page = customerRepository.getPage(lastId, 5);
+
+        assertTrue(page.getItems().isEmpty());
+        assertEquals(lastId, page.getNextCursor());
+        assertFalse(page.hasMore());
+    }
+
+    private List<Integer> streamCustomerIds() throws Exception {
+        try (Stream<Customer> customers = customerRepository.streamAll(2)) {
+            return customers.map(Customer::getCustomerId).toList();
+        }
+    }
+
+    private List<Integer> walkPages(int cursor, int limit) throws Exception {
+        List<Integer> customerIds = new ArrayList<>();
+        Page<Customer> page;
+
+        do {
+            page = customerRepository.getPage(cursor, limit);
+            assertTrue(page.getItems().size() <= limit);
+            customerIds.addAll(customerIds(page));
+            cursor = page.getNextCursor();
+        } while (page.hasMore());
+
+        return customerIds;
+    }
+
+    private static List<Integer> customerIds(Page<Customer> page) {
+        return page.getItems().stream().map(Customer::getCustomerId).toList();
+    }
+}
@@ -0,0 +1,59 @@
+package database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * A copy of the bundled sample database in a temporary directory, migrated to the current
+ * schema, so tests can write to it freely.
+ */
+public class TestDatabase implements AutoCloseable {
+    private final Path directory;
+    private final ConnectionPool connectionPool;
+
+    private TestDatabase(Path directory, ConnectionPool connectionPool) {
+        this.directory = directory;
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * @return The database; close it to delete the files
+     */
+    public static TestDatabase create() throws SQLException, IOException {
+        Path directory = Files.createTempDirectory("webbutiken-test");
+        Path file = directory.resolve("webbutiken.db");
+        Files.copy(Path.of("data", "webbutiken.db"), file);
+
+        ConnectionPool connectionPool = new ConnectionPool(DatabaseConfig.fromSystemProperties("jdbc:sqlite:" + file));
+
+        try {
+            new SchemaMigrator(connectionPool).migrate();
+        } catch (SQLException | RuntimeException e) {
+            connectionPool.close();
+            throw e;
+        }
+
+        return new TestDatabase(directory, connectionPool);
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    @Override
+    public void close() throws SQLException, IOException {
+        try {
+            connectionPool.close();
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+
+            Files.deleteIfExists(directory);
+        }
+    }
+}
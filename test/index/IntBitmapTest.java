@@ -0,0 +1,113 @@
+package index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntBitmapTest {
+    @Test
+    void keepsValuesSortedAcrossChunks() {
+        IntBitmap bitmap = IntBitmap.of(Integer.MAX_VALUE, 65536, 3, 65535, 0, 3);
+
+        assertArrayEquals(new int[] {0, 3, 65535, 65536, Integer.MAX_VALUE}, bitmap.toArray());
+        assertEquals(5, bitmap.cardinality());
+        assertTrue(bitmap.contains(65535));
+        assertFalse(bitmap.contains(65537));
+        assertFalse(bitmap.contains(-1));
+    }
+
+    @Test
+    void switchesToABitsetWhenAChunkIsDenseAndBackWhenItThinsOut() {
+        IntBitmap bitmap = new IntBitmap();
+
+        for (int value = 0; value <= 4096; value++) {
+            bitmap.add(value * 2);
+        }
+
+        assertEquals(4097, bitmap.cardinality());
+        assertTrue(bitmap.contains(8192));
+        assertFalse(bitmap.contains(8191));
+
+        for (int value = 0; value <= 4096; value += 2) {
+            bitmap.remove(value * 2);
+        }
+
+        assertEquals(2048, bitmap.cardinality());
+        assertFalse(bitmap.contains(0));
+        assertTrue(bitmap.contains(2));
+    }
+
+    @Test
+    void dropsChunksThatBecomeEmpty() {
+        IntBitmap bitmap = IntBitmap.of(1, 70000);
+        bitmap.remove(70000);
+        bitmap.remove(1);
+        bitmap.remove(5);
+
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.toArray().length);
+    }
+
+    @Test
+    void rejectsNegativeValues() {
+        assertThrows(IllegalArgumentException.class, () -> new IntBitmap().add(-1));
+    }
+
+    @Test
+    void andAndOrMatchBitSetsForSparseAndDenseChunks() {
+        Random random = new Random(7);
+
+        for (int round = 0; round < 20; round++) {
+            BitSet expectedLeft = new BitSet();
+            BitSet expectedRight = new BitSet();
+            IntBitmap left = randomBitmap(random, expectedLeft);
+            IntBitmap right = randomBitmap(random, expectedRight);
+
+            BitSet expectedAnd = (BitSet) expectedLeft.clone();
+            expectedAnd.and(expectedRight);
+            BitSet expectedOr = (BitSet) expectedLeft.clone();
+            expectedOr.or(expectedRight);
+
+            assertArrayEquals(expectedAnd.stream().toArray(), left.and(right).toArray());
+            assertArrayEquals(expectedOr.stream().toArray(), left.or(right).toArray());
+            assertArrayEquals(expectedLeft.stream().toArray(), left.toArray(), "operands must not change");
+        }
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        IntBitmap bitmap = IntBitmap.of(1, 2);
+        IntBitmap copy = bitmap.copy();
+        copy.add(3);
+        bitmap.remove(1);
+
+        assertArrayEquals(new int[] {2}, bitmap.toArray());
+        assertArrayEquals(new int[] {1, 2, 3}, copy.toArray());
+    }
+
+    /**
+     * Fills three chunks, each either sparse or dense, so every pairing of container kinds is hit.
+     */
+    private static IntBitmap randomBitmap(Random random, BitSet expected) {
+        IntBitmap bitmap = new IntBitmap();
+
+        for (int chunk = 0; chunk < 3; chunk++) {
+            int count = random.nextBoolean() ? 100 : 10_000;
+
+            for (int i = 0; i < count; i++) {
+                int value = (chunk << 16) | random.nextInt(1 << 16);
+                bitmap.add(value);
+                expected.set(value);
+            }
+        }
+
+        return bitmap;
+    }
+}
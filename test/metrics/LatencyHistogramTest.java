@@ -0,0 +1,88 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void isEmptyBeforeTheFirstRecording() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMeanNanos());
+    }
+
+    @Test
+    void keepsSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(50.5, histogram.getMeanNanos());
+    }
+
+    @Test
+    void keepsLargeValuesWithinOnePercent() {
+        for (long value : new long[] {257, 1_000, 123_456, 9_999_999, 1_234_567_890L, 3_000_000_000_000L}) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(value + 1);
+
+            long p50 = histogram.getValueAtPercentile(50);
+            assertTrue(p50 >= value && p50 <= value * 1.01, value + " was reported as " + p50);
+        }
+    }
+
+    @Test
+    void neverReportsMoreThanTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001);
+
+        assertEquals(1_000_001, histogram.getValueAtPercentile(100));
+        assertEquals(1_000_001, histogram.getMaxNanos());
+    }
+
+    @Test
+    void clampsValuesOutsideTheTrackableRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(3_600_000_000_000L, histogram.getMaxNanos());
+        assertEquals(3_600_000_000_000L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void countsEveryRecordingFromConcurrentThreads() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxNanos());
+        assertEquals(5_000.5, histogram.getMeanNanos());
+    }
+}
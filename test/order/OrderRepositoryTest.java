@@ -0,0 +1,122 @@
+package order;
+
+import core.Money;
+import core.Page;
+import customer.Customer;
+import customer.CustomerRepository;
+import database.TestDatabase;
+import orderproduct.OrderProduct;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderRepositoryTest {
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2024, 3, 4, 9, 0);
+    private static final LocalDateTime TUESDAY = MONDAY.plusDays(1);
+    private static final LocalDateTime WEDNESDAY = MONDAY.plusDays(2);
+
+    private TestDatabase database;
+    private OrderRepository orderRepository;
+    private int customerId;
+    // Newest first, the order of the history
+    private final List<Order> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.create();
+        orderRepository = new OrderRepository(database.getConnectionPool());
+        customerId = new CustomerRepository(database.getConnectionPool())
+                .create(new Customer("History", "history@example.com", null, null, "secret"))
+                .getCustomerId();
+
+        // Orders on the same date are told apart by their ID, so the cursor has to break the tie
+        for (LocalDateTime orderDate : List.of(MONDAY, TUESDAY, MONDAY, WEDNESDAY, TUESDAY, MONDAY)) {
+            orders.add(orderRepository.create(new Order(0, customerId, orderDate),
+                    List.of(new OrderProduct(0, 0, 1, 1, Money.parse("10.00")))));
+        }
+
+        orders.sort(Comparator.comparing(Order::getOrderDate).thenComparing(Order::getOrderId).reversed());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Test
+    void pagesVisitEveryOrderOnceNewestFirstWhateverThePageSize() throws Exception {
+        for (int limit = 1; limit <= orders.size() + 1; limit++) {
+            assertEquals(orderIds(orders), walkPages(null, null, limit), "limit " + limit);
+        }
+    }
+
+    @Test
+    void theStartDateIsInclusiveAndTheEndDateExclusive() throws Exception {
+        List<Integer> tuesday = orderIds(orders.stream().filter(order -> order.getOrderDate().equals(TUESDAY)).toList());
+
+        for (int limit = 1; limit <= 3; limit++) {
+            assertEquals(tuesday, walkPages(TUESDAY, WEDNESDAY, limit), "limit " + limit);
+        }
+    }
+
+    @Test
+    void aCursorOutsideTheDateRangeDoesNotWidenIt() throws Exception {
+        int wednesdayOrderId = orders.get(0).getOrderId();
+        Page<Order> page = orderRepository.getHistoryPage(customerId, null, TUESDAY, wednesdayOrderId, 10, true);
+
+        assertEquals(orderIds(orders.stream().filter(order -> order.getOrderDate().equals(MONDAY)).toList()),
+                orderIds(page.getItems()));
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void aPageThatEndsOnTheOldestOrderHasNoMore() throws Exception {
+        Page<Order> page = orderRepository.getHistoryPage(customerId, null, null, 0, orders.size(), true);
+
+        assertEquals(orders.size(), page.getItems().size());
+        assertEquals(orders.get(orders.size() - 1).getOrderId(), page.getNextCursor());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void summariesLeaveOutTheLines() throws Exception {
+        Order summary = orderRepository.getHistoryPage(customerId, null, null, 0, 1, true).getItems().get(0);
+        Order full = orderRepository.getHistoryPage(customerId, null, null, 0, 1, false).getItems().get(0);
+
+        assertNull(summary.getProducts());
+        assertEquals(1, summary.getLineCount());
+        assertEquals(Money.parse("10.00"), summary.getTotalPrice());
+        assertNotNull(full.getProducts());
+        assertEquals(1, full.getProducts().size());
+    }
+
+    private List<Integer> walkPages(LocalDateTime from, LocalDateTime to, int limit) throws Exception {
+        List<Integer> orderIds = new ArrayList<>();
+        int cursor = 0;
+        Page<Order> page;
+
+        do {
+            page = orderRepository.getHistoryPage(customerId, from, to, cursor, limit, true);
+            assertTrue(page.getItems().size() <= limit);
+            orderIds.addAll(orderIds(page.getItems()));
+            cursor = page.getNextCursor();
+        } while (page.hasMore());
+
+        return orderIds;
+    }
+
+    private static List<Integer> orderIds(List<Order> orders) {
+        return orders.stream().map(Order::getOrderId).toList();
+    }
+}
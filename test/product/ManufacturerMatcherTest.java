@@ -0,0 +1,91 @@
+package product;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ManufacturerMatcherTest {
+    private final ManufacturerMatcher matcher = new ManufacturerMatcher(manufacturers(
+            1, "Apple",
+            2, "Samsung",
+            3, "LG",
+            4, "Dell",
+            5, "Sony Ericsson",
+            6, "Sony",
+            7, "apple"));
+
+    @Test
+    void ignoresCase() {
+        assertManufacturer(2, "Samsung", "galaxy s23 by SAMSUNG");
+    }
+
+    @Test
+    void onlyMatchesWholeWords() {
+        assertManufacturer(null, null, "Pineapple slicer");
+        assertManufacturer(null, null, "LGBT flag");
+        assertManufacturer(3, "LG", "LG-C3 OLED");
+    }
+
+    @Test
+    void prefersTheEarliestThenTheLongestName() {
+        assertManufacturer(4, "Dell", "Dell monitor for Apple Mac");
+        assertManufacturer(5, "Sony Ericsson", "Sony Ericsson W800i");
+        assertManufacturer(6, "Sony", "Sony WH-1000XM5, not a Sony Ericsson");
+    }
+
+    @Test
+    void keepsTheFirstOfNamesThatOnlyDifferInCase() {
+        assertManufacturer(1, "Apple", "apple iPhone");
+    }
+
+    @Test
+    void findsNamesThatOverlapAPartialMatch() {
+        // "Sony E" is a partial match of "Sony Ericsson" that has to fall back to "Sony"
+        assertManufacturer(6, "Sony", "Sony E-reader");
+    }
+
+    @Test
+    void clearsTheManufacturerWhenNoneIsNamed() {
+        Product product = new Product(1, 2, "Unbranded cable", "Samsung");
+        matcher.resolve(product);
+
+        assertNull(product.getManufacturerId());
+        assertNull(product.getManufacturerName());
+    }
+
+    @Test
+    void acceptsProductsWithoutAName() {
+        assertManufacturer(null, null, null);
+    }
+
+    @Test
+    void matchesNothingWithoutManufacturers() {
+        ManufacturerMatcher empty = new ManufacturerMatcher(Map.of(1, " "));
+        Product product = new Product(1, null, "Apple iPhone", null);
+        empty.resolve(product);
+
+        assertNull(product.getManufacturerId());
+    }
+
+    private void assertManufacturer(Integer manufacturerId, String manufacturerName, String productName) {
+        Product product = new Product(1, null, productName, null);
+        matcher.resolve(product);
+
+        assertEquals(manufacturerId, product.getManufacturerId(), productName);
+        assertEquals(manufacturerName, product.getManufacturerName(), productName);
+    }
+
+    private static Map<Integer, String> manufacturers(Object... idsAndNames) {
+        Map<Integer, String> manufacturers = new LinkedHashMap<>();
+
+        for (int i = 0; i < idsAndNames.length; i += 2) {
+            manufacturers.put((Integer) idsAndNames[i], (String) idsAndNames[i + 1]);
+        }
+
+        return manufacturers;
+    }
+}
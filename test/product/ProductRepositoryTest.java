@@ -0,0 +1,96 @@
+package product;
+
+import core.Page;
+import database.TestDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductRepositoryTest {
+    private static TestDatabase database;
+    private static ProductRepository productRepository;
+    private static List<Integer> allProductIds;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        database = TestDatabase.create();
+        productRepository = new ProductRepository(database.getConnectionPool());
+
+        try (Stream<Product> products = productRepository.streamAll(16)) {
+            allProductIds = products.map(Product::getProductId).toList();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Test
+    void streamsEveryProductInIdOrder() {
+        assertTrue(allProductIds.size() > 2);
+        assertEquals(allProductIds.stream().sorted().distinct().toList(), allProductIds);
+    }
+
+    @Test
+    void pagesVisitEveryProductOnceWhateverThePageSize() throws Exception {
+        for (int limit : new int[] {1, 7, allProductIds.size() - 1, allProductIds.size(), allProductIds.size() + 1}) {
+            assertEquals(allProductIds, walkPages(limit), "limit " + limit);
+        }
+    }
+
+    @Test
+    void aPageThatEndsOnTheLastProductHasNoMore() throws Exception {
+        int lastId = allProductIds.get(allProductIds.size() - 1);
+        Page<Product> page = productRepository.getPage(allProductIds.get(allProductIds.size() - 3), 2);
+
+        assertEquals(2, page.getItems().size());
+        assertEquals(lastId, page.getNextCursor());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void aPageOneShortOfTheEndHasMore() throws Exception {
+        Page<Product> page = productRepository.getPage(allProductIds.get(allProductIds.size() - 3), 1);
+
+        assertEquals(1, page.getItems().size());
+        assertTrue(page.hasMore());
+    }
+
+    @Test
+    void aCursorPastTheEndGivesAnEmptyPageWithTheSameCursor() throws Exception {
+        int cursor = allProductIds.get(allProductIds.size() - 1) + 1000;
+        Page<Product> page = productRepository.getPage(cursor, 10);
+
+        assertTrue(page.getItems().isEmpty());
+        assertEquals(cursor, page.getNextCursor());
+        assertFalse(page.hasMore());
+    }
+
+    private static List<Integer> walkPages(int limit) throws Exception {
+        List<Integer> productIds = new ArrayList<>();
+        int cursor = 0;
+        Page<Product> page;
+
+        do {
+            page = productRepository.getPage(cursor, limit);
+            assertTrue(page.getItems().size() <= limit);
+
+            for (Product product : page.getItems()) {
+                productIds.add(product.getProductId());
+            }
+
+            cursor = page.getNextCursor();
+        } while (page.hasMore());
+
+        return productIds;
+    }
+}
@@ -0,0 +1,102 @@
+package product;
+
+import core.ImportResult;
+import database.PooledConnection;
+import database.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductServiceTest {
+    @TempDir
+    Path directory;
+
+    private TestDatabase database;
+    private ProductRepository productRepository;
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.create();
+        productRepository = new ProductRepository(database.getConnectionPool());
+        productService = new ProductService(productRepository, CategoryIndex.load(productRepository));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Test
+    void importCreatesMissingCategoriesOnceAndIndexesTheirProducts() throws Exception {
+        ImportResult result = productService.importProducts(csv(
+                "name,price,categories",
+                "Gizmo,10.00,Gadgets|gadgets ",
+                "Widget,5.00,GADGETS|Tools"), rows -> {});
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, count("Gadgets"));
+        assertEquals(1, count("Tools"));
+        assertEquals(List.of("Gizmo", "Widget"), names(productService.searchProductsByCategory("gadgets")));
+        assertEquals(List.of("Widget"), names(productService.searchProductsByCategory("tools")));
+    }
+
+    @Test
+    void importOnlyCreatesCategoriesForImportedRows() throws Exception {
+        ImportResult result = productService.importProducts(csv(
+                "name,price,categories",
+                "Gizmo,ten,Rejected",
+                "Widget,5.00,Accepted"), rows -> {});
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(0, count("Rejected"));
+        assertEquals(1, count("Accepted"));
+    }
+
+    @Test
+    void aChunkThatFailsLeavesNoCategoriesBehind() throws Exception {
+        try (PooledConnection connection = database.getConnectionPool().write();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                CREATE TRIGGER fail_import BEFORE INSERT ON products WHEN NEW.name = 'Boom'
+                BEGIN SELECT RAISE(ABORT, 'boom'); END
+            """);
+        }
+
+        assertThrows(SQLException.class, () -> productService.importProducts(csv(
+                "name,price,categories",
+                "Widget,5.00,Doomed",
+                "Boom,5.00,Doomed"), rows -> {}));
+
+        assertEquals(0, count("Doomed"));
+        assertTrue(productService.searchProductsByCategory("doomed").isEmpty());
+        assertFalse(productService.searchProductsByName("Widget").stream()
+                .anyMatch(product -> product.getName().equals("Widget")));
+    }
+
+    private Path csv(String... lines) throws IOException {
+        return Files.write(directory.resolve("products.csv"), List.of(lines));
+    }
+
+    private long count(String categoryName) throws SQLException {
+        return productRepository.getAllCategories().values().stream().filter(categoryName::equals).count();
+    }
+
+    private static List<String> names(List<Product> products) {
+        return products.stream().map(Product::getName).toList();
+    }
+}